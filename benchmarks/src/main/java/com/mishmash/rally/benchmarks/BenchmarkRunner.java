@@ -0,0 +1,36 @@
+package com.mishmash.rally.benchmarks;
+
+import java.io.IOException;
+
+/**
+ * Runs the benchmarks with the GC profiler always on, so that every result comes with its
+ * allocation rate (gc.alloc.rate.norm is the bytes allocated per operation). Everything else
+ * is left to JMH's own command line, so a benchmark name pattern, -l, -lp, -lprof and -h all
+ * work as usual.
+ *
+ * @author mrmcduff
+ *
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * This is a static class, so there's no need to instantiate it.
+     */
+    private BenchmarkRunner() {}
+
+    /**
+     * @param args
+     * JMH's usual command line options.
+     *
+     * @throws IOException
+     * If JMH can't read its benchmark list or write its results.
+     */
+    public static void main(String[] args) throws IOException {
+        String[] withProfiler = new String[args.length + 2];
+        withProfiler[0] = "-prof";
+        withProfiler[1] = "gc";
+        System.arraycopy(args, 0, withProfiler, 2, args.length);
+        org.openjdk.jmh.Main.main(withProfiler);
+    }
+
+}
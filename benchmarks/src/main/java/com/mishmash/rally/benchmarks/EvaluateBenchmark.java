@@ -0,0 +1,71 @@
+package com.mishmash.rally.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.EvaluatorSelector;
+import com.mishmash.rally.Hand;
+import com.mishmash.rally.HandEvaluator;
+
+/**
+ * Measures evaluating hands: with the reference HandEvaluator, and with whichever engine
+ * EvaluatorSelector picks for the hand. Evaluating a hand again redoes all of the work, so
+ * the same hands can be used over and over.
+ *
+ * @author mrmcduff
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluateBenchmark {
+
+    @Param({ "5", "7", "13", "53" })
+    public int handSize;
+
+    @Param({ "false", "true" })
+    public boolean withJoker;
+
+    private final HandEvaluator evaluator = new HandEvaluator();
+    private Hand[] hands;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        long[] cards = Hands.deal(handSize, withJoker);
+        hands = new Hand[cards.length];
+        for (int i = 0; i < cards.length; ++i) {
+            hands[i] = CardSet.toHand(cards[i]);
+        }
+    }
+
+    @Benchmark
+    public Hand evaluate() {
+        Hand hand = hands[next++ & Hands.INDEX_MASK];
+        evaluator.evaluate(hand);
+        return hand;
+    }
+
+    @Benchmark
+    public Hand evaluateSelected() {
+        Hand hand = hands[next++ & Hands.INDEX_MASK];
+        EvaluatorSelector.select(hand).evaluate(hand);
+        return hand;
+    }
+
+}
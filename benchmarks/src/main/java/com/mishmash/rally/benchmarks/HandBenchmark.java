@@ -0,0 +1,65 @@
+package com.mishmash.rally.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.Hand;
+
+/**
+ * Measures the Hand methods that the shell calls on every line: checking the hand, and
+ * describing it once it's been evaluated (which happens in the setup, so only the
+ * description itself is measured).
+ *
+ * @author mrmcduff
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandBenchmark {
+
+    @Param({ "5", "7", "13", "53" })
+    public int handSize;
+
+    @Param({ "false", "true" })
+    public boolean withJoker;
+
+    private Hand[] hands;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        long[] cards = Hands.deal(handSize, withJoker);
+        hands = new Hand[cards.length];
+        for (int i = 0; i < cards.length; ++i) {
+            hands[i] = CardSet.toHand(cards[i]);
+            hands[i].getDescription();
+        }
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return hands[next++ & Hands.INDEX_MASK].isValid();
+    }
+
+    @Benchmark
+    public String getDescription() {
+        return hands[next++ & Hands.INDEX_MASK].getDescription();
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.mishmash.rally.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.mishmash.rally.Card;
+import com.mishmash.rally.CardSet;
+
+/**
+ * Deals the hands that the benchmarks work on. The deals are seeded, so every run measures
+ * the same hands.
+ *
+ * @author mrmcduff
+ *
+ */
+final class Hands {
+
+    // How many different hands each benchmark cycles through, so that no single hand's
+    // branches get learned. A power of two, so that the next index is a mask away.
+    static final int HAND_COUNT = 1024;
+    static final int INDEX_MASK = HAND_COUNT - 1;
+
+    private static final long SEED = 1729;
+    private static final int NATURAL_CARD_COUNT = CardSet.RANK_COUNT * CardSet.SUIT_COUNT;
+
+    /**
+     * This is a static class, so there's no need to instantiate it.
+     */
+    private Hands() {}
+
+    /**
+     * Deals HAND_COUNT hands.
+     *
+     * @param handSize
+     * The number of cards in each hand, the joker included. Without the joker there are
+     * only 52 cards, so asking for 53 gets the whole deck.
+     *
+     * @param withJoker
+     * True if every hand should hold the joker.
+     *
+     * @return
+     * The hands, as CardSets.
+     */
+    static long[] deal(int handSize, boolean withJoker) {
+        Random random = new Random(SEED);
+        List<Integer> deck = new ArrayList<Integer>();
+        for (int ordinal = 0; ordinal < NATURAL_CARD_COUNT; ++ordinal) {
+            deck.add(ordinal);
+        }
+        int naturalCount = Math.min(withJoker ? handSize - 1 : handSize, NATURAL_CARD_COUNT);
+
+        long[] hands = new long[HAND_COUNT];
+        for (int i = 0; i < hands.length; ++i) {
+            Collections.shuffle(deck, random);
+            long cards = withJoker ? CardSet.JOKER : CardSet.EMPTY;
+            for (int j = 0; j < naturalCount; ++j) {
+                cards |= 1L << deck.get(j);
+            }
+            hands[i] = cards;
+        }
+        return hands;
+    }
+
+    /**
+     * Writes a hand the way a user would type it in, such as "10h, qs, w".
+     *
+     * @param cards
+     * The CardSet of the hand.
+     *
+     * @return
+     * A line that Interpreter.interpret reads back into the same cards.
+     */
+    static String toInput(long cards) {
+        StringBuilder sb = new StringBuilder();
+        for (Card card : CardSet.toCards(cards)) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            if (card.getSuit() == Card.Suit.JOKER) {
+                sb.append('w');
+            } else {
+                sb.append(card.getValue());
+                sb.append(Character.toLowerCase(card.getSuit().name().charAt(0)));
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.mishmash.rally.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mishmash.rally.Card;
+import com.mishmash.rally.Interpreter;
+
+/**
+ * Measures reading a line of user input into cards.
+ *
+ * @author mrmcduff
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark {
+
+    @Param({ "5", "7", "13", "53" })
+    public int handSize;
+
+    @Param({ "false", "true" })
+    public boolean withJoker;
+
+    private String[] lines;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        long[] hands = Hands.deal(handSize, withJoker);
+        lines = new String[hands.length];
+        for (int i = 0; i < hands.length; ++i) {
+            lines[i] = Hands.toInput(hands[i]);
+        }
+    }
+
+    @Benchmark
+    public List<Card> interpret() {
+        return Interpreter.interpret(lines[next++ & Hands.INDEX_MASK]);
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.mishmash.rally.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mishmash.rally.Card;
+import com.mishmash.rally.CardScanner;
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.Interpreter;
+
+/**
+ * Compares the CardScanner with the regular expression path it replaced in
+ * Interpreter.interpret (tokenize, getBadFormatTokens, then convertStringsToCards) on
+ * lines that are hard on the regular expressions:
+ * <ul>
+ * <li>long: twenty whole decks (1,060 cards) in one line,</li>
+ * <li>separators: fifty cards with a run of 500 mixed separators between each pair.</li>
+ * </ul>
+ *
+ * @author mrmcduff
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    private static final int DECK_COUNT = 20;
+    private static final int SPACED_CARD_COUNT = 50;
+    private static final int SEPARATOR_RUN = 500;
+    private static final String SEPARATORS = " ,;\t";
+
+    @Param({ "long", "separators" })
+    public String shape;
+
+    private final CardScanner scanner = new CardScanner();
+    private String line;
+
+    @Setup
+    public void setUp() {
+        String deck = Hands.toInput(CardSet.FULL_DECK);
+        StringBuilder sb = new StringBuilder();
+        if (shape.equals("long")) {
+            for (int i = 0; i < DECK_COUNT; ++i) {
+                sb.append(deck).append(", ");
+            }
+        } else {
+            String[] cards = deck.split(", ");
+            for (int i = 0; i < SPACED_CARD_COUNT; ++i) {
+                sb.append(cards[i]);
+                for (int j = 0; j < SEPARATOR_RUN; ++j) {
+                    sb.append(SEPARATORS.charAt(j % SEPARATORS.length()));
+                }
+            }
+        }
+        line = sb.toString();
+    }
+
+    @Benchmark
+    public List<Card> regex() {
+        String[] tokens = Interpreter.tokenize(line);
+        List<String> badTokens = Interpreter.getBadFormatTokens(tokens);
+        if (!badTokens.isEmpty()) {
+            throw new IllegalStateException(Interpreter.getErrorString(badTokens));
+        }
+        return Interpreter.convertStringsToCards(tokens, new ArrayList<String>());
+    }
+
+    @Benchmark
+    public long scanner() {
+        if (!scanner.scan(line)) {
+            throw new IllegalStateException(scanner.getErrorMessage());
+        }
+        return scanner.getCardSet();
+    }
+
+    @Benchmark
+    public List<Card> interpret() {
+        return Interpreter.interpret(line);
+    }
+
+}
@@ -0,0 +1,255 @@
+package com.mishmash.rally;
+
+/**
+ * Scores whole arrays of hands in one call, without building a Hand (or anything else) per
+ * hand. Hands come in as CardSets, or as a packed array of card ordinals, and the results go
+ * out into primitive arrays: the strength of each hand (its packed value, see HandValue) and,
+ * optionally, the ordinal of its HandType. Five card hands go through the FiveCardEvaluator
+ * tables, and every other size through the BitmaskEvaluator.
+ *
+ * Hands that aren't valid get a strength of HandValue.INVALID_VALUE and a type of INVALID_TYPE.
+ *
+ * @author mrmcduff
+ *
+ */
+public class BatchEvaluator {
+
+    // The type written for a hand that isn't valid.
+    public static final byte INVALID_TYPE = -1;
+
+    private final FiveCardEvaluator fiveCardEvaluator = new FiveCardEvaluator();
+    private final BitmaskEvaluator bitmaskEvaluator = new BitmaskEvaluator();
+
+    /**
+     * Scores every hand in an array of CardSets.
+     *
+     * @param hands
+     * The hands to score.
+     *
+     * @param strengths
+     * Gets the strength of each hand. Must be at least as long as <b>hands</b>.
+     *
+     * @param types
+     * Gets the HandType ordinal of each hand, or null if the types aren't wanted.
+     *
+     * @throws IllegalArgumentException
+     * If an output array is too short.
+     */
+    public void evaluate(long[] hands, int[] strengths, byte[] types) throws IllegalArgumentException {
+        evaluate(hands, 0, hands.length, strengths, types, 0);
+    }
+
+    /**
+     * Scores a run of hands in an array of CardSets.
+     *
+     * @param hands
+     * The hands to score.
+     *
+     * @param from
+     * The index of the first hand to score.
+     *
+     * @param count
+     * How many hands to score.
+     *
+     * @param strengths
+     * Gets the strength of each hand.
+     *
+     * @param types
+     * Gets the HandType ordinal of each hand, or null if the types aren't wanted.
+     *
+     * @param outputFrom
+     * Where in the output arrays the first hand's results go.
+     *
+     * @throws IllegalArgumentException
+     * If the run doesn't fit in the input or output arrays.
+     */
+    public void evaluate(long[] hands, int from, int count, int[] strengths, byte[] types,
+            int outputFrom) throws IllegalArgumentException {
+        checkRange(hands.length, from, count, "hands");
+        checkRange(strengths.length, outputFrom, count, "strengths");
+        if (types != null) {
+            checkRange(types.length, outputFrom, count, "types");
+        }
+
+        for (int i = 0; i < count; ++i) {
+            int value = getValue(hands[from + i]);
+            strengths[outputFrom + i] = value;
+            if (types != null) {
+                types[outputFrom + i] = getTypeOrdinal(value);
+            }
+        }
+    }
+
+    /**
+     * Finds only the type of every hand in an array of CardSets, for jobs that don't need
+     * strengths. This skips picking out important cards and kickers entirely (see
+     * BitmaskEvaluator.classify).
+     *
+     * @param hands
+     * The hands to classify.
+     *
+     * @param types
+     * Gets the HandType ordinal of each hand, or INVALID_TYPE. Must be at least as long as
+     * <b>hands</b>.
+     *
+     * @throws IllegalArgumentException
+     * If the output array is too short.
+     */
+    public void classify(long[] hands, byte[] types) throws IllegalArgumentException {
+        checkRange(types.length, 0, hands.length, "types");
+        for (int i = 0; i < hands.length; ++i) {
+            long hand = hands[i];
+            if (CardSet.size(hand) == FiveCardEvaluator.HAND_SIZE && (hand & ~CardSet.FULL_DECK) == 0) {
+                // The table already has the whole value, so this is as cheap as it gets.
+                types[i] = getTypeOrdinal(fiveCardEvaluator.getValue(hand));
+            } else {
+                Hand.HandType type = bitmaskEvaluator.classify(hand);
+                types[i] = (type == null) ? INVALID_TYPE : (byte) type.ordinal();
+            }
+        }
+    }
+
+    /**
+     * Scores hands packed into an array of card ordinals (see Card.getOrdinal), all of them
+     * the same size. The first hand is ordinals[0] through ordinals[handSize - 1], and so on.
+     *
+     * @param ordinals
+     * The packed hands. The length must be a multiple of <b>handSize</b>.
+     *
+     * @param handSize
+     * How many cards make up each hand.
+     *
+     * @param strengths
+     * Gets the strength of each hand. Must be long enough for every hand.
+     *
+     * @param types
+     * Gets the HandType ordinal of each hand, or null if the types aren't wanted.
+     *
+     * @throws IllegalArgumentException
+     * If the hand size doesn't divide the input, or an output array is too short.
+     */
+    public void evaluate(byte[] ordinals, int handSize, int[] strengths, byte[] types)
+            throws IllegalArgumentException {
+        evaluate(ordinals, handSize, 0, getHandCount(ordinals, handSize), strengths, types);
+    }
+
+    /**
+     * Scores a run of the hands packed into an array of card ordinals. Results go into the
+     * output arrays at the same index as the hand, so the first hand of the run writes to
+     * strengths[fromHand].
+     *
+     * @param ordinals
+     * The packed hands. The length must be a multiple of <b>handSize</b>.
+     *
+     * @param handSize
+     * How many cards make up each hand.
+     *
+     * @param fromHand
+     * The index (counted in hands, not ordinals) of the first hand to score.
+     *
+     * @param handCount
+     * How many hands to score.
+     *
+     * @param strengths
+     * Gets the strength of each hand.
+     *
+     * @param types
+     * Gets the HandType ordinal of each hand, or null if the types aren't wanted.
+     *
+     * @throws IllegalArgumentException
+     * If the hand size doesn't divide the input, or the run doesn't fit in the arrays.
+     */
+    public void evaluate(byte[] ordinals, int handSize, int fromHand, int handCount, int[] strengths,
+            byte[] types) throws IllegalArgumentException {
+        checkRange(getHandCount(ordinals, handSize), fromHand, handCount, "ordinals");
+        checkRange(strengths.length, fromHand, handCount, "strengths");
+        if (types != null) {
+            checkRange(types.length, fromHand, handCount, "types");
+        }
+
+        int next = fromHand * handSize;
+        for (int hand = fromHand; hand < fromHand + handCount; ++hand) {
+            long set = CardSet.EMPTY;
+            boolean isValid = true;
+            for (int card = 0; card < handSize; ++card) {
+                int ordinal = ordinals[next++];
+                if (ordinal < 0 || ordinal >= CardSet.ORDINAL_COUNT || (set & (1L << ordinal)) != 0) {
+                    // A card that doesn't exist, or a duplicate.
+                    isValid = false;
+                } else {
+                    set |= 1L << ordinal;
+                }
+            }
+            int value = isValid ? getValue(set) : HandValue.INVALID_VALUE;
+            strengths[hand] = value;
+            if (types != null) {
+                types[hand] = getTypeOrdinal(value);
+            }
+        }
+    }
+
+    /**
+     * Counts the hands packed into an array of ordinals.
+     *
+     * @param ordinals
+     * The packed hands.
+     *
+     * @param handSize
+     * How many cards make up each hand.
+     *
+     * @return
+     * The number of hands.
+     *
+     * @throws IllegalArgumentException
+     * If the hand size doesn't divide the input.
+     */
+    static int getHandCount(byte[] ordinals, int handSize) throws IllegalArgumentException {
+        if (handSize <= 0 || ordinals.length % handSize != 0) {
+            throw new IllegalArgumentException(ordinals.length + " ordinals can't be split into hands of "
+                    + handSize + " cards.");
+        }
+        return ordinals.length / handSize;
+    }
+
+    /**
+     * Gets the strength of one hand, picking the fastest evaluator for its size.
+     *
+     * @param hand
+     * A CardSet.
+     *
+     * @return
+     * The packed value of the hand, or HandValue.INVALID_VALUE if it isn't a valid hand.
+     */
+    public int getValue(long hand) {
+        if ((hand & ~CardSet.FULL_DECK) != 0) {
+            return HandValue.INVALID_VALUE;
+        } else if (CardSet.size(hand) == FiveCardEvaluator.HAND_SIZE) {
+            return fiveCardEvaluator.getValue(hand);
+        } else {
+            return bitmaskEvaluator.getValue(hand);
+        }
+    }
+
+    /**
+     * @return
+     * The HandType ordinal of a value, or INVALID_TYPE for HandValue.INVALID_VALUE.
+     */
+    private static byte getTypeOrdinal(int value) {
+        return (value == HandValue.INVALID_VALUE) ? INVALID_TYPE : (byte) (value >>> HandValue.TYPE_SHIFT);
+    }
+
+    /**
+     * Makes sure a run of <b>count</b> entries starting at <b>from</b> fits in an array.
+     *
+     * @throws IllegalArgumentException
+     * If it doesn't.
+     */
+    static void checkRange(int length, int from, int count, String name)
+            throws IllegalArgumentException {
+        if (from < 0 || count < 0 || from > length - count) {
+            throw new IllegalArgumentException("Can't fit " + count + " entries at " + from + " in "
+                    + name + ", which holds " + length + ".");
+        }
+    }
+
+}
@@ -0,0 +1,649 @@
+package com.mishmash.rally;
+
+/**
+ * An evaluator that works directly on CardSets and never allocates. It follows exactly the
+ * same rules as HandEvaluator (for any hand size, with or without the joker), but instead of
+ * sorting cards into maps of lists, it reads counts and suits straight out of the bits of
+ * the set. The little bit of scratch space it needs is kept per thread and reused, and the
+ * result comes back as a packed value (see HandValue) or in a caller-supplied
+ * EvaluationResult. Once a thread has warmed up, evaluating a hand costs zero bytes.
+ *
+ * Straights and flushes come from 13-bit masks of the values held in each suit, so there is
+ * no sorting, and the work grows only with the number of cards, whatever the hand size. A
+ * straight is a single lookup in a table indexed by the value mask, with a second table for
+ * hands where the joker can fill one missing value.
+ *
+ * The evaluator itself holds no state, so one instance can be shared by any number of threads.
+ *
+ * @author mrmcduff
+ *
+ */
+public class BitmaskEvaluator implements Evaluator {
+
+    // This engine's name for EvaluatorSelector.
+    public static final String NAME = "bitmask";
+
+    // Returned by getValue for hands that HandEvaluator would refuse to evaluate.
+    public static final int INVALID_VALUE = HandValue.INVALID_VALUE;
+
+    private static final int SCORING_HAND_SIZE = Hand.FIVE_CARD_DRAW_HAND_SIZE;
+    private static final int RANK_COUNT = CardSet.RANK_COUNT;
+    private static final int SUIT_COUNT = CardSet.SUIT_COUNT;
+
+    // Every card of one rank, indexed by rank (the card value minus two).
+    private static final long[] RANK_CARDS = new long[RANK_COUNT];
+
+    // What a hand of nothing but wild cards makes, by how many there are (up to five).
+    private static final Hand.HandType[] ALL_WILD_TYPES = { null, null, Hand.HandType.PAIR,
+            Hand.HandType.THREE_OF_A_KIND, Hand.HandType.FOUR_OF_A_KIND, Hand.HandType.FIVE_OF_A_KIND };
+
+    // The straight found among a mask of values, indexed by that mask, or zero if there isn't
+    // one. JOKER_STRAIGHTS is for hands with the joker, which can fill in one value.
+    private static final char[] STRAIGHTS = new char[1 << RANK_COUNT];
+    private static final char[] JOKER_STRAIGHTS = new char[1 << RANK_COUNT];
+
+    static {
+        for (int rank = 0; rank < RANK_COUNT; ++rank) {
+            for (int suit = 0; suit < SUIT_COUNT; ++suit) {
+                RANK_CARDS[rank] |= 1L << (suit * RANK_COUNT + rank);
+            }
+        }
+
+        int[] values = new int[RANK_COUNT];
+        for (int rankMask = 0; rankMask < STRAIGHTS.length; ++rankMask) {
+            STRAIGHTS[rankMask] = (char) findStraight(rankMask, false, values);
+            JOKER_STRAIGHTS[rankMask] = (char) findStraight(rankMask, true, values);
+        }
+    }
+
+    /**
+     * The scratch space for one thread.
+     *
+     * @author mrmcduff
+     *
+     */
+    private static class Scratch {
+        final int[] rankCounts = new int[RANK_COUNT];
+        final int[] suitMasks = new int[SUIT_COUNT];
+        final EvaluationResult result = new EvaluationResult();
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Takes hands of any size, with or without the joker.
+     */
+    @Override
+    public boolean supports(int handSize, int wildCount) {
+        return handSize > 0 && wildCount >= 0 && wildCount <= 1;
+    }
+
+    /**
+     * Evaluates a hand and sets its type and important cards, just like
+     * HandEvaluator.evaluate does. Invalid hands are left untouched.
+     *
+     * @param hand
+     * The hand to be evaluated.
+     */
+    @Override
+    public void evaluate(Hand hand) {
+        if (hand.isValid()) {
+            EvaluationResult result = new EvaluationResult();
+            evaluate(hand.getCardSet(), result);
+            result.applyTo(hand);
+        }
+    }
+
+    /**
+     * Gets the packed value (see HandValue) of a set of cards.
+     *
+     * @param cards
+     * A CardSet of any size.
+     *
+     * @return
+     * The value of the hand, or INVALID_VALUE if the set is empty or has stray bits set.
+     */
+    @Override
+    public int getValue(long cards) {
+        Scratch scratch = SCRATCH.get();
+        evaluate(cards, scratch, scratch.result);
+        return scratch.result.getValue();
+    }
+
+    /**
+     * Evaluates a set of cards into a holder that the caller supplies (and can reuse).
+     *
+     * @param cards
+     * A CardSet of any size.
+     *
+     * @param result
+     * Where to put the result. It's cleared if the set isn't a valid hand.
+     *
+     * @return
+     * True if the set was a valid hand.
+     */
+    public boolean evaluate(long cards, EvaluationResult result) {
+        return evaluate(cards, SCRATCH.get(), result);
+    }
+
+    /**
+     * Works out only the type of a set of cards, as cheaply as possible. Nothing is kept but
+     * the counts it takes to tell the types apart, so no important cards or kickers are
+     * picked, and it stops as soon as nothing left to check could beat what it has.
+     *
+     * @param cards
+     * A CardSet of any size.
+     *
+     * @return
+     * The type of the hand, exactly as evaluate would find it, or null if the set is
+     * empty or has stray bits set.
+     */
+    public Hand.HandType classify(long cards) {
+        if (cards == CardSet.EMPTY || (cards & ~CardSet.FULL_DECK) != 0) {
+            return null;
+        }
+
+        boolean hasJoker = CardSet.containsJoker(cards);
+        long natural = cards & CardSet.NATURAL_DECK;
+        if (natural == CardSet.EMPTY) {
+            return Hand.HandType.HIGH_CARD;
+        }
+
+        // The biggest collection, and how many ranks could make a second pair.
+        int maxCount = 0;
+        int pairedRanks = 0;
+        for (int rank = RANK_COUNT - 1; rank >= 0; --rank) {
+            int count = Long.bitCount(natural & RANK_CARDS[rank]);
+            maxCount = Math.max(maxCount, count);
+            if (count >= 2) {
+                ++pairedRanks;
+            }
+        }
+
+        Hand.HandType type;
+        switch(SCORING_HAND_SIZE - maxCount - (hasJoker ? 1 : 0)) {
+        case 4:
+            type = Hand.HandType.HIGH_CARD;
+            break;
+        case 3:
+            // A joker pair never has a natural pair to go with it.
+            type = (pairedRanks >= 2) ? Hand.HandType.TWO_PAIR : Hand.HandType.PAIR;
+            break;
+        case 2:
+            type = (pairedRanks >= 2) ? Hand.HandType.FULL_HOUSE : Hand.HandType.THREE_OF_A_KIND;
+            break;
+        case 1:
+            type = Hand.HandType.FOUR_OF_A_KIND;
+            break;
+        case 0:
+            return Hand.HandType.FIVE_OF_A_KIND;
+        default:
+            throw new IllegalStateException("Found a collection of " + maxCount + " cards.");
+        }
+
+        int flushSize = hasJoker ? SCORING_HAND_SIZE - 1 : SCORING_HAND_SIZE;
+        boolean hasFlush = false;
+        int rankMask = 0;
+        for (int suit = 0; suit < SUIT_COUNT; ++suit) {
+            int suitMask = (int) (natural >>> (suit * RANK_COUNT)) & CardSet.SUIT_MASK;
+            if (getStraight(suitMask, hasJoker) != 0) {
+                return Hand.HandType.STRAIGHT_FLUSH;
+            }
+            hasFlush |= Integer.bitCount(suitMask) >= flushSize;
+            rankMask |= suitMask;
+        }
+
+        if (type.compareTo(Hand.HandType.FULL_HOUSE) >= 0) {
+            return type;
+        } else if (hasFlush) {
+            return Hand.HandType.FLUSH;
+        } else if (getStraight(rankMask, hasJoker) != 0) {
+            // Everything below a full house that isn't a flush is also below a straight.
+            return Hand.HandType.STRAIGHT;
+        }
+        return type;
+    }
+
+    /**
+     * Checks a set of cards and evaluates it, with the joker as its only possible wild card.
+     *
+     * @param cards
+     * A CardSet of any size.
+     *
+     * @param scratch
+     * This thread's scratch space.
+     *
+     * @param result
+     * Where to put the result.
+     *
+     * @return
+     * True if the set was a valid hand.
+     */
+    private boolean evaluate(long cards, Scratch scratch, EvaluationResult result) {
+        if (cards == CardSet.EMPTY || (cards & ~CardSet.FULL_DECK) != 0) {
+            result.clear();
+            return false;
+        }
+
+        long wildCards = cards & CardSet.JOKER;
+        evaluate(cards & CardSet.NATURAL_DECK, wildCards, Long.bitCount(wildCards),
+                scratch.rankCounts, scratch.suitMasks, result);
+        return true;
+    }
+
+    /**
+     * Does the work of evaluating, in the same order HandEvaluator does: the best collection
+     * first, then straight flushes, flushes and straights, as long as each could still beat
+     * what we've got.
+     *
+     * The hand is its natural cards plus some number of wild cards. The joker is the only
+     * wild card a plain hand can have, but WildCardEvaluator uses this for any number of
+     * them. With one wild card or none, this is exactly HandEvaluator's evaluation. A wild
+     * card never adds a rank of its own, but does count towards the five cards of the hand.
+     * With two or more, a straight is valued by the top of the run they complete, and a hand
+     * of nothing but wild cards is a collection of aces.
+     *
+     * @param natural
+     * The natural (non-wild) cards of the hand.
+     *
+     * @param wildCards
+     * The wild cards in the hand's set, which are only important if there's nothing else.
+     *
+     * @param wildCount
+     * How many wild cards the hand has.
+     *
+     * @param rankCounts
+     * Scratch space for the number of cards of each value.
+     *
+     * @param suitMasks
+     * Scratch space for the four suit masks.
+     *
+     * @param result
+     * Where to put the result.
+     */
+    static void evaluate(long natural, long wildCards, int wildCount, int[] rankCounts,
+            int[] suitMasks, EvaluationResult result) {
+        for (int suit = 0; suit < SUIT_COUNT; ++suit) {
+            suitMasks[suit] = (int) (natural >>> (suit * RANK_COUNT)) & CardSet.SUIT_MASK;
+        }
+        for (int rank = 0; rank < RANK_COUNT; ++rank) {
+            rankCounts[rank] = Long.bitCount(natural & RANK_CARDS[rank]);
+        }
+        evaluateCounted(natural, wildCards, wildCount, rankCounts, suitMasks, result);
+    }
+
+    /**
+     * Evaluates a hand whose value counts and suit masks have already been worked out, as
+     * IncrementalEvaluator keeps them up to date a card at a time. Otherwise this is the
+     * same as evaluate.
+     *
+     * @param natural
+     * The natural (non-wild) cards of the hand.
+     *
+     * @param wildCards
+     * The wild cards in the hand's set, which are only important if there's nothing else.
+     *
+     * @param wildCount
+     * How many wild cards the hand has.
+     *
+     * @param rankCounts
+     * How many natural cards of each value the hand has, with the deuce first.
+     *
+     * @param suitMasks
+     * The natural cards of each suit, as 13-bit masks with the deuce in the lowest bit.
+     *
+     * @param result
+     * Where to put the result.
+     */
+    static void evaluateCounted(long natural, long wildCards, int wildCount, int[] rankCounts,
+            int[] suitMasks, EvaluationResult result) {
+        if (natural == CardSet.EMPTY) {
+            if (wildCount <= 1) {
+                // A lone joker is a high card hand with nothing to rank.
+                result.set(Hand.HandType.HIGH_CARD.getValue() << HandValue.TYPE_SHIFT, wildCards,
+                        CardSet.EMPTY);
+            } else {
+                // Nothing but wild cards is the biggest collection of aces they can make.
+                Hand.HandType type = ALL_WILD_TYPES[Math.min(wildCount, SCORING_HAND_SIZE)];
+                result.set(type.getValue() << HandValue.TYPE_SHIFT
+                        | Card.MAX_CARD_VALUE << getShift(0), wildCards, CardSet.EMPTY);
+            }
+            return;
+        }
+
+        int rankMask = 0;
+        for (int suit = 0; suit < SUIT_COUNT; ++suit) {
+            rankMask |= suitMasks[suit];
+        }
+
+        // The best natural collection is the biggest one, and the highest of those.
+        int topRank = -1;
+        int maxCount = 0;
+        for (int rank = RANK_COUNT - 1; rank >= 0; --rank) {
+            int count = rankCounts[rank];
+            if (count > maxCount) {
+                maxCount = count;
+                topRank = rank;
+            }
+        }
+
+        Hand.HandType type;
+        long important = natural & RANK_CARDS[topRank];
+        long other = CardSet.EMPTY;
+        // Every wild card joins the best collection. More than enough of them is still five.
+        int compliment = Math.max(0, SCORING_HAND_SIZE - maxCount - wildCount);
+        switch(compliment) {
+        case 4:
+            type = Hand.HandType.HIGH_CARD;
+            break;
+        case 3:
+            // Two pair at best. The rest of the hand's best collection is either a second
+            // pair, or the single card that HandEvaluator keeps as the kicker.
+            int secondRank = -1;
+            int secondCount = 0;
+            for (int rank = RANK_COUNT - 1; rank >= 0; --rank) {
+                int count = rankCounts[rank];
+                if (rank != topRank && count > secondCount) {
+                    secondCount = count;
+                    secondRank = rank;
+                }
+            }
+            if (secondRank >= 0) {
+                other = natural & RANK_CARDS[secondRank];
+            }
+            type = (secondCount == 2) ? Hand.HandType.TWO_PAIR : Hand.HandType.PAIR;
+            break;
+        case 2:
+            // A full house needs the highest other rank with at least two cards, of which
+            // we keep the top two.
+            type = Hand.HandType.THREE_OF_A_KIND;
+            for (int rank = RANK_COUNT - 1; rank >= 0 && other == CardSet.EMPTY; --rank) {
+                if (rank != topRank && rankCounts[rank] >= 2) {
+                    long rankCards = natural & RANK_CARDS[rank];
+                    other = Long.highestOneBit(rankCards);
+                    other |= Long.highestOneBit(rankCards & ~other);
+                    type = Hand.HandType.FULL_HOUSE;
+                }
+            }
+            break;
+        case 1:
+            type = Hand.HandType.FOUR_OF_A_KIND;
+            break;
+        case 0:
+            type = Hand.HandType.FIVE_OF_A_KIND;
+            break;
+        default:
+            throw new IllegalStateException("Found a collection of " + maxCount + " cards.");
+        }
+
+        if (type.compareTo(Hand.HandType.FIVE_OF_A_KIND) < 0) {
+            // Suits are checked spades first, and a later suit only wins if it's strictly
+            // better. Two sets of the same size compare the way their bitmasks do.
+            int bestStraightFlush = 0;
+            int bestSuit = -1;
+            for (int suit = SUIT_COUNT - 1; suit >= 0; --suit) {
+                int straight = getStraight(suitMasks[suit], wildCount);
+                if (straight > bestStraightFlush) {
+                    bestStraightFlush = straight;
+                    bestSuit = suit;
+                }
+            }
+
+            if (bestStraightFlush != 0) {
+                type = Hand.HandType.STRAIGHT_FLUSH;
+                important = (long) bestStraightFlush << (bestSuit * RANK_COUNT);
+                other = CardSet.EMPTY;
+            } else if (type.compareTo(Hand.HandType.FULL_HOUSE) < 0) {
+                int flushSize = SCORING_HAND_SIZE - wildCount;
+                int bestFlush = 0;
+                for (int suit = SUIT_COUNT - 1; suit >= 0; --suit) {
+                    int flush = suitMasks[suit];
+                    if (Integer.bitCount(flush) >= flushSize) {
+                        while (Integer.bitCount(flush) > flushSize) {
+                            flush &= flush - 1;
+                        }
+                        if (flush > bestFlush) {
+                            bestFlush = flush;
+                            bestSuit = suit;
+                        }
+                    }
+                }
+
+                if (bestFlush != 0) {
+                    type = Hand.HandType.FLUSH;
+                    important = (long) bestFlush << (bestSuit * RANK_COUNT);
+                    other = CardSet.EMPTY;
+                } else if (type.compareTo(Hand.HandType.STRAIGHT) < 0) {
+                    int straight = getStraight(rankMask, wildCount);
+                    if (straight != 0) {
+                        type = Hand.HandType.STRAIGHT;
+                        // One card per rank, from the highest suit.
+                        important = CardSet.EMPTY;
+                        for (int rank = 0; rank < RANK_COUNT; ++rank) {
+                            if ((straight & (1 << rank)) != 0) {
+                                important |= Long.highestOneBit(natural & RANK_CARDS[rank]);
+                            }
+                        }
+                        other = CardSet.EMPTY;
+                    }
+                }
+            }
+        }
+
+        result.set(getValue(type, natural, important, other, wildCount), important, other);
+    }
+
+    /**
+     * Looks up the straight among a set of card values.
+     *
+     * @param rankMask
+     * The card values to search, as a 13-bit mask with the deuce in the lowest bit.
+     *
+     * @param withJoker
+     * Whether the joker can fill one gap (or one end).
+     *
+     * @return
+     * The values making up the straight, as a mask, or zero if there is none. With the
+     * joker, the straight is four natural values long.
+     */
+    private static int getStraight(int rankMask, boolean withJoker) {
+        return withJoker ? JOKER_STRAIGHTS[rankMask] : STRAIGHTS[rankMask];
+    }
+
+    /**
+     * Looks up the straight among a set of card values, with any number of wild cards to
+     * fill gaps. Zero and one use this class's tables, and more than that go to
+     * WildCardEvaluator's.
+     *
+     * @param rankMask
+     * The card values to search, as a 13-bit mask with the deuce in the lowest bit.
+     *
+     * @param wildCount
+     * How many wild cards there are.
+     *
+     * @return
+     * The natural values making up the straight, as a mask, or zero if there is none.
+     */
+    private static int getStraight(int rankMask, int wildCount) {
+        return (wildCount <= 1) ? getStraight(rankMask, wildCount == 1)
+                : WildCardEvaluator.getStraight(rankMask, wildCount);
+    }
+
+    /**
+     * Finds a straight among a set of card values, following HandEvaluator's scan over a
+     * descending list exactly. That includes the joker cases where the scan backs up past a
+     * gap and misses a straight lower down, which is why the tables are filled this way
+     * rather than by looking for four values out of five in a row. It only runs while the
+     * tables are built.
+     *
+     * @param rankMask
+     * The card values to search, as a 13-bit mask with the deuce in the lowest bit.
+     *
+     * @param withJoker
+     * Whether the joker can fill one gap (or one end).
+     *
+     * @param values
+     * Scratch space for the values in descending order.
+     *
+     * @return
+     * The values making up the straight, as a mask, or zero if there is none. With the
+     * joker, the straight is four natural values long.
+     */
+    private static int findStraight(int rankMask, boolean withJoker, int[] values) {
+        int minStraightSize = withJoker ? SCORING_HAND_SIZE - 1 : SCORING_HAND_SIZE;
+        if (Integer.bitCount(rankMask) < minStraightSize) {
+            return 0;
+        }
+
+        int size = 0;
+        for (int rank = RANK_COUNT - 1; rank >= 0; --rank) {
+            if ((rankMask & (1 << rank)) != 0) {
+                values[size++] = rank + Card.MIN_CARD_VALUE;
+            }
+        }
+
+        int answer = 0;
+        int answerSize = 0;
+        int currentStartingValue = 0;
+        int lastValue = 0;
+        int jokerGapIndex = 0;
+        boolean passedGapAlready = false;
+        for (int i = 0; i < size; ++i) {
+            int value = values[i];
+            if (lastValue == 0 || answerSize == 0) {
+                currentStartingValue = value;
+            } else if (lastValue - 1 == value) {
+                // Counting down normally.
+            } else if (lastValue - 2 == value && !passedGapAlready && withJoker) {
+                passedGapAlready = true;
+                jokerGapIndex = i - 1;
+            } else {
+                answer = 0;
+                answerSize = 0;
+                if (withJoker && passedGapAlready) {
+                    if (jokerGapIndex > 0) {
+                        i = jokerGapIndex;
+                    }
+                    jokerGapIndex = 0;
+                    lastValue = 0;
+                    passedGapAlready = false;
+                    continue;
+                } else {
+                    currentStartingValue = value;
+                }
+            }
+
+            lastValue = value;
+            answer |= 1 << (value - Card.MIN_CARD_VALUE);
+            ++answerSize;
+            int split = currentStartingValue - lastValue;
+            if ((split + 1 == SCORING_HAND_SIZE)
+                    || ((split + 2 == SCORING_HAND_SIZE) && withJoker && !passedGapAlready)) {
+                break;
+            }
+        }
+
+        if (answerSize == SCORING_HAND_SIZE || (answerSize + 1 == SCORING_HAND_SIZE && withJoker)) {
+            return answer;
+        }
+        return 0;
+    }
+
+    /**
+     * Packs a value the same way HandValue.valueOf(Hand) does: the ranks of the important
+     * cards, then of the second important cards, then kickers until five cards (counting
+     * the wild cards) are accounted for. A straight or straight flush is just its top rank.
+     *
+     * @param type
+     * The hand type.
+     *
+     * @param natural
+     * The natural cards of the hand.
+     *
+     * @param important
+     * The important cards.
+     *
+     * @param other
+     * The second important cards.
+     *
+     * @param wildCount
+     * How many wild cards the hand has.
+     *
+     * @return
+     * The packed value.
+     */
+    private static int getValue(Hand.HandType type, long natural, long important, long other,
+            int wildCount) {
+        int value = type.getValue() << HandValue.TYPE_SHIFT;
+        if (type == Hand.HandType.STRAIGHT || type == Hand.HandType.STRAIGHT_FLUSH) {
+            int topRank = -1;
+            if (wildCount <= 1) {
+                // The highest natural card, as HandEvaluator has it, even when the joker
+                // sits above it.
+                for (int rank = RANK_COUNT - 1; rank >= 0 && topRank < 0; --rank) {
+                    if ((important & RANK_CARDS[rank]) != 0) {
+                        topRank = rank;
+                    }
+                }
+            } else {
+                // The top of the run the wild cards complete, which is always the highest
+                // one that holds the natural cards.
+                for (int rank = 0; rank < RANK_COUNT && topRank < 0; ++rank) {
+                    if ((important & RANK_CARDS[rank]) != 0) {
+                        topRank = Math.min(rank + SCORING_HAND_SIZE - 1, RANK_COUNT - 1);
+                    }
+                }
+            }
+            return value | (topRank + Card.MIN_CARD_VALUE) << getShift(0);
+        }
+        int count = 0;
+        int used = 0;
+        for (int rank = RANK_COUNT - 1; rank >= 0; --rank) {
+            int cardsOfRank = Long.bitCount(important & RANK_CARDS[rank]);
+            if (cardsOfRank > 0) {
+                used += cardsOfRank;
+                value |= (rank + Card.MIN_CARD_VALUE) << getShift(count++);
+            }
+        }
+        for (int rank = RANK_COUNT - 1; rank >= 0; --rank) {
+            int cardsOfRank = Long.bitCount(other & RANK_CARDS[rank]);
+            if (cardsOfRank > 0) {
+                used += cardsOfRank;
+                value |= (rank + Card.MIN_CARD_VALUE) << getShift(count++);
+            }
+        }
+        // The wild cards are part of every made hand. A hand of nothing else never gets here.
+        used += wildCount;
+
+        // Kickers are the best natural cards that aren't already part of the hand.
+        long kickers = natural & ~important & ~other;
+        for (int rank = RANK_COUNT - 1; rank >= 0; --rank) {
+            int cardsOfRank = Long.bitCount(kickers & RANK_CARDS[rank]);
+            for (; cardsOfRank > 0 && used < HandValue.RANK_SLOTS && count < HandValue.RANK_SLOTS;
+                    --cardsOfRank) {
+                value |= (rank + Card.MIN_CARD_VALUE) << getShift(count++);
+                ++used;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return
+     * How far to shift the rank at the given position of a packed value.
+     */
+    private static int getShift(int position) {
+        return (HandValue.RANK_SLOTS - 1 - position) * HandValue.RANK_BITS;
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.mishmash.rally;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A window onto a run of ASCII bytes in a ByteBuffer, seen as characters. It lets the
+ * CardScanner read a line straight out of a buffer (a memory-mapped file, say) without
+ * decoding it into a String first. The window can be moved from line to line, so one
+ * sequence does for a whole buffer.
+ *
+ * Each byte is taken as one character from 0 to 255, so anything outside ASCII comes
+ * through as a character the scanner doesn't accept.
+ *
+ * @author mrmcduff
+ *
+ */
+final class ByteSequence implements CharSequence {
+
+    private static final int BYTE_MASK = 0xFF;
+
+    private final ByteBuffer buffer;
+    private int start = 0;
+    private int end = 0;
+
+    /**
+     * Constructor for an empty window onto a buffer.
+     *
+     * @param buffer
+     * The buffer to read. Its position and limit are never changed.
+     */
+    ByteSequence(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Moves the window.
+     *
+     * @param start
+     * The index in the buffer of the first byte to show.
+     *
+     * @param end
+     * The index just past the last one.
+     */
+    void set(int start, int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return this.end - this.start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (this.buffer.get(this.start + index) & BYTE_MASK);
+    }
+
+    /**
+     * Copies part of the window out as a String, which is only needed to report bad tokens.
+     */
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > length() || from > to) {
+            throw new IndexOutOfBoundsException("Can't take " + from + " to " + to + " of "
+                    + length() + " characters.");
+        }
+        char[] chars = new char[to - from];
+        for (int i = 0; i < chars.length; ++i) {
+            chars[i] = charAt(from + i);
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length()).toString();
+    }
+
+}
@@ -0,0 +1,273 @@
+package com.mishmash.rally;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A HandEvaluator with a cache in front of it, for workloads that see the same hands (or
+ * suit swaps of them) over and over, such as replayed hand histories. Strengths are cached
+ * under the canonical form of the hand (see SuitCanonicalizer), so a hand whose suits have
+ * only been swapped around is a hit too.
+ *
+ * The cache holds a bounded number of entries and throws out the least recently used one
+ * when it's full. It's split into segments, each with its own lock, so threads sharing one
+ * CachingEvaluator rarely wait on each other. Hits and misses are counted for monitoring.
+ *
+ * @author mrmcduff
+ *
+ */
+public class CachingEvaluator {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    // The most segments the cache is split into. Small caches get fewer.
+    private static final int SEGMENT_COUNT = 16;
+
+    /**
+     * One piece of the cache: a map in least-recently-used order that drops its eldest
+     * entry once it's over capacity. It's only used while holding its own lock.
+     *
+     * @author mrmcduff
+     *
+     */
+    private static class Segment extends LinkedHashMap<Long, Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            // Ordering by access rather than by insertion is what makes this LRU.
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+            return size() > this.capacity;
+        }
+    }
+
+    private final HandEvaluator evaluator = new HandEvaluator();
+    private final Segment[] segments;
+    private final int capacity;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor for a cache of DEFAULT_CAPACITY entries.
+     */
+    public CachingEvaluator() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for a cache of a given size.
+     *
+     * @param capacity
+     * The most entries the cache will hold.
+     *
+     * @throws IllegalArgumentException
+     * If the capacity isn't positive.
+     */
+    public CachingEvaluator(int capacity) throws IllegalArgumentException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Can't make a cache of " + capacity + " entries.");
+        }
+        int segmentCount = Math.min(SEGMENT_COUNT, capacity);
+        this.segments = new Segment[segmentCount];
+        // Every segment gets an even share, so the total never goes over the capacity.
+        for (int i = 0; i < segmentCount; ++i) {
+            this.segments[i] = new Segment(capacity / segmentCount);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Evaluates a hand, just as HandEvaluator.evaluate does. On a hit, the hand's type,
+     * strength and important cards all come from the cached strength without evaluating
+     * anything, except in the rare hand where two suits could both hold its flush. Invalid
+     * hands are left untouched and never cached.
+     *
+     * @param hand
+     * The hand to be evaluated.
+     */
+    public void evaluate(Hand hand) {
+        if (!hand.isValid()) {
+            return;
+        }
+        long cards = hand.getCardSet();
+        Long key = Long.valueOf(SuitCanonicalizer.canonicalize(cards));
+        Integer value = get(key);
+        if (value == null) {
+            this.evaluator.evaluate(hand);
+            put(key, Integer.valueOf(hand.getStrength()));
+            return;
+        }
+
+        int flushSuit = -1;
+        Hand.HandType type = HandValue.getHandType(value.intValue());
+        if (type == Hand.HandType.FLUSH || type == Hand.HandType.STRAIGHT_FLUSH) {
+            flushSuit = getOnlyFlushSuit(cards);
+            if (flushSuit < 0) {
+                // Which suit wins depends on the suits themselves, so the strength alone
+                // can't tell us which cards are important.
+                this.evaluator.evaluate(hand);
+                return;
+            }
+        }
+        HandValue.applyTo(hand, value.intValue(), flushSuit);
+    }
+
+    /**
+     * Gets the strength of a set of cards.
+     *
+     * @param cards
+     * A CardSet of any size.
+     *
+     * @return
+     * The packed value (see HandValue) of the hand, or HandValue.INVALID_VALUE if the set is
+     * empty or has stray bits set.
+     */
+    public int getValue(long cards) {
+        if (cards == CardSet.EMPTY || (cards & ~CardSet.FULL_DECK) != 0) {
+            return HandValue.INVALID_VALUE;
+        }
+        Long key = Long.valueOf(SuitCanonicalizer.canonicalize(cards));
+        Integer value = get(key);
+        if (value == null) {
+            Hand hand = CardSet.toHand(key.longValue());
+            this.evaluator.evaluate(hand);
+            value = Integer.valueOf(hand.getStrength());
+            put(key, value);
+        }
+        return value.intValue();
+    }
+
+    /**
+     * Looks up a canonical hand, counting the hit or miss.
+     *
+     * @param key
+     * The canonical CardSet.
+     *
+     * @return
+     * The cached strength, or null if there isn't one.
+     */
+    private Integer get(Long key) {
+        Segment segment = getSegment(key);
+        Integer value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value == null) {
+            this.misses.incrementAndGet();
+        } else {
+            this.hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Caches the strength of a canonical hand.
+     *
+     * @param key
+     * The canonical CardSet.
+     *
+     * @param value
+     * Its strength.
+     */
+    private void put(Long key, Integer value) {
+        Segment segment = getSegment(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    /**
+     * @return
+     * The segment that holds a key.
+     */
+    private Segment getSegment(Long key) {
+        // Spread the bits out first, since similar hands differ in only a few of them.
+        long hash = key.longValue() * 0x9E3779B97F4A7C15L;
+        return this.segments[(int) ((hash >>> 32) & Integer.MAX_VALUE) % this.segments.length];
+    }
+
+    /**
+     * Finds the suit of a flush, if only one suit holds enough cards to make one.
+     *
+     * @param cards
+     * The CardSet of a hand with a flush or straight flush.
+     *
+     * @return
+     * The CardSet suit index of the only suit that could hold the flush, or -1 if more
+     * than one could.
+     */
+    private static int getOnlyFlushSuit(long cards) {
+        int flushSize = CardSet.containsJoker(cards) ? HandEvaluator.SCORING_HAND_SIZE - 1
+                : HandEvaluator.SCORING_HAND_SIZE;
+        int flushSuit = -1;
+        for (int suit = 0; suit < CardSet.SUIT_COUNT; ++suit) {
+            int suitMask = (int) (cards >>> (suit * CardSet.RANK_COUNT)) & CardSet.SUIT_MASK;
+            if (Integer.bitCount(suitMask) >= flushSize) {
+                if (flushSuit >= 0) {
+                    return -1;
+                }
+                flushSuit = suit;
+            }
+        }
+        return flushSuit;
+    }
+
+    /**
+     * @return
+     * How many lookups have found their hand in the cache.
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     * How many lookups have had to evaluate their hand.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return
+     * The most entries the cache will hold.
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return
+     * How many entries the cache holds right now.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Empties the cache and resets the hit and miss counts.
+     */
+    public void clear() {
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        this.hits.set(0);
+        this.misses.set(0);
+    }
+
+}
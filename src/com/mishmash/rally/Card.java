@@ -4,6 +4,10 @@ package com.mishmash.rally;
  * Our basic item in a card game, and the building blocks of our hands.
  * A card has a numeric value and a suit, and can verify that it is valid.
  * 
+ * There is one shared, unchangeable (canonical) instance of each of the 53 real
+ * cards, available through valueOf and fromOrdinal. Parsing and dealing use those
+ * so they don't allocate. Cards made with a constructor can still be changed.
+ * 
  * @author mrmcduff
  *
  */
@@ -81,20 +85,60 @@ public class Card implements Comparable<Card>{
     // There is no card higher than an ace
     public static final int MAX_CARD_VALUE = 14;
     
+    // The number of distinct natural card values, deuce through ace.
+    public static final int RANK_COUNT = MAX_CARD_VALUE - MIN_CARD_VALUE + 1;
+    
+    // The number of natural suits. The joker doesn't count.
+    public static final int NATURAL_SUIT_COUNT = 4;
+    
+    // The joker comes after every natural card in ordinal order.
+    public static final int JOKER_ORDINAL = RANK_COUNT * NATURAL_SUIT_COUNT;
+    public static final int ORDINAL_COUNT = JOKER_ORDINAL + 1;
+    
+    // The ordinal of a card that isn't valid.
+    public static final int INVALID_ORDINAL = -1;
+    
+    // Sort keys leave room for every suit value between one card value and the next,
+    // and the joker's key is above them all.
+    private static final int SUIT_SPAN = 8;
+    private static final int JOKER_SORT_KEY = (MAX_CARD_VALUE + 1) * SUIT_SPAN;
+    
+    // One shared, unchangeable card for every ordinal.
+    private static final Card[] CANONICAL_CARDS = new Card[ORDINAL_COUNT];
+    
+    static {
+        for (int ordinal = 0; ordinal < JOKER_ORDINAL; ++ordinal) {
+            Suit suit = Suit.values()[ordinal / RANK_COUNT];
+            CANONICAL_CARDS[ordinal] = new Card(ordinal % RANK_COUNT + MIN_CARD_VALUE, suit, true);
+        }
+        CANONICAL_CARDS[JOKER_ORDINAL] = new Card(0, Suit.JOKER, true);
+    }
+    
     // The numeric value of the card.
     private int value = 0;
     
     // The suit of the card.
     private Suit suit = Suit.JOKER;
     
+    // Both of these are worked out whenever the value or suit changes, so comparing
+    // and hashing cards is just arithmetic.
+    private int sortKey = JOKER_SORT_KEY;
+    private int ordinal = JOKER_ORDINAL;
+    
+    // Canonical cards are shared, so they can't be changed.
+    private final boolean canonical;
+    
     /**
      * No-arg constructor for a card. Useful as a quick way to
      * create a joker.
      */
-    public Card() {}
+    public Card() {
+        this.canonical = false;
+    }
     
     /**
-     * Standard constructor for a card.
+     * Standard constructor for a card. Prefer valueOf, which hands
+     * out shared cards instead of making new ones.
      * 
      * @param value
      * Numeric value, which must be between 2 and 14, inclusive,
@@ -104,10 +148,78 @@ public class Card implements Comparable<Card>{
      * The card's suit.
      */
     public Card(int value, Suit suit) {
+        this.canonical = false;
         setValue(value);
         setSuit(suit);
     }
     
+    /**
+     * Constructor for the canonical cards.
+     * 
+     * @param value
+     * A valid numeric value, or anything for the joker.
+     * 
+     * @param suit
+     * The card's suit.
+     * 
+     * @param canonical
+     * Always true. This just keeps the signature apart from the public constructor.
+     */
+    private Card(int value, Suit suit, boolean canonical) {
+        this.value = value;
+        this.suit = suit;
+        this.canonical = canonical;
+        updateKeys();
+    }
+    
+    /**
+     * Gets the shared card with the given value and suit. Canonical cards can't be
+     * changed, so they can be handed out as often as we like without allocating anything.
+     * 
+     * @param value
+     * Numeric value between 2 and 14, inclusive. Ignored for the joker.
+     * 
+     * @param suit
+     * The card's suit.
+     * 
+     * @return
+     * The canonical card.
+     * 
+     * @throws IllegalArgumentException
+     * If the value is out of range for a natural card.
+     */
+    public static Card valueOf(int value, Suit suit) throws IllegalArgumentException {
+        if (suit == Suit.JOKER) {
+            return CANONICAL_CARDS[JOKER_ORDINAL];
+        } else if (value < MIN_CARD_VALUE || value > MAX_CARD_VALUE) {
+            throw new IllegalArgumentException("There is no " + value + " of " + suit + ".");
+        }
+        return CANONICAL_CARDS[(suit.getSuitValue() - 1) * RANK_COUNT + value - MIN_CARD_VALUE];
+    }
+    
+    /**
+     * Gets the shared card with the given ordinal.
+     * 
+     * @param ordinal
+     * A card ordinal (see getOrdinal), from 0 to 52.
+     * 
+     * @return
+     * The canonical card.
+     */
+    public static Card fromOrdinal(int ordinal) {
+        return CANONICAL_CARDS[ordinal];
+    }
+    
+    /**
+     * Gets the shared joker.
+     * 
+     * @return
+     * The canonical joker.
+     */
+    public static Card joker() {
+        return CANONICAL_CARDS[JOKER_ORDINAL];
+    }
+    
     /**
      * Getter for the numeric value of the card.
      * 
@@ -126,6 +238,28 @@ public class Card implements Comparable<Card>{
         return this.suit;
     }
     
+    /**
+     * Gets the ordinal of the card. Natural cards are numbered suit by suit,
+     * clubs first, so the deuce of clubs is 0 and the ace of spades is 51. The
+     * joker is 52. This is the same numbering CardSet uses for its bits.
+     * 
+     * @return
+     * The card's ordinal, or INVALID_ORDINAL if the card isn't valid.
+     */
+    public int getOrdinal() {
+        return this.ordinal;
+    }
+    
+    /**
+     * Checks whether this is one of the shared cards handed out by valueOf.
+     * 
+     * @return
+     * True if this card is canonical, and so can't be changed.
+     */
+    public boolean isCanonical() {
+        return this.canonical;
+    }
+    
     /**
      * Setter for the numeric value of the card. Defends
      * against invalid values.
@@ -134,10 +268,15 @@ public class Card implements Comparable<Card>{
      * The new numeric value.
      * 
      * @return True if the value was correctly set. Otherwise false.
+     * 
+     * @throws UnsupportedOperationException
+     * If this is a canonical card.
      */
-    public boolean setValue(int value) {
+    public boolean setValue(int value) throws UnsupportedOperationException {
+        checkChangeable();
         if (value >= MIN_CARD_VALUE && value <= MAX_CARD_VALUE) {
             this.value = value;
+            updateKeys();
             return true;
         } else {
             return false;
@@ -149,9 +288,40 @@ public class Card implements Comparable<Card>{
      * 
      * @param suit
      * The suit to set.
+     * 
+     * @throws UnsupportedOperationException
+     * If this is a canonical card.
      */
-    public void setSuit(Suit suit) {
+    public void setSuit(Suit suit) throws UnsupportedOperationException {
+        checkChangeable();
         this.suit = suit;
+        updateKeys();
+    }
+    
+    /**
+     * Makes sure nobody changes a canonical card out from under everyone else.
+     * 
+     * @throws UnsupportedOperationException
+     * If this is a canonical card.
+     */
+    private void checkChangeable() throws UnsupportedOperationException {
+        if (this.canonical) {
+            throw new UnsupportedOperationException("The " + this + " is shared and can't be changed.");
+        }
+    }
+    
+    /**
+     * Works out the sort key and ordinal from the value and suit.
+     */
+    private void updateKeys() {
+        if (this.suit == Suit.JOKER) {
+            this.sortKey = JOKER_SORT_KEY;
+            this.ordinal = JOKER_ORDINAL;
+        } else {
+            this.sortKey = this.value * SUIT_SPAN + this.suit.getSuitValue();
+            this.ordinal = isValid() ? 
+                    (this.suit.getSuitValue() - 1) * RANK_COUNT + this.value - MIN_CARD_VALUE : INVALID_ORDINAL;
+        }
     }
     
     /**
@@ -228,29 +398,10 @@ public class Card implements Comparable<Card>{
      */
     @Override
     public int compareTo(Card other) {
-        if (this.getSuit() == Suit.JOKER) {
-            if (other.getSuit() == Suit.JOKER) { 
-                return 0;
-            } else {
-                // For sorting purposes, the joker is the highest card.
-                return 1;
-            }
-        } else if (other.getSuit() == Suit.JOKER) {
-            // We've already taken care of the case where THIS is the joker, so 
-            // we know THIS is less than OTHER
-            return -1;
-        } else {
-            // a positive number if THIS is a higher card, and 
-            // a negative number if THIS is a lower card.
-            int valueDifference = this.getValue() - other.getValue();
-            if (valueDifference != 0) {
-                return valueDifference;
-            } else {
-                // There is technically an ordering on suits. The main reason I'm making a 
-                // difference in compareTo is so that it plays well with sorting and equals.
-                return this.getSuit().getSuitValue() - other.getSuit().getSuitValue();
-            }
-        }
+        // The sort key orders cards by value, then by suit (there is technically an
+        // ordering on suits, and it makes compareTo play well with equals). All
+        // jokers share the highest key, so for sorting purposes the joker is the highest card.
+        return this.sortKey - other.sortKey;
     }
     
     /**
@@ -281,12 +432,9 @@ public class Card implements Comparable<Card>{
      */
     @Override
     public int hashCode() {
-        final int goodEnoughForHorseshoesPrime = 37;
-        if (this.suit == Suit.JOKER) {
-            return Suit.JOKER.hashCode();
-        } else {
-            return this.suit.hashCode() + goodEnoughForHorseshoesPrime * this.value;
-        }
+        // Equal cards always have equal sort keys, and unlike the enum's own
+        // hash code, the key is the same from one run to the next.
+        return this.sortKey;
     }
     
     /**
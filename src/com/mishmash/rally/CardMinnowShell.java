@@ -2,15 +2,24 @@ package com.mishmash.rally;
 
 import java.io.BufferedWriter;
 import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 
 /**
  * This class handles the interactive shell prompt that is the interface for the game.
  * The only logic handled here is whether or not to show an advanced error message, whether
  * to quit, or to display the rules.
  * 
+ * There's also a batch mode for piping hands through the program. It reads one hand per
+ * line and writes one result per line, with no introduction or prompts, and doesn't flush
+ * until its buffer fills up or the input runs out.
+ * 
  * @author mrmcduff
  *
  */
@@ -37,7 +46,7 @@ public class CardMinnowShell {
     private final String QUIT = "quit";
     private final String GOODBYE = "Goodbye, and thanks for playing CardMinnow.\n";
     private final String YOU_HAVE = "Your best hand is: ";
-    private final String INVALID_HAND = "That's an invalid hand. " +
+    static final String INVALID_HAND = "That's an invalid hand. " +
     		"Remember, you're not allowed to have duplicates.\n";
     
     private final String EXPLAIN = 
@@ -55,12 +64,15 @@ public class CardMinnowShell {
     		"\n"+
     		"Separate your card entries by spaces, commas, or semicolons.\n";
     
-    private final String WRITE_SOMETHING = 
+    static final String WRITE_SOMETHING = 
             "You have to write something or CardMinnow won't know what to evaluate.\n";
     
     // This is the only error value that means "quit now"
     private final int EXIT_VALUE = -1;
     
+    // Batch output is only written out when this many characters have piled up, or at the end.
+    private static final int BATCH_BUFFER_SIZE = 1 << 16;
+    
     /**
      * Default constructor. Requires no args.
      */
@@ -68,7 +80,7 @@ public class CardMinnowShell {
     
     /**
      * Runs the interactive shell that is the interface for the game. This method
-     * runs until the user types 'exit' or 'quit'.
+     * runs until the user types 'exit' or 'quit', or the input runs out.
      */
     public void runShell() {
         boolean exitRequested = false;
@@ -81,16 +93,132 @@ public class CardMinnowShell {
             while(!exitRequested) {
                 prompt(buffout, numErrors);
                 String input = buff.readLine();
-                numErrors = evaluateInput(input, buffout, numErrors);
-                if (numErrors == EXIT_VALUE) {
+                if (input == null) {
+                    // The input was closed (or piped from a file that ran out), so there's
+                    // nothing more to read.
                     exitRequested = true;
+                } else {
+                    numErrors = evaluateInput(input, buffout, numErrors);
+                    if (numErrors == EXIT_VALUE) {
+                        exitRequested = true;
+                    }
                 }
             }
+            buffout.flush();
         } catch (IOException ioe) {
             System.out.println("Sorry, but an IO Exception has occured. Please try restarting the program.");
         }
     }
     
+    /**
+     * Evaluates every hand in a file, or in the standard input, and writes the results to the
+     * standard output.
+     * 
+     * @param fileName
+     * The file to read, or null to read the standard input.
+     * 
+     * @return
+     * True if all the input was read, or false if it couldn't be, in which case the reason
+     * has been written to the standard error.
+     */
+    public boolean runBatch(String fileName) {
+        return runBatch(fileName, null);
+    }
+    
+    /**
+     * Evaluates every hand in a file, or in the standard input, and writes the results to the
+     * standard output, optionally through a pipeline.
+     * 
+     * @param fileName
+     * The file to read, or null to read the standard input.
+     * 
+     * @param pipeline
+     * The pipeline to run the hands through, or null to do it all on this thread. A
+     * pipeline's report goes to the standard error once the input is done.
+     * 
+     * @return
+     * True if all the input was read, or false if it couldn't be, in which case the reason
+     * has been written to the standard error.
+     */
+    public boolean runBatch(String fileName, HandPipeline pipeline) {
+        InputStream in = System.in;
+        try {
+            if (fileName != null) {
+                in = new FileInputStream(fileName);
+            }
+        } catch (FileNotFoundException fnfe) {
+            System.err.println("Couldn't open " + fileName + ": " + fnfe.getMessage());
+            return false;
+        }
+        try {
+            try {
+                Reader input = new InputStreamReader(in);
+                Writer output = new OutputStreamWriter(System.out);
+                if (pipeline == null) {
+                    runBatch(input, output);
+                } else {
+                    System.err.print(pipeline.run(input, output));
+                }
+            } finally {
+                if (fileName != null) {
+                    in.close();
+                }
+            }
+        } catch (IOException ioe) {
+            System.err.println("Couldn't finish reading the hands: " + ioe.getMessage());
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Evaluates one hand per line of input, writing one line of output for each. A good
+     * hand gets its description, and anything else gets the reason it couldn't be
+     * evaluated. There are no commands in batch mode, so 'help' and 'quit' are just bad
+     * hands. Output is buffered, and flushed when the buffer fills up and once at the end.
+     * 
+     * @param input
+     * Where to read the hands. It's read to the end, but not closed.
+     * 
+     * @param output
+     * Where to write the results. It's flushed, but not closed.
+     * 
+     * @return
+     * The number of lines that were read.
+     * 
+     * @throws IOException
+     * If the input can't be read or the output can't be written.
+     */
+    public long runBatch(Reader input, Writer output) throws IOException {
+        BufferedReader buff = new BufferedReader(input, BATCH_BUFFER_SIZE);
+        BufferedWriter buffout = new BufferedWriter(output, BATCH_BUFFER_SIZE);
+        long lineCount = 0;
+        String line = buff.readLine();
+        while (line != null) {
+            ++lineCount;
+            if (line.trim().equals("")) {
+                buffout.write(WRITE_SOMETHING);
+            } else {
+                ParseResult parsed = Interpreter.parse(line);
+                if (!parsed.isSuccessful()) {
+                    buffout.write(parsed.getErrorMessage());
+                    buffout.write('\n');
+                } else {
+                    Hand hand = new Hand(parsed.getCards());
+                    if (hand.isValid()) {
+                        buffout.write(hand.getDescription());
+                        buffout.write('\n');
+                    } else {
+                        buffout.write(INVALID_HAND);
+                    }
+                }
+            }
+            line = buff.readLine();
+        }
+        buffout.flush();
+        return lineCount;
+    }
+    
     /**
      * Prints the introduction to the game into the given buffered writer.
      * @param bw
@@ -134,8 +262,8 @@ public class CardMinnowShell {
     
     /**
      * Not <i>much</i> evaluation is done here. We check for keywords, then pass the string on
-     * to the Interpreter. If we get exceptions, we catch them and relay the information back
-     * to the user. We do keep track of how many 'bad' items in a row the user inputs to give
+     * to the Interpreter. If it finds bad tokens, we relay its message back to the user.
+     * We do keep track of how many 'bad' items in a row the user inputs to give
      * slightly different feedback.
      * 
      * @param input
@@ -169,8 +297,9 @@ public class CardMinnowShell {
             bw.write(WRITE_SOMETHING);
             bw.flush();
         } else {
-            try {
-                Hand hand = new Hand(Interpreter.interpret(trimmed));
+            ParseResult parsed = Interpreter.parse(trimmed);
+            if (parsed.isSuccessful()) {
+                Hand hand = new Hand(parsed.getCards());
                 if (hand.isValid()) {
                     bw.write(YOU_HAVE);
                     bw.write(hand.getDescription());
@@ -181,8 +310,8 @@ public class CardMinnowShell {
                     numErrors = oldErrors +1;
                 }
                 bw.flush();
-            } catch (IllegalArgumentException iae) {
-                bw.write(iae.getMessage() + '\n');
+            } else {
+                bw.write(parsed.getErrorMessage() + '\n');
                 numErrors = oldErrors + 1;
             }
         }
@@ -0,0 +1,450 @@
+package com.mishmash.rally;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a line of cards the way Interpreter.interpret does, but in a single pass over the
+ * characters with no regular expressions, and without making a String for each token.
+ * Each character is looked at a fixed number of times, so a line of any length (or any
+ * run of separators) takes time in proportion to its length. The cards come out as
+ * ordinals (see Card.getOrdinal), in the order they were typed.
+ *
+ * The scanner accepts exactly what Interpreter accepts. Tokens are split on whitespace,
+ * commas and semicolons, and each has to be a value (a number or one of a, k, q and j)
+ * followed by a suit letter, or just w (a value in front of the w is allowed and ignored).
+ * When a line has bad tokens the scanner remembers where they are, and getErrorMessage
+ * builds the same message interpret would have thrown.
+ *
+ * A scanner reuses its buffers from one line to the next, so once they've grown to fit
+ * the lines it sees, scanning allocates nothing, and a bad line costs no more than a good
+ * one: nothing is thrown. (Interpreter.parse wraps the results up in a ParseResult for
+ * callers who'd rather have an object to keep.) It's meant to be used by one thread at a
+ * time.
+ *
+ * @author mrmcduff
+ *
+ */
+public final class CardScanner {
+
+    // The kinds of bad token, from the worst to the least bad.
+
+    // The token doesn't look like a card at all, like "ah:10d".
+    public static final int BAD_FORMAT = 1;
+
+    // The token's value is too long to read, like "99999999999s".
+    public static final int BAD_NUMBER = 2;
+
+    // The token looks like a card, but there's no such card, like "15h".
+    public static final int BAD_VALUE = 3;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int FIELDS_PER_BAD_TOKEN = 3;
+    private static final int CASE_OFFSET = 'a' - 'A';
+
+    private CharSequence line = "";
+    private byte[] ordinals = new byte[INITIAL_CAPACITY];
+    private int cardCount = 0;
+    private long cardSet = CardSet.EMPTY;
+
+    // Each bad token takes three entries: where it starts, where it ends, and its kind.
+    private int[] badTokens = new int[INITIAL_CAPACITY * FIELDS_PER_BAD_TOKEN];
+    private int badTokenCount = 0;
+
+    /**
+     * Constructor for a scanner that hasn't read anything yet.
+     */
+    public CardScanner() {}
+
+    /**
+     * Reads a line of cards, replacing whatever the last line left behind.
+     *
+     * @param line
+     * The line to read.
+     *
+     * @return
+     * True if every token was a card. Otherwise getErrorMessage says what went wrong, and
+     * the cards that were read are still available.
+     */
+    public boolean scan(CharSequence line) {
+        this.line = line;
+        this.cardCount = 0;
+        this.cardSet = CardSet.EMPTY;
+        this.badTokenCount = 0;
+
+        // Trim the way String.trim does: control characters go too.
+        int start = 0;
+        int end = line.length();
+        while (start < end && line.charAt(start) <= ' ') {
+            ++start;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            --end;
+        }
+        if (start == end) {
+            // There's nothing but an empty token, which doesn't look like a card.
+            addBadToken(start, start, BAD_FORMAT);
+            return false;
+        }
+
+        // A separator at the very start leaves an empty token in front of the first real
+        // one, but only if there is a real one.
+        boolean emptyFirst = isSeparator(line.charAt(start));
+        int i = start;
+        while (i < end) {
+            while (i < end && isSeparator(line.charAt(i))) {
+                ++i;
+            }
+            if (i == end) {
+                break;
+            }
+            if (emptyFirst) {
+                addBadToken(start, start, BAD_FORMAT);
+                emptyFirst = false;
+            }
+            int tokenStart = i;
+            while (i < end && !isSeparator(line.charAt(i))) {
+                ++i;
+            }
+            readToken(tokenStart, i);
+        }
+        return this.badTokenCount == 0;
+    }
+
+    /**
+     * Reads one token, adding its card or marking it bad.
+     *
+     * @param start
+     * Where the token starts in the line.
+     *
+     * @param end
+     * Where it ends (exclusive). The token isn't empty.
+     */
+    private void readToken(int start, int end) {
+        char suitChar = toLowerCase(this.line.charAt(end - 1));
+        Card.Suit suit = getSuit(suitChar);
+        int valueEnd = end - 1;
+        if (suit == null) {
+            addBadToken(start, end, BAD_FORMAT);
+            return;
+        }
+
+        int value = 0;
+        boolean tooLong = false;
+        if (valueEnd == start) {
+            // Only the joker can do without a value.
+            if (suit != Card.Suit.JOKER) {
+                addBadToken(start, end, BAD_FORMAT);
+                return;
+            }
+        } else if (valueEnd == start + 1 && getFaceValue(this.line.charAt(start)) > 0) {
+            value = getFaceValue(this.line.charAt(start));
+        } else {
+            for (int i = start; i < valueEnd; ++i) {
+                char c = this.line.charAt(i);
+                if (c < '0' || c > '9') {
+                    addBadToken(start, end, BAD_FORMAT);
+                    return;
+                }
+                int digit = c - '0';
+                if (value > (Integer.MAX_VALUE - digit) / 10) {
+                    tooLong = true;
+                } else if (!tooLong) {
+                    value = value * 10 + digit;
+                }
+            }
+        }
+
+        if (suit == Card.Suit.JOKER) {
+            // The joker's value is never read, so it can't be too long.
+            addCard(Card.JOKER_ORDINAL);
+        } else if (tooLong) {
+            addBadToken(start, end, BAD_NUMBER);
+        } else if (value < Card.MIN_CARD_VALUE || value > Card.MAX_CARD_VALUE) {
+            addBadToken(start, end, BAD_VALUE);
+        } else {
+            addCard(Card.valueOf(value, suit).getOrdinal());
+        }
+    }
+
+    /**
+     * @return
+     * True if the character separates tokens: whitespace (as a regular expression's \s
+     * means it), a comma or a semicolon.
+     */
+    private static boolean isSeparator(char c) {
+        switch (c) {
+        case ' ':
+        case '\t':
+        case '\n':
+        case '\u000B':
+        case '\f':
+        case '\r':
+        case ',':
+        case ';':
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * @return
+     * The character in lower case, if it's an upper case ASCII letter.
+     */
+    private static char toLowerCase(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + CASE_OFFSET) : c;
+    }
+
+    /**
+     * @return
+     * The suit of a (lower case) suit letter, or null if it isn't one.
+     */
+    private static Card.Suit getSuit(char c) {
+        switch (c) {
+        case Interpreter.SPADES_CHAR:
+            return Card.Suit.SPADES;
+        case Interpreter.HEARTS_CHAR:
+            return Card.Suit.HEARTS;
+        case Interpreter.DIAMONDS_CHAR:
+            return Card.Suit.DIAMONDS;
+        case Interpreter.CLUBS_CHAR:
+            return Card.Suit.CLUBS;
+        case Interpreter.JOKER_CHAR:
+            return Card.Suit.JOKER;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * @return
+     * The value of a face card's letter, in either case, or zero if it isn't one.
+     */
+    private static int getFaceValue(char c) {
+        switch (toLowerCase(c)) {
+        case 'a':
+            return 14;
+        case 'k':
+            return 13;
+        case 'q':
+            return 12;
+        case 'j':
+            return 11;
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Adds a card to the ones read, growing the buffer if need be.
+     *
+     * @param ordinal
+     * The card's ordinal.
+     */
+    private void addCard(int ordinal) {
+        if (this.cardCount == this.ordinals.length) {
+            byte[] bigger = new byte[this.ordinals.length * 2];
+            System.arraycopy(this.ordinals, 0, bigger, 0, this.cardCount);
+            this.ordinals = bigger;
+        }
+        this.ordinals[this.cardCount++] = (byte) ordinal;
+        this.cardSet |= 1L << ordinal;
+    }
+
+    /**
+     * Marks a token as bad, growing the buffer if need be.
+     *
+     * @param start
+     * Where the token starts in the line.
+     *
+     * @param end
+     * Where it ends (exclusive).
+     *
+     * @param kind
+     * What's wrong with it.
+     */
+    private void addBadToken(int start, int end, int kind) {
+        int at = this.badTokenCount * FIELDS_PER_BAD_TOKEN;
+        if (at == this.badTokens.length) {
+            int[] bigger = new int[this.badTokens.length * 2];
+            System.arraycopy(this.badTokens, 0, bigger, 0, at);
+            this.badTokens = bigger;
+        }
+        this.badTokens[at] = start;
+        this.badTokens[at + 1] = end;
+        this.badTokens[at + 2] = kind;
+        ++this.badTokenCount;
+    }
+
+    /**
+     * @return
+     * The number of cards read from the last line, duplicates included.
+     */
+    public int getCardCount() {
+        return this.cardCount;
+    }
+
+    /**
+     * Gets one of the cards read from the last line.
+     *
+     * @param index
+     * Which card, in the order they were typed.
+     *
+     * @return
+     * The card's ordinal.
+     *
+     * @throws IndexOutOfBoundsException
+     * If there aren't that many cards.
+     */
+    public int getOrdinal(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= this.cardCount) {
+            throw new IndexOutOfBoundsException("Card " + index + " of " + this.cardCount + ".");
+        }
+        return this.ordinals[index];
+    }
+
+    /**
+     * Copies the ordinals of the cards read from the last line into a buffer the caller
+     * keeps, so that nothing has to be allocated for them.
+     *
+     * @param destination
+     * The buffer to fill.
+     *
+     * @param offset
+     * Where in the buffer the first card goes.
+     *
+     * @return
+     * The number of cards copied, which is getCardCount.
+     *
+     * @throws IndexOutOfBoundsException
+     * If the buffer doesn't have room for every card from the offset on.
+     */
+    public int getOrdinals(byte[] destination, int offset) throws IndexOutOfBoundsException {
+        if (offset < 0 || destination.length - offset < this.cardCount) {
+            throw new IndexOutOfBoundsException("There's no room for " + this.cardCount
+                    + " cards at " + offset + " in a buffer of " + destination.length + ".");
+        }
+        System.arraycopy(this.ordinals, 0, destination, offset, this.cardCount);
+        return this.cardCount;
+    }
+
+    /**
+     * @return
+     * The CardSet of the cards read from the last line.
+     */
+    public long getCardSet() {
+        return this.cardSet;
+    }
+
+    /**
+     * @return
+     * True if the last line named some card more than once.
+     */
+    public boolean hasDuplicates() {
+        return CardSet.size(this.cardSet) != this.cardCount;
+    }
+
+    /**
+     * @return
+     * A new list of the cards read from the last line, in order. They're the shared
+     * cards, as Card.valueOf gives out.
+     */
+    public List<Card> getCards() {
+        List<Card> cards = new ArrayList<Card>(this.cardCount);
+        for (int i = 0; i < this.cardCount; ++i) {
+            cards.add(Card.fromOrdinal(this.ordinals[i]));
+        }
+        return cards;
+    }
+
+    /**
+     * @return
+     * The line last read.
+     */
+    public CharSequence getLine() {
+        return this.line;
+    }
+
+    /**
+     * @return
+     * The number of bad tokens in the last line.
+     */
+    public int getBadTokenCount() {
+        return this.badTokenCount;
+    }
+
+    /**
+     * @param index
+     * Which bad token, in the order they were typed.
+     *
+     * @return
+     * Where the token starts in the line.
+     */
+    public int getBadTokenStart(int index) {
+        return getBadTokenField(index, 0);
+    }
+
+    /**
+     * @param index
+     * Which bad token, in the order they were typed.
+     *
+     * @return
+     * Where the token ends in the line (exclusive).
+     */
+    public int getBadTokenEnd(int index) {
+        return getBadTokenField(index, 1);
+    }
+
+    /**
+     * @param index
+     * Which bad token, in the order they were typed.
+     *
+     * @return
+     * What's wrong with it: BAD_FORMAT, BAD_NUMBER or BAD_VALUE.
+     */
+    public int getBadTokenKind(int index) {
+        return getBadTokenField(index, 2);
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException
+     * If there aren't that many bad tokens.
+     */
+    private int getBadTokenField(int index, int field) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= this.badTokenCount) {
+            throw new IndexOutOfBoundsException("Bad token " + index + " of " + this.badTokenCount + ".");
+        }
+        return this.badTokens[index * FIELDS_PER_BAD_TOKEN + field];
+    }
+
+    /**
+     * Builds the message that Interpreter.interpret throws for the last line. If any token
+     * doesn't look like a card, it lists those. Otherwise, if a value is too long to read,
+     * it's about the first such token, and otherwise it lists the tokens that aren't cards.
+     *
+     * @return
+     * The message, or null if the last line had no bad tokens.
+     */
+    public String getErrorMessage() {
+        if (this.badTokenCount == 0) {
+            return null;
+        }
+        int worst = BAD_VALUE;
+        for (int i = 0; i < this.badTokenCount; ++i) {
+            worst = Math.min(worst, getBadTokenKind(i));
+        }
+
+        List<String> tokens = new ArrayList<String>();
+        for (int i = 0; i < this.badTokenCount; ++i) {
+            if (getBadTokenKind(i) == worst) {
+                tokens.add(this.line.subSequence(getBadTokenStart(i), getBadTokenEnd(i)).toString());
+            }
+        }
+        if (worst == BAD_NUMBER) {
+            return tokens.get(0) + " was an invalid token that either passed validation or was never validated.";
+        }
+        return Interpreter.getErrorString(tokens);
+    }
+
+}
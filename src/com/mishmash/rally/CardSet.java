@@ -0,0 +1,295 @@
+package com.mishmash.rally;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Static helpers for treating a <b>long</b> as a set of cards. Each of the fifty-two natural
+ * cards and the joker gets one bit, so checking for duplicates, combining hands or removing
+ * cards from a deck is a single bitwise operation instead of a walk through a list.
+ *
+ * A card's ordinal (its bit number) is suit * 13 + (value - 2), with clubs as suit zero up
+ * to spades as suit three, and the joker is ordinal 52. Laying the bits out suit by suit
+ * means the values held in one suit are a 13-bit mask that a single shift pulls out.
+ *
+ * @author mrmcduff
+ *
+ */
+public final class CardSet {
+
+    public static final int RANK_COUNT = Card.RANK_COUNT;
+    public static final int SUIT_COUNT = Card.NATURAL_SUIT_COUNT;
+
+    public static final int JOKER_ORDINAL = Card.JOKER_ORDINAL;
+    public static final int ORDINAL_COUNT = Card.ORDINAL_COUNT;
+
+    // Returned by ordinal() for a card that isn't valid.
+    public static final int INVALID_ORDINAL = Card.INVALID_ORDINAL;
+
+    public static final long EMPTY = 0L;
+    public static final long JOKER = 1L << JOKER_ORDINAL;
+    public static final long NATURAL_DECK = JOKER - 1;
+    public static final long FULL_DECK = NATURAL_DECK | JOKER;
+
+    // The thirteen bits of one suit, before shifting.
+    public static final int SUIT_MASK = (1 << RANK_COUNT) - 1;
+
+    // Every card of one value, indexed by the value minus two.
+    private static final long[] VALUE_MASKS = new long[RANK_COUNT];
+
+    static {
+        for (int rank = 0; rank < RANK_COUNT; ++rank) {
+            for (int suit = 0; suit < SUIT_COUNT; ++suit) {
+                VALUE_MASKS[rank] |= 1L << (suit * RANK_COUNT + rank);
+            }
+        }
+    }
+
+    // Suits indexed by their position in the bit layout.
+    private static final Card.Suit[] SUITS = { Card.Suit.CLUBS, Card.Suit.DIAMONDS,
+            Card.Suit.HEARTS, Card.Suit.SPADES };
+
+    /**
+     * This is a static class, so there's no need to instantiate it.
+     */
+    private CardSet() {}
+
+    /**
+     * Gets the ordinal (bit number) of a card.
+     *
+     * @param card
+     * The card.
+     *
+     * @return
+     * The card's ordinal, or INVALID_ORDINAL if the card isn't valid.
+     */
+    public static int ordinal(Card card) {
+        return card.getOrdinal();
+    }
+
+    /**
+     * Gets the set holding only the given card.
+     *
+     * @param card
+     * The card.
+     *
+     * @return
+     * A set with one card in it, or the empty set if the card isn't valid.
+     */
+    public static long of(Card card) {
+        int ordinal = ordinal(card);
+        return (ordinal == INVALID_ORDINAL) ? EMPTY : 1L << ordinal;
+    }
+
+    /**
+     * Gets the set of cards in a list. Duplicates and invalid cards are lost, which is easy
+     * to check for by comparing the size of the set with the size of the list.
+     *
+     * @param cards
+     * The cards to put in the set.
+     *
+     * @return
+     * The set of valid cards in the list.
+     */
+    public static long of(List<Card> cards) {
+        long set = EMPTY;
+        for (Card card : cards) {
+            set |= of(card);
+        }
+        return set;
+    }
+
+    /**
+     * Gets the card for an ordinal.
+     *
+     * @param ordinal
+     * A card ordinal, from 0 to 52.
+     *
+     * @return
+     * The canonical card with that ordinal.
+     */
+    public static Card getCard(int ordinal) {
+        return Card.fromOrdinal(ordinal);
+    }
+
+    /**
+     * Gets the numeric value of the card with an ordinal.
+     *
+     * @param ordinal
+     * A natural card's ordinal.
+     *
+     * @return
+     * The card value, from 2 through 14.
+     */
+    public static int getValue(int ordinal) {
+        return ordinal % RANK_COUNT + Card.MIN_CARD_VALUE;
+    }
+
+    /**
+     * Gets the suit of the card with an ordinal.
+     *
+     * @param ordinal
+     * A card ordinal, from 0 to 52.
+     *
+     * @return
+     * The card's suit.
+     */
+    public static Card.Suit getSuit(int ordinal) {
+        return (ordinal == JOKER_ORDINAL) ? Card.Suit.JOKER : SUITS[ordinal / RANK_COUNT];
+    }
+
+    /**
+     * Gets the cards of a set, highest first, in the same order a reverse sort of the cards
+     * would give (so the joker, if there is one, comes first).
+     *
+     * @param set
+     * The set of cards.
+     *
+     * @return
+     * A new list of the cards.
+     */
+    public static List<Card> toCards(long set) {
+        List<Card> cards = new ArrayList<Card>(size(set));
+        if (containsJoker(set)) {
+            cards.add(Card.joker());
+        }
+        for (int rank = RANK_COUNT - 1; rank >= 0; --rank) {
+            for (int suit = SUIT_COUNT - 1; suit >= 0; --suit) {
+                if ((set & (1L << (suit * RANK_COUNT + rank))) != 0) {
+                    cards.add(getCard(suit * RANK_COUNT + rank));
+                }
+            }
+        }
+        return cards;
+    }
+
+    /**
+     * Builds a hand out of a set of cards.
+     *
+     * @param set
+     * The set of cards.
+     *
+     * @return
+     * A new hand holding the cards, highest first.
+     */
+    public static Hand toHand(long set) {
+        return new Hand(toCards(set));
+    }
+
+    /**
+     * @return
+     * Every card that is in either set.
+     */
+    public static long union(long first, long second) {
+        return first | second;
+    }
+
+    /**
+     * @return
+     * The cards that are in both sets.
+     */
+    public static long intersection(long first, long second) {
+        return first & second;
+    }
+
+    /**
+     * @return
+     * The cards of the first set that aren't in the second, as when dealing cards out of a deck.
+     */
+    public static long remove(long set, long removed) {
+        return set & ~removed;
+    }
+
+    /**
+     * @return
+     * True if the sets have no cards in common, so that they can be combined into one hand.
+     */
+    public static boolean isDisjoint(long first, long second) {
+        return (first & second) == 0;
+    }
+
+    /**
+     * @return
+     * True if the set holds the card.
+     */
+    public static boolean contains(long set, Card card) {
+        return (set & of(card)) != 0;
+    }
+
+    /**
+     * @return
+     * True if the set holds the joker.
+     */
+    public static boolean containsJoker(long set) {
+        return (set & JOKER) != 0;
+    }
+
+    /**
+     * @return
+     * The number of cards in the set.
+     */
+    public static int size(long set) {
+        return Long.bitCount(set);
+    }
+
+    /**
+     * Gets the values held in one suit, as a 13-bit mask with the deuce in the lowest bit.
+     *
+     * @param set
+     * The set of cards.
+     *
+     * @param suit
+     * The suit to look at. The joker has no suit mask.
+     *
+     * @return
+     * The mask of card values in that suit.
+     */
+    public static int getSuitMask(long set, Card.Suit suit) {
+        return (int) (set >>> ((suit.getSuitValue() - 1) * RANK_COUNT)) & SUIT_MASK;
+    }
+
+    /**
+     * Gets the cards of one value in a set, whatever their suits.
+     *
+     * @param set
+     * The set of cards.
+     *
+     * @param value
+     * A natural card value, from 2 through 14.
+     *
+     * @return
+     * The cards in the set with that value.
+     */
+    public static long getCardsOfValue(long set, int value) {
+        return set & VALUE_MASKS[value - Card.MIN_CARD_VALUE];
+    }
+
+    /**
+     * Gets the ordinal of the lowest card in a set. Together with withoutFirst, this walks
+     * through a set without building any objects:
+     *
+     * <pre>
+     * for (long rest = set; rest != 0; rest = CardSet.withoutFirst(rest)) {
+     *     int ordinal = CardSet.firstOrdinal(rest);
+     * }
+     * </pre>
+     *
+     * @param set
+     * A nonempty set of cards.
+     *
+     * @return
+     * The lowest ordinal in the set.
+     */
+    public static int firstOrdinal(long set) {
+        return Long.numberOfTrailingZeros(set);
+    }
+
+    /**
+     * @return
+     * The set with its lowest ordinal removed.
+     */
+    public static long withoutFirst(long set) {
+        return set & (set - 1);
+    }
+
+}
@@ -64,25 +64,26 @@ public class CardUtils {
      * The suit to get.
      * 
      * @return
-     * Ace through deuce of the desired suit.
+     * Ace through deuce of the desired suit. These are the canonical cards, so they can't
+     * be changed.
      */
     public static List<Card> getSuit(Card.Suit suit) {
         List<Card> wholeSuit = new ArrayList<Card>();
         
         if (suit != Card.Suit.JOKER) {
-            Card a = new Card(14, suit);
-            Card k = new Card(13, suit);
-            Card q = new Card(12, suit);
-            Card j = new Card(11, suit);
-            Card ten = new Card(10, suit);
-            Card nine = new Card(9, suit);
-            Card eight = new Card(8, suit);
-            Card seven = new Card(7, suit);
-            Card six = new Card(6, suit);
-            Card five = new Card(5, suit);
-            Card four = new Card(4, suit);
-            Card three = new Card(3, suit);
-            Card two = new Card(2, suit);
+            Card a = Card.valueOf(14, suit);
+            Card k = Card.valueOf(13, suit);
+            Card q = Card.valueOf(12, suit);
+            Card j = Card.valueOf(11, suit);
+            Card ten = Card.valueOf(10, suit);
+            Card nine = Card.valueOf(9, suit);
+            Card eight = Card.valueOf(8, suit);
+            Card seven = Card.valueOf(7, suit);
+            Card six = Card.valueOf(6, suit);
+            Card five = Card.valueOf(5, suit);
+            Card four = Card.valueOf(4, suit);
+            Card three = Card.valueOf(3, suit);
+            Card two = Card.valueOf(2, suit);
             
             Card [] suitArray = { a, k, q, j, ten, nine,
                     eight, seven, six, five, four, three, 
@@ -91,7 +92,7 @@ public class CardUtils {
             wholeSuit = Arrays.asList(suitArray);
         } else {
             // Just give it a joker.
-            wholeSuit.add(new Card());
+            wholeSuit.add(Card.joker());
         }
         return wholeSuit;
     }
@@ -0,0 +1,217 @@
+package com.mishmash.rally;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable, compact form of an evaluated hand: a CardSet of its cards plus one packed
+ * result word, and nothing else. The hand is evaluated once, when it's built, and the card
+ * lists are worked out from the two fields only when somebody asks for them. It answers
+ * getHandType, getImportantCards, getSecondImportantCards and getDescription exactly the way
+ * a Hand with the same cards would, so it's a drop-in for storing large numbers of
+ * evaluated hands. Since every field is final, it can be shared between threads freely.
+ *
+ * The result word is the hand's value (see HandValue) in its low bits, with the suit of a
+ * flush or straight flush stored above it. Invalid hands store HandValue.INVALID_VALUE.
+ *
+ * @author mrmcduff
+ *
+ */
+public final class CompactHand {
+
+    // The value takes up the type and the rank slots. The flush suit goes just above that.
+    private static final int SUIT_SHIFT = HandValue.TYPE_SHIFT + HandValue.RANK_BITS;
+    private static final int VALUE_MASK = (1 << SUIT_SHIFT) - 1;
+    private static final int SUIT_BITS = 2;
+
+    private static final BitmaskEvaluator EVALUATOR = new BitmaskEvaluator();
+
+    private final long cards;
+    private final int result;
+
+    /**
+     * Constructor for a hand holding a set of cards.
+     *
+     * @param cards
+     * The CardSet of the hand's cards.
+     */
+    public CompactHand(long cards) {
+        this.cards = cards;
+        this.result = evaluate(cards);
+    }
+
+    /**
+     * Constructor for a hand holding a list of cards. A list that holds an invalid card or a
+     * duplicate makes an invalid hand, just as it would for a Hand.
+     *
+     * @param cards
+     * The hand's cards.
+     */
+    public CompactHand(List<Card> cards) {
+        this.cards = CardSet.of(cards);
+        this.result = (CardSet.size(this.cards) == cards.size()) ? evaluate(this.cards)
+                : HandValue.INVALID_VALUE;
+    }
+
+    /**
+     * Evaluates a set of cards into a result word.
+     *
+     * @param cards
+     * The CardSet of the hand's cards.
+     *
+     * @return
+     * The packed value, with the flush suit stored above it, or HandValue.INVALID_VALUE.
+     */
+    private static int evaluate(long cards) {
+        EvaluationResult evaluation = new EvaluationResult();
+        if (!EVALUATOR.evaluate(cards, evaluation)) {
+            return HandValue.INVALID_VALUE;
+        }
+        int value = evaluation.getValue();
+        Hand.HandType type = evaluation.getHandType();
+        if (type == Hand.HandType.FLUSH || type == Hand.HandType.STRAIGHT_FLUSH) {
+            int suit = CardSet.firstOrdinal(evaluation.getImportantCards()) / CardSet.RANK_COUNT;
+            value |= suit << SUIT_SHIFT;
+        }
+        return value;
+    }
+
+    /**
+     * @return
+     * True if the hand is nonempty and has no invalid cards or duplicates.
+     */
+    public boolean isValid() {
+        return this.result != HandValue.INVALID_VALUE;
+    }
+
+    /**
+     * @return
+     * The CardSet of the hand's cards.
+     */
+    public long getCardSet() {
+        return this.cards;
+    }
+
+    /**
+     * @return
+     * The number of (distinct, valid) cards in this hand.
+     */
+    public int getHandSize() {
+        return CardSet.size(this.cards);
+    }
+
+    /**
+     * Gets the cards of this hand. Unlike a Hand, the original order of the cards isn't kept.
+     *
+     * @return
+     * A new list of the cards, highest first.
+     */
+    public List<Card> getCards() {
+        return CardSet.toCards(this.cards);
+    }
+
+    /**
+     * Getter for the type of this hand. Like a Hand, an invalid hand reports HIGH_CARD.
+     *
+     * @return
+     * The type of this hand.
+     */
+    public Hand.HandType getHandType() {
+        return isValid() ? HandValue.getHandType(getStrength()) : Hand.HandType.HIGH_CARD;
+    }
+
+    /**
+     * Getter for the strength of this hand (see Hand.getStrength).
+     *
+     * @return
+     * The packed value of this hand, or HandValue.INVALID_VALUE if it isn't valid.
+     */
+    public int getStrength() {
+        return isValid() ? this.result & VALUE_MASK : HandValue.INVALID_VALUE;
+    }
+
+    /**
+     * Gets the important cards, worked out from the cards and the result word.
+     *
+     * @return
+     * The most important cards in determining the value of this hand, highest first. Empty
+     * for an invalid hand.
+     */
+    public List<Card> getImportantCards() {
+        if (!isValid()) {
+            return Collections.emptyList();
+        }
+        int flushSuit = (this.result >>> SUIT_SHIFT) & ((1 << SUIT_BITS) - 1);
+        return CardSet.toCards(HandValue.getImportantCards(this.cards, getStrength(), flushSuit));
+    }
+
+    /**
+     * Gets the second important cards, worked out from the cards and the result word.
+     *
+     * @return
+     * The second most important cards in determining the value of this hand, highest first.
+     * This list can be empty.
+     */
+    public List<Card> getSecondImportantCards() {
+        if (!isValid()) {
+            return Collections.emptyList();
+        }
+        return CardSet.toCards(HandValue.getSecondImportantCards(this.cards, getStrength()));
+    }
+
+    /**
+     * Gets a pretty-printable string describing the hand, exactly as Hand.getDescription does.
+     *
+     * @return
+     * A string suitable for user consumption describing the hand.
+     *
+     * @throws IllegalStateException
+     * If this hand is invalid.
+     */
+    public String getDescription() throws IllegalStateException {
+        if (!isValid()) {
+            throw new IllegalStateException("Trying to evaluate an invalid hand.");
+        }
+        return Hand.describe(getHandType(), getImportantCards(), getSecondImportantCards());
+    }
+
+    /**
+     * Builds an ordinary (already evaluated) Hand holding the same cards.
+     *
+     * @return
+     * A new Hand.
+     */
+    public Hand toHand() {
+        Hand hand = new Hand(getCards());
+        if (isValid()) {
+            hand.setHandType(getHandType());
+            hand.setEvaluated(true);
+            hand.setImportantCards(getImportantCards());
+            hand.setSecondImportantCards(getSecondImportantCards());
+            hand.setStrength(getStrength());
+        }
+        return hand;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        } else if (other instanceof CompactHand) {
+            CompactHand otherHand = (CompactHand) other;
+            return this.cards == otherHand.cards && this.result == otherHand.result;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (this.cards ^ (this.cards >>> 32)) * 31 + this.result;
+    }
+
+    @Override
+    public String toString() {
+        return getCards().toString();
+    }
+
+}
@@ -0,0 +1,493 @@
+package com.mishmash.rally;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks the faster engines against the reference HandEvaluator on every hand of a size:
+ * all 2,598,960 five card hands, say, or every seven card hand, with or without the joker.
+ * Each hand is scored by the reference, then by every engine that supports it, and the
+ * results have to match exactly: the value, the hand type, both lists of important cards
+ * and the description. Anything else is a mismatch, and the first few of each engine's are
+ * kept so that they can be looked at.
+ *
+ * The hands are split by their two highest cards into over a thousand pieces of work,
+ * which run on a pool of threads. Only the engines' getValue calls are timed, so the rate
+ * reported for each engine is how many hands one thread can score per second, not counting
+ * the time spent checking them.
+ *
+ * Run it from the command line with the hand sizes to check (five, seven or all) and,
+ * optionally, the number of threads. It exits with status 1 if anything didn't match.
+ *
+ * @author mrmcduff
+ *
+ */
+public class DifferentialVerifier {
+
+    // The most mismatches kept for each engine in a report.
+    public static final int MAX_EXAMPLES = 10;
+
+    // Hands are scored in chunks of this many, so that the timing costs almost nothing.
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final int NATURAL_CARD_COUNT = CardSet.RANK_COUNT * CardSet.SUIT_COUNT;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * The outcome of checking every hand of one size.
+     *
+     * @author mrmcduff
+     *
+     */
+    public static class Report {
+        private final int handSize;
+        private final boolean withJoker;
+        private final List<Evaluator> engines;
+        private final long[] mismatches;
+        private final long[] engineNanos;
+        private final List<List<String>> examples = new ArrayList<List<String>>();
+        private long handCount = 0;
+        private long wallNanos = 0;
+
+        Report(int handSize, boolean withJoker, List<Evaluator> engines) {
+            this.handSize = handSize;
+            this.withJoker = withJoker;
+            this.engines = engines;
+            this.mismatches = new long[engines.size()];
+            this.engineNanos = new long[engines.size()];
+            for (int i = 0; i < engines.size(); ++i) {
+                this.examples.add(new ArrayList<String>());
+            }
+        }
+
+        /**
+         * Adds in the results of one piece of work.
+         */
+        synchronized void add(long hands, long[] mismatches, long[] engineNanos,
+                List<List<String>> examples) {
+            this.handCount += hands;
+            for (int i = 0; i < this.engines.size(); ++i) {
+                this.mismatches[i] += mismatches[i];
+                this.engineNanos[i] += engineNanos[i];
+                List<String> kept = this.examples.get(i);
+                for (String example : examples.get(i)) {
+                    if (kept.size() < MAX_EXAMPLES) {
+                        kept.add(example);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return
+         * The number of cards in each hand, the joker included.
+         */
+        public int getHandSize() {
+            return this.handSize;
+        }
+
+        /**
+         * @return
+         * True if every hand held the joker.
+         */
+        public boolean isWithJoker() {
+            return this.withJoker;
+        }
+
+        /**
+         * @return
+         * How many hands were checked.
+         */
+        public synchronized long getHandCount() {
+            return this.handCount;
+        }
+
+        /**
+         * @return
+         * The engines that were checked, which are the ones that support hands of this size.
+         */
+        public List<Evaluator> getEngines() {
+            return Collections.unmodifiableList(this.engines);
+        }
+
+        /**
+         * @param engine
+         * The index of an engine in getEngines.
+         *
+         * @return
+         * How many hands that engine got wrong.
+         */
+        public synchronized long getMismatchCount(int engine) {
+            return this.mismatches[engine];
+        }
+
+        /**
+         * @return
+         * How many mismatches there were over every engine.
+         */
+        public synchronized long getTotalMismatchCount() {
+            long total = 0;
+            for (long count : this.mismatches) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * @param engine
+         * The index of an engine in getEngines.
+         *
+         * @return
+         * Up to MAX_EXAMPLES of the hands that engine got wrong, each with what was wrong.
+         */
+        public synchronized List<String> getExamples(int engine) {
+            return new ArrayList<String>(this.examples.get(engine));
+        }
+
+        /**
+         * @param engine
+         * The index of an engine in getEngines.
+         *
+         * @return
+         * How many hands one thread running that engine scores per second.
+         */
+        public synchronized double getHandsPerSecond(int engine) {
+            return getRate(this.handCount, this.engineNanos[engine]);
+        }
+
+        /**
+         * @return
+         * How many hands were checked per second, by every engine and the reference.
+         */
+        public synchronized double getCheckedPerSecond() {
+            return getRate(this.handCount, this.wallNanos);
+        }
+
+        synchronized void setWallNanos(long wallNanos) {
+            this.wallNanos = wallNanos;
+        }
+
+        private static double getRate(long hands, long nanos) {
+            return (nanos == 0) ? 0 : hands * NANOS_PER_SECOND / nanos;
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%d cards %s the joker: %,d hands in %.1f s (%,.0f checked per second)%n",
+                    this.handSize, this.withJoker ? "with" : "without", this.handCount,
+                    this.wallNanos / NANOS_PER_SECOND, getCheckedPerSecond()));
+            for (int i = 0; i < this.engines.size(); ++i) {
+                sb.append(String.format("  %-12s %,d mismatches, %,.0f hands per second per thread%n",
+                        this.engines.get(i).getName(), this.mismatches[i], getHandsPerSecond(i)));
+                for (String example : this.examples.get(i)) {
+                    sb.append("    ").append(example).append(String.format("%n"));
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    private final HandEvaluator reference = EvaluatorSelector.REFERENCE;
+    private final List<Evaluator> engines;
+    private final int threadCount;
+
+    /**
+     * Constructor for a verifier that checks every available engine (see
+     * EvaluatorSelector.getAvailableEngines) with one thread per processor.
+     */
+    public DifferentialVerifier() {
+        this(getCandidates(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor for a verifier of some engines.
+     *
+     * @param engines
+     * The engines to check against the reference.
+     *
+     * @param threadCount
+     * How many threads to check them with.
+     *
+     * @throws IllegalArgumentException
+     * If there are no engines, or the thread count isn't positive.
+     */
+    public DifferentialVerifier(List<Evaluator> engines, int threadCount)
+            throws IllegalArgumentException {
+        if (engines.isEmpty()) {
+            throw new IllegalArgumentException("There are no engines to check.");
+        }
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("Can't check hands with " + threadCount + " threads.");
+        }
+        this.engines = new ArrayList<Evaluator>(engines);
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * @return
+     * Every available engine but the reference itself.
+     */
+    private static List<Evaluator> getCandidates() {
+        List<Evaluator> candidates = new ArrayList<Evaluator>(EvaluatorSelector.getAvailableEngines());
+        candidates.remove(EvaluatorSelector.REFERENCE);
+        return candidates;
+    }
+
+    /**
+     * Checks every hand of one size.
+     *
+     * @param handSize
+     * The number of cards in each hand, the joker included.
+     *
+     * @param withJoker
+     * True to check only the hands holding the joker, false for those without it.
+     *
+     * @return
+     * The report for those hands.
+     *
+     * @throws IllegalArgumentException
+     * If there are no such hands.
+     */
+    public Report verify(int handSize, boolean withJoker) throws IllegalArgumentException {
+        int naturalCount = withJoker ? handSize - 1 : handSize;
+        if (handSize <= 0 || naturalCount < 0 || naturalCount > NATURAL_CARD_COUNT) {
+            throw new IllegalArgumentException("There are no hands of " + handSize + " cards "
+                    + (withJoker ? "with" : "without") + " the joker.");
+        }
+
+        List<Evaluator> checked = new ArrayList<Evaluator>();
+        for (Evaluator engine : this.engines) {
+            if (engine.supports(handSize, withJoker ? 1 : 0)) {
+                checked.add(engine);
+            }
+        }
+        Report report = new Report(handSize, withJoker, checked);
+        long extra = withJoker ? CardSet.JOKER : CardSet.EMPTY;
+
+        // Every hand's highest natural cards pick the piece it's checked in. The rest are
+        // drawn from the cards below them.
+        List<Piece> pieces = new ArrayList<Piece>();
+        if (naturalCount == 0) {
+            pieces.add(new Piece(report, extra, 0, 0));
+        } else if (naturalCount == 1) {
+            for (int high = 0; high < NATURAL_CARD_COUNT; ++high) {
+                pieces.add(new Piece(report, extra | (1L << high), 0, 0));
+            }
+        } else {
+            for (int high = 1; high < NATURAL_CARD_COUNT; ++high) {
+                for (int next = naturalCount - 2; next < high; ++next) {
+                    long top = extra | (1L << high) | (1L << next);
+                    pieces.add(new Piece(report, top, next, naturalCount - 2));
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(this.threadCount);
+        try {
+            for (Future<Void> done : pool.invokeAll(pieces)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking hands.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Checking hands failed.", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        report.setWallNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    /**
+     * The hands made of some fixed cards and every choice of a number of cards below them.
+     *
+     * @author mrmcduff
+     *
+     */
+    private class Piece implements Callable<Void> {
+        private final Report report;
+        private final long fixed;
+        private final int limit;
+        private final int chosen;
+
+        private final List<Evaluator> checked;
+        private final long[] hands = new long[CHUNK_SIZE];
+        private final int[] values = new int[CHUNK_SIZE];
+        private final Hand[] expected = new Hand[CHUNK_SIZE];
+        private final long[] mismatches;
+        private final long[] engineNanos;
+        private final List<List<String>> examples = new ArrayList<List<String>>();
+        private long handCount = 0;
+
+        /**
+         * @param report
+         * Where the results go.
+         *
+         * @param fixed
+         * The cards in every hand.
+         *
+         * @param limit
+         * The rest of each hand is drawn from the natural cards with ordinals below this.
+         *
+         * @param chosen
+         * How many cards are drawn.
+         */
+        Piece(Report report, long fixed, int limit, int chosen) {
+            this.report = report;
+            this.fixed = fixed;
+            this.limit = limit;
+            this.chosen = chosen;
+            this.checked = report.getEngines();
+            this.mismatches = new long[checked.size()];
+            this.engineNanos = new long[checked.size()];
+            for (int i = 0; i < checked.size(); ++i) {
+                this.examples.add(new ArrayList<String>());
+            }
+        }
+
+        @Override
+        public Void call() {
+            int count = 0;
+            // Walks through the combinations in order, by the usual bit trick: move the lowest
+            // block of set bits up by one and pack the rest of the block back at the bottom.
+            long end = 1L << this.limit;
+            long combination = (1L << this.chosen) - 1;
+            while (combination < end) {
+                this.hands[count++] = this.fixed | combination;
+                if (count == CHUNK_SIZE) {
+                    check(count);
+                    count = 0;
+                }
+                if (combination == 0) {
+                    break;
+                }
+                long lowest = combination & -combination;
+                long carried = combination + lowest;
+                combination = (((carried ^ combination) >>> 2) / lowest) | carried;
+            }
+            check(count);
+            this.report.add(this.handCount, this.mismatches, this.engineNanos, this.examples);
+            return null;
+        }
+
+        /**
+         * Scores the hands in the chunk with the reference and every engine, and
+         * compares the results.
+         *
+         * @param count
+         * How many hands are in the chunk.
+         */
+        private void check(int count) {
+            for (int i = 0; i < count; ++i) {
+                this.expected[i] = CardSet.toHand(this.hands[i]);
+                reference.evaluate(this.expected[i]);
+            }
+            for (int e = 0; e < this.checked.size(); ++e) {
+                Evaluator engine = this.checked.get(e);
+                long start = System.nanoTime();
+                for (int i = 0; i < count; ++i) {
+                    this.values[i] = engine.getValue(this.hands[i]);
+                }
+                this.engineNanos[e] += System.nanoTime() - start;
+
+                for (int i = 0; i < count; ++i) {
+                    Hand hand = CardSet.toHand(this.hands[i]);
+                    engine.evaluate(hand);
+                    String problem = compare(this.expected[i], this.values[i], hand);
+                    if (problem != null) {
+                        ++this.mismatches[e];
+                        if (this.examples.get(e).size() < MAX_EXAMPLES) {
+                            this.examples.get(e).add(hand.getCards() + ": " + problem);
+                        }
+                    }
+                }
+            }
+            this.handCount += count;
+        }
+    }
+
+    /**
+     * Compares an engine's results for a hand with the reference's.
+     *
+     * @param expected
+     * The hand as the reference evaluated it.
+     *
+     * @param value
+     * The value the engine gave the hand.
+     *
+     * @param actual
+     * The hand as the engine evaluated it.
+     *
+     * @return
+     * What was different, or null if nothing was.
+     */
+    private static String compare(Hand expected, int value, Hand actual) {
+        if (value != expected.getStrength()) {
+            return "value " + Integer.toHexString(value) + " should be "
+                    + Integer.toHexString(expected.getStrength());
+        } else if (!actual.isEvaluated()) {
+            return "evaluate left the hand as it was";
+        } else if (actual.getStrength() != expected.getStrength()) {
+            return "strength " + Integer.toHexString(actual.getStrength()) + " should be "
+                    + Integer.toHexString(expected.getStrength());
+        } else if (actual.getHandType() != expected.getHandType()) {
+            return "type " + actual.getHandType() + " should be " + expected.getHandType();
+        } else if (!actual.getImportantCards().equals(expected.getImportantCards())) {
+            return "important cards " + actual.getImportantCards() + " should be "
+                    + expected.getImportantCards();
+        } else if (!actual.getSecondImportantCards().equals(expected.getSecondImportantCards())) {
+            return "second important cards " + actual.getSecondImportantCards() + " should be "
+                    + expected.getSecondImportantCards();
+        } else if (!actual.getDescription().equals(expected.getDescription())) {
+            return "description '" + actual.getDescription() + "' should be '"
+                    + expected.getDescription() + "'";
+        }
+        return null;
+    }
+
+    /**
+     * Checks every engine on the command line.
+     *
+     * @param args
+     * The hand sizes to check (five, seven or all, five by default), and optionally how
+     * many threads to use.
+     */
+    public static void main(String[] args) {
+        String sizes = (args.length > 0) ? args[0] : "five";
+        int threads = (args.length > 1) ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+
+        List<Integer> handSizes = new ArrayList<Integer>();
+        if (sizes.equals("five") || sizes.equals("all")) {
+            handSizes.add(Hand.FIVE_CARD_DRAW_HAND_SIZE);
+        }
+        if (sizes.equals("seven") || sizes.equals("all")) {
+            handSizes.add(SevenCardEvaluator.HAND_SIZE);
+        }
+        if (handSizes.isEmpty()) {
+            System.err.println("Usage: DifferentialVerifier [five|seven|all] [threads]");
+            System.exit(2);
+        }
+
+        DifferentialVerifier verifier = new DifferentialVerifier(getCandidates(), threads);
+        long mismatches = 0;
+        for (int handSize : handSizes) {
+            for (boolean withJoker : new boolean[] { false, true }) {
+                Report report = verifier.verify(handSize, withJoker);
+                System.out.print(report);
+                mismatches += report.getTotalMismatchCount();
+            }
+        }
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.mishmash.rally;
+
+/**
+ * A reusable holder for the result of evaluating a hand, filled in by BitmaskEvaluator.
+ * Everything is stored as primitives: the packed value (see HandValue) and the important
+ * and second important cards as CardSets. Both card lists are always in descending order,
+ * so a set is all it takes to rebuild them. Callers that evaluate many hands can keep one
+ * holder and reuse it, which means evaluating allocates nothing at all.
+ *
+ * @author mrmcduff
+ *
+ */
+public final class EvaluationResult {
+
+    private int value = BitmaskEvaluator.INVALID_VALUE;
+    private long importantCards = CardSet.EMPTY;
+    private long secondImportantCards = CardSet.EMPTY;
+
+    /**
+     * Sets every field at once.
+     *
+     * @param value
+     * The packed hand value.
+     *
+     * @param importantCards
+     * The set of important cards.
+     *
+     * @param secondImportantCards
+     * The set of second important cards.
+     */
+    void set(int value, long importantCards, long secondImportantCards) {
+        this.value = value;
+        this.importantCards = importantCards;
+        this.secondImportantCards = secondImportantCards;
+    }
+
+    /**
+     * Forgets the last result, as for an invalid hand.
+     */
+    void clear() {
+        set(BitmaskEvaluator.INVALID_VALUE, CardSet.EMPTY, CardSet.EMPTY);
+    }
+
+    /**
+     * @return
+     * True if the last hand evaluated was valid.
+     */
+    public boolean isValid() {
+        return this.value != BitmaskEvaluator.INVALID_VALUE;
+    }
+
+    /**
+     * @return
+     * The packed value (see HandValue) of the hand, or BitmaskEvaluator.INVALID_VALUE.
+     */
+    public int getValue() {
+        return this.value;
+    }
+
+    /**
+     * @return
+     * The type of the hand, or null if the result isn't valid.
+     */
+    public Hand.HandType getHandType() {
+        return isValid() ? HandValue.getHandType(this.value) : null;
+    }
+
+    /**
+     * @return
+     * The CardSet of important cards.
+     */
+    public long getImportantCards() {
+        return this.importantCards;
+    }
+
+    /**
+     * @return
+     * The CardSet of second important cards, which may be empty.
+     */
+    public long getSecondImportantCards() {
+        return this.secondImportantCards;
+    }
+
+    /**
+     * Copies the result into a hand, just as HandEvaluator.evaluate would have set it.
+     * This builds the card lists, so unlike evaluating it does allocate. Nothing happens
+     * if the result isn't valid.
+     *
+     * @param hand
+     * The hand that was evaluated.
+     */
+    public void applyTo(Hand hand) {
+        if (isValid()) {
+            hand.setHandType(getHandType());
+            hand.setEvaluated(true);
+            hand.setImportantCards(CardSet.toCards(this.importantCards));
+            hand.setSecondImportantCards(CardSet.toCards(this.secondImportantCards));
+            hand.setStrength(this.value);
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.mishmash.rally;
+
+/**
+ * The common face of CardMinnow's evaluation engines. Every engine scores hands by exactly
+ * the same rules as the reference HandEvaluator. They differ only in how fast they are and
+ * which hands they can take, so the fastest one that supports a hand can be used in place
+ * of any other. EvaluatorSelector picks one by hand size and wild count.
+ *
+ * Implementations must be safe to share between threads.
+ *
+ * @author mrmcduff
+ *
+ */
+public interface Evaluator {
+
+    /**
+     * @return
+     * The short name of this engine, as used by EvaluatorSelector.ENGINE_PROPERTY.
+     */
+    String getName();
+
+    /**
+     * Checks whether this engine can score hands of a given shape.
+     *
+     * @param handSize
+     * The number of cards in the hand, wild cards included.
+     *
+     * @param wildCount
+     * How many of those cards are wild.
+     *
+     * @return
+     * True if getValue and evaluate can take such hands.
+     */
+    boolean supports(int handSize, int wildCount);
+
+    /**
+     * Evaluates a hand and sets its type, important cards and strength. Invalid hands are
+     * left untouched.
+     *
+     * @param hand
+     * The hand to be evaluated.
+     */
+    void evaluate(Hand hand);
+
+    /**
+     * Gets the packed value (see HandValue) of a set of cards.
+     *
+     * @param cards
+     * A CardSet of a size this engine supports.
+     *
+     * @return
+     * The value of the hand, or HandValue.INVALID_VALUE if it isn't a valid hand.
+     *
+     * @throws IllegalArgumentException
+     * If this engine doesn't support hands of that size.
+     */
+    int getValue(long cards) throws IllegalArgumentException;
+
+}
@@ -0,0 +1,190 @@
+package com.mishmash.rally;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Picks the evaluation engine (see Evaluator) to use for a hand. By default, that's the
+ * fastest one that supports the hand's size and number of wild cards:
+ * <ul>
+ * <li>five cards: the FiveCardEvaluator table,</li>
+ * <li>seven cards: the SevenCardEvaluator table, if its file is already there,</li>
+ * <li>any other size: the BitmaskEvaluator,</li>
+ * <li>more than one wild card: the WildCardEvaluator.</li>
+ * </ul>
+ * The seven card table takes a while and a lot of disk to generate, so it's only picked if
+ * its file already existed when this class was loaded. Until then seven card hands go to
+ * the BitmaskEvaluator.
+ *
+ * Setting the <b>cardminnow.evaluator</b> system property to an engine's name (reference,
+ * five-card, seven-card, bitmask or wild) forces that engine for every hand it supports,
+ * and the reference HandEvaluator takes the rest. Forcing "reference" is the way to check
+ * a result against the original engine. A name that isn't an engine's is reported on the
+ * standard error and otherwise ignored, so the engines are picked as if it weren't set.
+ *
+ * The engines are shared, so every caller gets the same instance of each.
+ *
+ * @author mrmcduff
+ *
+ */
+public final class EvaluatorSelector {
+
+    public static final String ENGINE_PROPERTY = "cardminnow.evaluator";
+
+    public static final HandEvaluator REFERENCE = new HandEvaluator();
+    public static final FiveCardEvaluator FIVE_CARD = new FiveCardEvaluator();
+    public static final SevenCardEvaluator SEVEN_CARD = new SevenCardEvaluator();
+    public static final BitmaskEvaluator BITMASK = new BitmaskEvaluator();
+    public static final WildCardEvaluator WILD = new WildCardEvaluator();
+
+    private static final Evaluator[] ENGINES = { REFERENCE, FIVE_CARD, SEVEN_CARD, BITMASK, WILD };
+
+    private static final boolean SEVEN_CARD_READY = SevenCardEvaluator.getTableFile().exists();
+
+    // The engine named by the system property, or null if there isn't one.
+    private static final Evaluator FORCED = getForced(System.getProperty(ENGINE_PROPERTY));
+
+    /**
+     * This is a static class, so there's no need to instantiate it.
+     */
+    private EvaluatorSelector() {}
+
+    /**
+     * Picks the engine for a hand.
+     *
+     * @param handSize
+     * The number of cards in the hand, wild cards included.
+     *
+     * @param wildCount
+     * How many of those cards are wild.
+     *
+     * @return
+     * The engine to use.
+     *
+     * @throws IllegalArgumentException
+     * If no engine can score such a hand.
+     */
+    public static Evaluator select(int handSize, int wildCount) throws IllegalArgumentException {
+        return select(handSize, wildCount, FORCED);
+    }
+
+    /**
+     * Picks the engine for a hand, as select(int, int) does.
+     *
+     * @param hand
+     * The hand to be scored. The joker is its only possible wild card.
+     *
+     * @return
+     * The engine to use.
+     */
+    public static Evaluator select(Hand hand) {
+        int wildCount = CardSet.containsJoker(hand.getCardSet()) ? 1 : 0;
+        return select(Math.max(1, hand.getHandSize()), wildCount);
+    }
+
+    /**
+     * Picks the engine for a hand, with the given engine forced.
+     *
+     * @param handSize
+     * The number of cards in the hand, wild cards included.
+     *
+     * @param wildCount
+     * How many of those cards are wild.
+     *
+     * @param forced
+     * The engine to use wherever it can be, or null to pick the fastest.
+     *
+     * @return
+     * The engine to use.
+     *
+     * @throws IllegalArgumentException
+     * If no engine can score such a hand.
+     */
+    static Evaluator select(int handSize, int wildCount, Evaluator forced)
+            throws IllegalArgumentException {
+        if (forced != null && forced.supports(handSize, wildCount)) {
+            return forced;
+        } else if (forced != null && REFERENCE.supports(handSize, wildCount)) {
+            return REFERENCE;
+        } else if (FIVE_CARD.supports(handSize, wildCount)) {
+            return FIVE_CARD;
+        } else if (SEVEN_CARD_READY && SEVEN_CARD.supports(handSize, wildCount)) {
+            return SEVEN_CARD;
+        } else if (BITMASK.supports(handSize, wildCount)) {
+            return BITMASK;
+        } else if (WILD.supports(handSize, wildCount)) {
+            return WILD;
+        }
+        throw new IllegalArgumentException("No engine can score " + handSize + " cards with "
+                + wildCount + " wild cards.");
+    }
+
+    /**
+     * Finds an engine by name.
+     *
+     * @param name
+     * The engine's name (see Evaluator.getName).
+     *
+     * @return
+     * The shared instance of that engine.
+     *
+     * @throws IllegalArgumentException
+     * If there's no engine with that name.
+     */
+    public static Evaluator forName(String name) throws IllegalArgumentException {
+        for (Evaluator engine : ENGINES) {
+            if (engine.getName().equalsIgnoreCase(name.trim())) {
+                return engine;
+            }
+        }
+        throw new IllegalArgumentException("There's no evaluation engine called '" + name + "'.");
+    }
+
+    /**
+     * @return
+     * Every engine that can be used right now: all of them, less the seven card table if
+     * its file isn't there yet.
+     */
+    public static List<Evaluator> getAvailableEngines() {
+        List<Evaluator> engines = new ArrayList<Evaluator>();
+        for (Evaluator engine : ENGINES) {
+            if (engine != SEVEN_CARD || SEVEN_CARD_READY) {
+                engines.add(engine);
+            }
+        }
+        return Collections.unmodifiableList(engines);
+    }
+
+    /**
+     * @return
+     * The engine forced by the system property, or null if none is.
+     */
+    public static Evaluator getForced() {
+        return FORCED;
+    }
+
+    /**
+     * Reads the property value. This runs while the class is loaded, so a bad name can't
+     * throw, or the class (and Hand with it) would never load at all.
+     *
+     * @param name
+     * The property value.
+     *
+     * @return
+     * The engine the value names, or null if it's unset, empty, or not an engine's name.
+     */
+    static Evaluator getForced(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return forName(name);
+        } catch (IllegalArgumentException iae) {
+            System.err.println("Ignoring " + ENGINE_PROPERTY + ": " + iae.getMessage()
+                    + " Engines are picked automatically instead.");
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,253 @@
+package com.mishmash.rally;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A table-driven evaluator for hands of exactly five cards. Every five card hand falls into
+ * one of 7,462 equivalence classes (plus 2,535 more when one of the cards is the joker), and
+ * the class only depends on the card values and whether all the natural cards share a suit.
+ * We precompute the value of every class once, so scoring a hand is a single pass over its
+ * cards followed by one or two array lookups.
+ *
+ * The tables are built by running HandEvaluator on one representative hand per class, so
+ * this evaluator agrees with HandEvaluator by construction. Hands of any other size are
+ * simply passed along to a HandEvaluator.
+ *
+ * @author mrmcduff
+ *
+ */
+public class FiveCardEvaluator implements Evaluator {
+
+    // This engine's name for EvaluatorSelector.
+    public static final String NAME = "five-card";
+
+    public static final int HAND_SIZE = 5;
+
+    // Returned by getValue for hands that HandEvaluator would refuse to evaluate.
+    public static final int INVALID_VALUE = HandValue.INVALID_VALUE;
+
+    // One prime per card value, deuce first, so that a product identifies a set of values.
+    private static final int[] RANK_PRIMES = { 2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41 };
+    private static final int JOKER_PRIME = 43;
+
+    private static final int RANK_COUNT = CardSet.RANK_COUNT;
+    private static final int SUIT_COUNT = CardSet.SUIT_COUNT;
+    private static final int JOKER_FLAG = 1 << RANK_COUNT;
+
+    // Indexed by the bitmask of card values, with JOKER_FLAG set if the joker is in the hand.
+    private static final int[] FLUSH_VALUES = new int[JOKER_FLAG << 1];
+    private static final int[] UNIQUE_VALUES = new int[JOKER_FLAG << 1];
+
+    // Hands with repeated values are found by binary search on the product of their primes.
+    private static final int[] PRODUCTS;
+    private static final int[] PRODUCT_VALUES;
+
+    static {
+        List<int[]> repeated = new ArrayList<int[]>();
+        buildTables(new int[HAND_SIZE], 0, RANK_COUNT - 1, false, repeated);
+        buildTables(new int[HAND_SIZE - 1], 0, RANK_COUNT - 1, true, repeated);
+
+        long[] sortable = new long[repeated.size()];
+        for (int i = 0; i < sortable.length; ++i) {
+            int[] entry = repeated.get(i);
+            sortable[i] = ((long) entry[0] << Integer.SIZE) | entry[1];
+        }
+        Arrays.sort(sortable);
+        PRODUCTS = new int[sortable.length];
+        PRODUCT_VALUES = new int[sortable.length];
+        for (int i = 0; i < sortable.length; ++i) {
+            PRODUCTS[i] = (int) (sortable[i] >>> Integer.SIZE);
+            PRODUCT_VALUES[i] = (int) sortable[i];
+        }
+    }
+
+    // Falls back on this for hands that aren't five cards long.
+    private HandEvaluator referenceEvaluator = new HandEvaluator();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Takes five card hands, with or without the joker.
+     */
+    @Override
+    public boolean supports(int handSize, int wildCount) {
+        return handSize == HAND_SIZE && wildCount >= 0 && wildCount <= 1;
+    }
+
+    /**
+     * Evaluates a hand and sets its type and important cards, just like
+     * HandEvaluator.evaluate does. Invalid hands are left untouched.
+     *
+     * @param hand
+     * The hand to be evaluated.
+     */
+    @Override
+    public void evaluate(Hand hand) {
+        if (hand.getHandSize() != HAND_SIZE) {
+            referenceEvaluator.evaluate(hand);
+        } else {
+            int value = getValue(hand.getCards());
+            if (value != INVALID_VALUE) {
+                HandValue.applyTo(hand, value);
+            }
+        }
+    }
+
+    /**
+     * Gets the packed value (see HandValue) of a five card hand.
+     *
+     * @param cards
+     * Exactly five cards.
+     *
+     * @return
+     * The value of the hand, or INVALID_VALUE if it contains an invalid card or a duplicate.
+     *
+     * @throws IllegalArgumentException
+     * If the list doesn't hold five cards.
+     */
+    public int getValue(List<Card> cards) throws IllegalArgumentException {
+        if (cards.size() != HAND_SIZE) {
+            throw new IllegalArgumentException("A five card evaluator can't score "
+                    + cards.size() + " cards.");
+        }
+        long set = CardSet.of(cards);
+        if (CardSet.size(set) != HAND_SIZE) {
+            // Duplicates (including a second joker) and invalid cards drop out of the set.
+            return INVALID_VALUE;
+        }
+        return getValue(set);
+    }
+    
+    /**
+     * Gets the packed value (see HandValue) of a five card hand.
+     *
+     * @param cards
+     * A CardSet holding exactly five cards.
+     *
+     * @return
+     * The value of the hand.
+     *
+     * @throws IllegalArgumentException
+     * If the set doesn't hold five cards.
+     */
+    @Override
+    public int getValue(long cards) throws IllegalArgumentException {
+        if (CardSet.size(cards) != HAND_SIZE) {
+            throw new IllegalArgumentException("A five card evaluator can't score "
+                    + CardSet.size(cards) + " cards.");
+        }
+
+        int rankMask = 0;
+        int suitMask = 0;
+        int product = CardSet.containsJoker(cards) ? JOKER_PRIME : 1;
+        for (long rest = cards & CardSet.NATURAL_DECK; rest != 0; rest = CardSet.withoutFirst(rest)) {
+            int ordinal = CardSet.firstOrdinal(rest);
+            int rank = ordinal % RANK_COUNT;
+            rankMask |= 1 << rank;
+            suitMask |= 1 << (ordinal / RANK_COUNT);
+            product *= RANK_PRIMES[rank];
+        }
+
+        int index = CardSet.containsJoker(cards) ? rankMask | JOKER_FLAG : rankMask;
+        if (Integer.bitCount(suitMask) == 1) {
+            return FLUSH_VALUES[index];
+        } else if (Integer.bitCount(rankMask) == CardSet.size(cards & CardSet.NATURAL_DECK)) {
+            return UNIQUE_VALUES[index];
+        } else {
+            return PRODUCT_VALUES[Arrays.binarySearch(PRODUCTS, product)];
+        }
+    }
+    
+    /**
+     * Walks through every multiset of card values of the given size (in descending order, and
+     * with no value used more than four times), scoring a representative hand for each.
+     *
+     * @param ranks
+     * Scratch space holding the rank indices picked so far.
+     *
+     * @param depth
+     * How many ranks have been picked.
+     *
+     * @param maxRank
+     * The highest rank index the next pick may use.
+     *
+     * @param withJoker
+     * Whether the joker fills out the hand.
+     *
+     * @param repeated
+     * Collects { product, value } pairs for the multisets with repeated values.
+     */
+    private static void buildTables(int[] ranks, int depth, int maxRank, boolean withJoker,
+            List<int[]> repeated) {
+        if (depth < ranks.length) {
+            for (int rank = maxRank; rank >= 0; --rank) {
+                ranks[depth] = rank;
+                int sameRank = 0;
+                for (int i = 0; i <= depth; ++i) {
+                    if (ranks[i] == rank) {
+                        ++sameRank;
+                    }
+                }
+                if (sameRank <= SUIT_COUNT) {
+                    buildTables(ranks, depth + 1, rank, withJoker, repeated);
+                }
+            }
+            return;
+        }
+
+        int rankMask = 0;
+        int product = withJoker ? JOKER_PRIME : 1;
+        for (int rank : ranks) {
+            rankMask |= 1 << rank;
+            product *= RANK_PRIMES[rank];
+        }
+        int index = withJoker ? rankMask | JOKER_FLAG : rankMask;
+
+        int value = scoreWithReference(ranks, withJoker, null);
+        if (Integer.bitCount(rankMask) == ranks.length) {
+            UNIQUE_VALUES[index] = value;
+            FLUSH_VALUES[index] = scoreWithReference(ranks, withJoker, Card.Suit.SPADES);
+        } else {
+            repeated.add(new int[] { product, value });
+        }
+    }
+
+    /**
+     * Scores a hand built from rank indices with HandEvaluator.
+     *
+     * @param ranks
+     * The rank indices of the natural cards.
+     *
+     * @param withJoker
+     * Whether to add a joker.
+     *
+     * @param flushSuit
+     * The suit to give every card, or null to cycle through the suits. Cycling keeps equal
+     * values apart and stops the hand from being a flush.
+     *
+     * @return
+     * The packed value of the hand.
+     */
+    private static int scoreWithReference(int[] ranks, boolean withJoker, Card.Suit flushSuit) {
+        Card.Suit[] suits = Card.Suit.values();
+        List<Card> cards = new ArrayList<Card>();
+        for (int i = 0; i < ranks.length; ++i) {
+            Card.Suit suit = (flushSuit != null) ? flushSuit : suits[i % SUIT_COUNT];
+            cards.add(Card.valueOf(ranks[i] + Card.MIN_CARD_VALUE, suit));
+        }
+        if (withJoker) {
+            cards.add(Card.joker());
+        }
+        // Scored by the reference directly. Letting the hand evaluate itself would go through
+        // EvaluatorSelector, which could hand it back to this half-built table.
+        Hand hand = new Hand(cards);
+        new HandEvaluator().evaluate(hand);
+        return HandValue.valueOf(hand);
+    }
+
+}
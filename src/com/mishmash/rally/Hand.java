@@ -2,9 +2,8 @@ package com.mishmash.rally;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
 /**
  * This represents the fundamental purpose of the program, a 'hand' of cards.
@@ -12,6 +11,13 @@ import java.util.Set;
  * contain no duplicates (which effectively limits its size to 53, but if we
  * change the properties of a deck this will not be the case).
  * 
+ * A hand evaluates itself the first time its result is asked for, using the engine that
+ * EvaluatorSelector picks for its size, and only as far as that result needs. Asking for
+ * the type just classifies the hand, asking for the strength scores it, and the important
+ * card lists are only built once somebody asks for them (or for the description). Each
+ * step happens exactly once. Once that's happened the hand can be handed to other threads
+ * freely, and its card lists can't be changed through the getters.
+ * 
  * @author mrmcduff
  *
  */
@@ -77,19 +83,39 @@ public class Hand {
     
     private HandType type = HandType.HIGH_CARD;
     private boolean isEvaluated = false;
+    
+    // How far this hand has got through its own evaluation. Each stage includes the ones
+    // before it: the type is known, then the strength, then the important card lists.
+    private static final int UNEVALUATED = 0;
+    private static final int CLASSIFIED = 1;
+    private static final int SCORED = 2;
+    private static final int SETTLED = 3;
+
+    /**
+     * Raised (last of all) as the hand gets further through the evaluator. Every getter reads
+     * this first, which makes everything the evaluator wrote visible to whichever thread
+     * is asking.
+     */
+    private volatile int stage = UNEVALUATED;
 
     /**
      * Each hand must have a set of important cards that define it. For instance,
      * a PAIR hand would have the defining pair as its most important cards.
      */
-    private List<Card> importantCards = new ArrayList<Card>();
+    private List<Card> importantCards = Collections.emptyList();
 
+    /**
+     * A single number for comparing hands (see HandValue). A stronger hand always has a
+     * higher strength, and hands that tie have the same strength.
+     */
+    private int strength = HandValue.INVALID_VALUE;
+    
     /**
      * Some hands require two sets of important cards, and this is the lesser of the
      * two. For instance, a FULL_HOUSE has three of a kind and a pair. This would 
      * correspond to the pair.
      */
-    private List<Card> secondImportantCards = new ArrayList<Card>();
+    private List<Card> secondImportantCards = Collections.emptyList();
     
     /**
      * The actual set of cards for this hand.
@@ -105,11 +131,6 @@ public class Hand {
      */
     public static final int FIVE_CARD_DRAW_HAND_SIZE = 5;
     
-    /**
-     * The class that evaluates all the different possibilities.
-     */
-    private HandEvaluator evaluator = new HandEvaluator();
-
     /**
      * A default constructor for an empty hand.
      */
@@ -144,29 +165,15 @@ public class Hand {
      * contains no duplicates.
      */
     public boolean isValid() {
-        boolean answer = true;
-        
-        Set<Card> cardSet = new HashSet<Card>();
         if (this.getHandSize() == 0) {
             // No need to check everything else if we don't have
             // the right number of cards.
             return false;
-        } else {
-            for (Card card : cards) {
-                
-                // All cards must be valid.
-                if (!card.isValid()) {
-                    answer = false;
-                }
-                
-                // There should be no duplicates.
-                if (!cardSet.add(card)) {
-                    answer = false;
-                }
-            }
         }
         
-        return answer;
+        // Invalid cards and duplicates both drop out of the set, so all we
+        // have to do is count what's left.
+        return CardSet.size(this.getCardSet()) == this.getHandSize();
     }
     
     /**
@@ -190,12 +197,116 @@ public class Hand {
      * The <b>type</b> field of this hand.
      */
     public HandType getHandType() {
-        if (this.isEvaluated) {
-            return this.type;
-        } else {
-            evaluator.evaluate(this);
-            return this.type;
+        settle(CLASSIFIED);
+        return this.type;
+    }
+    
+    /**
+     * Makes sure this hand has been evaluated at least as far as the given stage, doing
+     * the rest itself if no evaluator has already. Only one thread ever does the work. The
+     * others wait for it and then see its result.
+     * 
+     * @param wanted
+     * The stage the caller needs.
+     */
+    private void settle(int wanted) {
+        if (this.stage < wanted) {
+            synchronized (this) {
+                if (this.stage < wanted) {
+                    advance(wanted);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Does the evaluation work for settle. Must be called holding this hand's lock.
+     * 
+     * @param wanted
+     * The stage the caller needs.
+     */
+    private void advance(int wanted) {
+        if (this.isEvaluated || !this.isValid()) {
+            // Either an evaluator has filled in everything already, or there's nothing to fill in.
+            this.stage = SETTLED;
+            return;
+        }
+        
+        long cardSet = this.getCardSet();
+        Evaluator engine = EvaluatorSelector.select(this);
+        if (engine != EvaluatorSelector.BITMASK) {
+            // The table engines score a hand in one lookup, so there's nothing to stage.
+            if (wanted < SETTLED) {
+                this.strength = engine.getValue(cardSet);
+                this.type = HandValue.getHandType(this.strength);
+                this.stage = SCORED;
+            } else {
+                engine.evaluate(this);
+                this.stage = SETTLED;
+            }
+            return;
+        }
+        
+        BitmaskEvaluator evaluator = EvaluatorSelector.BITMASK;
+        if (wanted == CLASSIFIED) {
+            this.type = evaluator.classify(cardSet);
+            this.stage = CLASSIFIED;
+            return;
+        }
+        
+        if (wanted == SCORED) {
+            this.strength = evaluator.getValue(cardSet);
+            this.type = HandValue.getHandType(this.strength);
+            this.stage = SCORED;
+            return;
         }
+        
+        // Only now do we need the cards themselves. (The value alone can't always say which
+        // suit a flush is in, so this takes them straight from the evaluator.)
+        EvaluationResult result = new EvaluationResult();
+        evaluator.evaluate(cardSet, result);
+        this.strength = result.getValue();
+        this.type = result.getHandType();
+        this.importantCards = Collections.unmodifiableList(CardSet.toCards(result.getImportantCards()));
+        this.secondImportantCards = 
+                Collections.unmodifiableList(CardSet.toCards(result.getSecondImportantCards()));
+        this.isEvaluated = true;
+        this.stage = SETTLED;
+    }
+    
+    /**
+     * Getter for the strength of this hand, which orders every hand exactly, kickers
+     * included. Comparing two hands is just comparing their strengths. Like getHandType,
+     * this evaluates the hand if it hasn't been evaluated yet.
+     * 
+     * @return
+     * The packed value (see HandValue) of this hand, or HandValue.INVALID_VALUE if the
+     * hand isn't valid.
+     */
+    public int getStrength() {
+        settle(SCORED);
+        return this.strength;
+    }
+    
+    /**
+     * Setter for the strength of this hand.
+     * 
+     * @param strength
+     * The packed value (see HandValue) of this hand.
+     */
+    public void setStrength(int strength) {
+        this.strength = strength;
+    }
+    
+    /**
+     * Gets the cards of this hand as a CardSet. Invalid cards and duplicates
+     * aren't represented.
+     * 
+     * @return
+     * The bitmask of the valid cards in this hand.
+     */
+    public long getCardSet() {
+        return CardSet.of(this.cards);
     }
     
     /**
@@ -229,14 +340,28 @@ public class Hand {
     public void setEvaluated(boolean evaluated) {
         this.isEvaluated = evaluated;
     }
-    
+
     /**
-     * Getter for the set of important cards.
+     * Getter for the <b>isEvaluated</b> field. Unlike the other getters, this doesn't
+     * evaluate the hand.
+     *
+     * @return
+     * True if an evaluator has filled in this hand's important cards.
+     */
+    public boolean isEvaluated() {
+        return this.isEvaluated;
+    }
+
+    /**
+     * Getter for the set of important cards. Like getHandType, this evaluates
+     * the hand if it hasn't been evaluated yet.
      * 
      * @return
-     * The most important cards in determining the value of this hand.
+     * The most important cards in determining the value of this hand, as a
+     * list that can't be changed.
      */
     public List<Card> getImportantCards() {
+        settle(SETTLED);
         return this.importantCards;
     }
     
@@ -248,7 +373,7 @@ public class Hand {
      */
     public void setImportantCards(List<Card> importantCards) {
         if (importantCards != null && listIsInOrder(importantCards)) {
-            this.importantCards = importantCards;
+            this.importantCards = Collections.unmodifiableList(importantCards);
         }
     }
     
@@ -257,9 +382,11 @@ public class Hand {
      * This list can be empty.
      * 
      * @return
-     * The second most important cards in determining the value of this hand.
+     * The second most important cards in determining the value of this hand, as a
+     * list that can't be changed.
      */
     public List<Card> getSecondImportantCards() {
+        settle(SETTLED);
         return this.secondImportantCards;
     }
     
@@ -271,7 +398,7 @@ public class Hand {
      */
     public void setSecondImportantCards(List<Card> secondImportantCards) {
         if (secondImportantCards != null && listIsInOrder(secondImportantCards)) {
-            this.secondImportantCards = secondImportantCards;
+            this.secondImportantCards = Collections.unmodifiableList(secondImportantCards);
         }
     }
     
@@ -325,149 +452,174 @@ public class Hand {
      */
     public String getDescription() throws IllegalStateException {
         HandType myType = this.getHandType();
+        if (this.isValid()) {
+            return describe(myType, this.getImportantCards(), this.getSecondImportantCards());
+        } else {
+            throw new IllegalStateException("Trying to evaluate an invalid hand.");
+        }
+    }
+    
+    /**
+     * Builds the description of an evaluated hand out of its type and important cards.
+     * Shared with CompactHand, so that both describe a hand the same way.
+     * 
+     * @param myType
+     * The type of the hand.
+     * 
+     * @param importantCards
+     * The hand's important cards.
+     * 
+     * @param secondImportantCards
+     * The hand's second important cards.
+     * 
+     * @return
+     * A string suitable for user consumption describing the hand.
+     * 
+     * @throws IllegalStateException
+     * If the important cards are not set, or if the second important cards are
+     * required but not set.
+     */
+    static String describe(HandType myType, List<Card> importantCards, 
+            List<Card> secondImportantCards) throws IllegalStateException {
         StringBuilder sb = new StringBuilder();
         Card highCard = null;
         Card otherCard = null;
-        if (this.isValid()) {
-            if (this.importantCards != null && this.secondImportantCards != null &&
-                    this.importantCards.size() > 0) {
-                // henceforth, highCard can never be null.
-                highCard = this.importantCards.get(0);
-                
-                if (this.secondImportantCards.size() > 0) {
-                    // otherCard, however, can remain null.
-                    otherCard = this.secondImportantCards.get(0);
-                }
-                
-                final String space = " ";
-                final String of = " of ";
-                final String pluralizer = "s";
-                final String comma = ", ";
-                final String andString = " and ";
-                final String over = " over ";
-                final String royalFlush = "**ROYAL FLUSH**";
-                final String highString = "-high ";
-                final String lucky = ". Someone's feeling lucky.";
-                final String period = ".";
-                final String exclamation = "!";
-                // Six is the only card whose plural requires affixing 'es' rather
-                // than just 's'
-                final String sixPluralizer = "es";
-                // Because I'm going to check this a lot, I'll go ahead and do it now
-                
-                String highPlural = (highCard.getValue() == 6) ? sixPluralizer : pluralizer;
-                String otherPlural = (otherCard != null && otherCard.getValue() == 6) ? sixPluralizer : pluralizer;
-                switch(myType) {
-                case HIGH_CARD:
-                    sb.append(CardUtils.capitalizeWord(highCard.getValueString()));
-                    sb.append(space);
-                    sb.append(myType);
-                    sb.append(period);
-                    break;
-                case PAIR:
+        if (importantCards != null && secondImportantCards != null &&
+                importantCards.size() > 0) {
+            // henceforth, highCard can never be null.
+            highCard = importantCards.get(0);
+            
+            if (secondImportantCards.size() > 0) {
+                // otherCard, however, can remain null.
+                otherCard = secondImportantCards.get(0);
+            }
+            
+            final String space = " ";
+            final String of = " of ";
+            final String pluralizer = "s";
+            final String comma = ", ";
+            final String andString = " and ";
+            final String over = " over ";
+            final String royalFlush = "**ROYAL FLUSH**";
+            final String highString = "-high ";
+            final String lucky = ". Someone's feeling lucky.";
+            final String period = ".";
+            final String exclamation = "!";
+            // Six is the only card whose plural requires affixing 'es' rather
+            // than just 's'
+            final String sixPluralizer = "es";
+            // Because I'm going to check this a lot, I'll go ahead and do it now
+            
+            String highPlural = (highCard.getValue() == 6) ? sixPluralizer : pluralizer;
+            String otherPlural = (otherCard != null && otherCard.getValue() == 6) ? sixPluralizer : pluralizer;
+            switch(myType) {
+            case HIGH_CARD:
+                sb.append(CardUtils.capitalizeWord(highCard.getValueString()));
+                sb.append(space);
+                sb.append(myType);
+                sb.append(period);
+                break;
+            case PAIR:
+                sb.append(CardUtils.capitalizeWord(myType.toString()));
+                sb.append(of);
+                sb.append(highCard.getValueString());
+                sb.append(highPlural);
+                sb.append(period);
+                break;
+            case TWO_PAIR:
+                if (otherCard != null) {
                     sb.append(CardUtils.capitalizeWord(myType.toString()));
-                    sb.append(of);
+                    sb.append(comma);
                     sb.append(highCard.getValueString());
                     sb.append(highPlural);
+                    sb.append(andString);
+                    sb.append(otherCard.getValueString());
+                    sb.append(otherPlural);
                     sb.append(period);
-                    break;
-                case TWO_PAIR:
-                    if (otherCard != null) {
-                        sb.append(CardUtils.capitalizeWord(myType.toString()));
-                        sb.append(comma);
-                        sb.append(highCard.getValueString());
-                        sb.append(highPlural);
-                        sb.append(andString);
-                        sb.append(otherCard.getValueString());
-                        sb.append(otherPlural);
-                        sb.append(period);
-                    } else {
-                        String twoPairErrorString = "Invalid two pair created. ";
-                        throw new IllegalStateException(twoPairErrorString);
-                    }
-                    break;
-                case THREE_OF_A_KIND:
+                } else {
+                    String twoPairErrorString = "Invalid two pair created. ";
+                    throw new IllegalStateException(twoPairErrorString);
+                }
+                break;
+            case THREE_OF_A_KIND:
+                sb.append(CardUtils.capitalizeWord(myType.toString()));
+                sb.append(space);
+                sb.append(highCard.getValueString());
+                sb.append(highPlural);
+                sb.append(period);
+                break;
+            case STRAIGHT:
+                sb.append(CardUtils.capitalizeWord(highCard.getValueString()));
+                sb.append(myType.toString());
+                sb.append(period);
+                break;
+            case FLUSH:
+                sb.append(CardUtils.capitalizeWord(highCard.getValueString()));
+                sb.append(myType.toString());
+                sb.append(of);
+                sb.append(highCard.getSuit());
+                sb.append(period);
+                break;
+            case FULL_HOUSE:
+                if (otherCard != null) {
                     sb.append(CardUtils.capitalizeWord(myType.toString()));
-                    sb.append(space);
+                    sb.append(comma);
                     sb.append(highCard.getValueString());
                     sb.append(highPlural);
+                    sb.append(over);
+                    sb.append(otherCard.getValueString());
+                    sb.append(otherPlural);
                     sb.append(period);
-                    break;
-                case STRAIGHT:
-                    sb.append(CardUtils.capitalizeWord(highCard.getValueString()));
-                    sb.append(myType.toString());
-                    sb.append(period);
-                    break;
-                case FLUSH:
+                } else {
+                    String fullHouseErrorString = "Invalid full house created. ";
+                    throw new IllegalStateException(fullHouseErrorString);
+                }
+                break;
+            case FOUR_OF_A_KIND:
+                sb.append(CardUtils.capitalizeWord(myType.toString()));
+                sb.append(space);
+                sb.append(highCard.getValueString());
+                sb.append(highPlural);
+                sb.append(exclamation);
+                break;
+            case STRAIGHT_FLUSH:
+                if (highCard.getValue() == Card.MAX_CARD_VALUE) {
+                    sb.append(royalFlush);
+                    sb.append(space);
+                    sb.append(of);
+                    sb.append(CardUtils.capitalizeWord(highCard.getSuit().toString()));
+                    sb.append(exclamation);
+                } else {
                     sb.append(CardUtils.capitalizeWord(highCard.getValueString()));
+                    sb.append(highString);
                     sb.append(myType.toString());
                     sb.append(of);
                     sb.append(highCard.getSuit());
-                    sb.append(period);
-                    break;
-                case FULL_HOUSE:
-                    if (otherCard != null) {
-                        sb.append(CardUtils.capitalizeWord(myType.toString()));
-                        sb.append(comma);
-                        sb.append(highCard.getValueString());
-                        sb.append(highPlural);
-                        sb.append(over);
-                        sb.append(otherCard.getValueString());
-                        sb.append(otherPlural);
-                        sb.append(period);
-                    } else {
-                        String fullHouseErrorString = "Invalid full house created. ";
-                        throw new IllegalStateException(fullHouseErrorString);
-                    }
-                    break;
-                case FOUR_OF_A_KIND:
-                    sb.append(CardUtils.capitalizeWord(myType.toString()));
-                    sb.append(space);
-                    sb.append(highCard.getValueString());
-                    sb.append(highPlural);
                     sb.append(exclamation);
-                    break;
-                case STRAIGHT_FLUSH:
-                    if (highCard.getValue() == Card.MAX_CARD_VALUE) {
-                        sb.append(royalFlush);
-                        sb.append(space);
-                        sb.append(of);
-                        sb.append(CardUtils.capitalizeWord(highCard.getSuit().toString()));
-                        sb.append(exclamation);
-                    } else {
-                        sb.append(CardUtils.capitalizeWord(highCard.getValueString()));
-                        sb.append(highString);
-                        sb.append(myType.toString());
-                        sb.append(of);
-                        sb.append(highCard.getSuit());
-                        sb.append(exclamation);
-                    }
-                    break;
-                case FIVE_OF_A_KIND:
-                    sb.append(CardUtils.capitalizeWord(myType.toString()));
-                    sb.append(space);
-                    sb.append(highCard.getValueString());
-                    sb.append(highPlural);
-                    sb.append(exclamation);
-                    sb.append(lucky);
-                    break;
-                default:
-                    throw new IllegalStateException("Switched to an invalid handtype enum value.");
-                }
-            } else {
-                if (this.importantCards == null) {
-                    throw new IllegalStateException("ImportantCards were null");
-                } else if (this.importantCards.size() == 0){
-                    throw new IllegalStateException("ImportantCards were an empty set. This hand" +
-                            " should be invalid.");
-                } else {
-                    throw new IllegalStateException("The SecondImportantCards were null.");
                 }
+                break;
+            case FIVE_OF_A_KIND:
+                sb.append(CardUtils.capitalizeWord(myType.toString()));
+                sb.append(space);
+                sb.append(highCard.getValueString());
+                sb.append(highPlural);
+                sb.append(exclamation);
+                sb.append(lucky);
+                break;
+            default:
+                throw new IllegalStateException("Switched to an invalid handtype enum value.");
             }
         } else {
-            throw new IllegalStateException("Trying to evaluate an invalid hand.");
+            if (importantCards == null) {
+                throw new IllegalStateException("ImportantCards were null");
+            } else if (importantCards.size() == 0){
+                throw new IllegalStateException("ImportantCards were an empty set. This hand" +
+                        " should be invalid.");
+            } else {
+                throw new IllegalStateException("The SecondImportantCards were null.");
+            }
         }
-        
+
         return sb.toString();
     }
     
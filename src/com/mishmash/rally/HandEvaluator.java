@@ -1,22 +1,27 @@
 package com.mishmash.rally;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
 /**
  * This is the all-knowing, all-powerful evaluation class of CardMinnow. Allowing 
  * a wild card and hands that can be as large as a whole deck introduces more difficulty
- * to picking out a five card hand and requires more read-throughs of the cards. Sorting
- * saves us some work and allows some optimization.
+ * to picking out a five card hand and requires more read-throughs of the cards. Bucketing the
+ * cards by value and suit up front saves us some work and allows some optimization.
+ * 
+ * Everything an evaluation needs is created fresh for that call, so a HandEvaluator holds no
+ * state and one instance can be shared by any number of threads.
  * 
  * @author mrmcduff
  *
  */
-public class HandEvaluator {
+public class HandEvaluator implements Evaluator {
+
+    // This engine's name for EvaluatorSelector.
+    public static final String NAME = "reference";
     
-    public final int SCORING_HAND_SIZE = 5;
+    public static final int SCORING_HAND_SIZE = Hand.FIVE_CARD_DRAW_HAND_SIZE;
     
     /**
      * A struct-type class to hold all the cards of a hand in an easier-to-use object.
@@ -33,6 +38,10 @@ public class HandEvaluator {
         public HashMap<Integer, List<Card>> pairLists = new HashMap<Integer, List<Card>>();
         public HashMap<Card.Suit, List<Card>> flushLists = new HashMap<Card.Suit, List<Card>>();
         public HashMap<Card, List<Card>> straightLists = new HashMap<Card, List<Card>>();
+        // How many natural cards there are of each value (indexed from the two) and each
+        // suit (indexed from clubs).
+        public int[] rankCounts = new int[Card.RANK_COUNT];
+        public int[] suitCounts = new int[Card.NATURAL_SUIT_COUNT];
     }
     
     /**
@@ -48,6 +57,19 @@ public class HandEvaluator {
         public List<Card> otherList = new ArrayList<Card>();
     }
     
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Takes hands of any size, with or without the joker.
+     */
+    @Override
+    public boolean supports(int handSize, int wildCount) {
+        return handSize > 0 && wildCount >= 0 && wildCount <= 1;
+    }
+
     /**
      * Method to evaluate a hand. This is the 'master' method of this class.
      * Checks each of the possible hand types to see what the input hand contains
@@ -56,6 +78,7 @@ public class HandEvaluator {
      * @param hand
      * The hand to be evaluated. We evaluate by using hand.setType().
      */
+    @Override
     public void evaluate(Hand hand) {
         SimplifiedHand simpleHand = sortHand(hand);
         FiveCardHand bestFive = new FiveCardHand();
@@ -65,9 +88,13 @@ public class HandEvaluator {
             // We have to start somewhere.
             bestFive = getBestCollection(simpleHand);
             
-            // If we already have five of a kind, we're done.
+            // If we already have five of a kind, we're done. If no suit has enough cards,
+            // there's no flush of either kind to look for.
+            boolean hasFlushSuit = hasFlushSuit(simpleHand);
             if (bestFive.type.compareTo(Hand.HandType.FIVE_OF_A_KIND) < 0) {
-                tempHand = getBestStraightFlush(simpleHand);
+                if (hasFlushSuit) {
+                    tempHand = getBestStraightFlush(simpleHand);
+                }
                 if (tempHand.type.compareTo(bestFive.type) > 0) {
                     // This is only possible if we found a straight flush
                     bestFive = tempHand;
@@ -75,7 +102,9 @@ public class HandEvaluator {
                     // If we have a full house or four of a kind, we don't need
                     // to check anything else.
                     if (bestFive.type.compareTo(Hand.HandType.FULL_HOUSE) < 0) {
-                        tempHand = getBestFlush(simpleHand);
+                        if (hasFlushSuit) {
+                            tempHand = getBestFlush(simpleHand);
+                        }
                         if (tempHand.type.compareTo(bestFive.type) > 0) {
                             // Then we must have found a flush
                             bestFive = tempHand;
@@ -102,14 +131,54 @@ public class HandEvaluator {
             // There is one special case, where the hand contains only a joker, which
             // we haven't covered.
             if (bestFive.type == Hand.HandType.HIGH_CARD && bestFive.importantList.isEmpty()) {
-                bestFive.importantList.add(new Card());
+                bestFive.importantList.add(Card.joker());
             }
             hand.setImportantCards(bestFive.importantList);
             hand.setSecondImportantCards(bestFive.otherList);
+            hand.setStrength(HandValue.valueOf(bestFive.type, hand.getCards(), 
+                    bestFive.importantList, bestFive.otherList));
             
         } // end if we have a valid hand
     }
     
+    /**
+     * Gets the packed value (see HandValue) of a set of cards, by evaluating a hand of them.
+     * 
+     * @param cards
+     * A CardSet of any size.
+     * 
+     * @return
+     * The value of the hand, or HandValue.INVALID_VALUE if the set is empty or has stray
+     * bits set.
+     */
+    @Override
+    public int getValue(long cards) {
+        if (cards == CardSet.EMPTY || (cards & ~CardSet.FULL_DECK) != 0) {
+            return HandValue.INVALID_VALUE;
+        }
+        Hand hand = CardSet.toHand(cards);
+        evaluate(hand);
+        return hand.getStrength();
+    }
+    
+    /**
+     * @param simpleHand
+     * A sorted hand.
+     *
+     * @return
+     * True if some suit has enough natural cards to make a flush, with the joker's help
+     * if the hand has it.
+     */
+    private static boolean hasFlushSuit(SimplifiedHand simpleHand) {
+        int minFlushSize = simpleHand.hasJoker ? SCORING_HAND_SIZE - 1 : SCORING_HAND_SIZE;
+        for (int count : simpleHand.suitCounts) {
+            if (count >= minFlushSize) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Sorts through all the cards of a hand to make it much easier
      * and faster to determine its value.
@@ -123,19 +192,31 @@ public class HandEvaluator {
         SimplifiedHand simpleHand = new SimplifiedHand();
         if (hand.isValid()) {
             simpleHand.isValid = true;
-            List<Card> cards = hand.getCards();
             
-            // This will make our lives much easier,
-            // and save us operations because we always know
-            // the highest cards are the first ones in the order.
-            Collections.sort(cards, Collections.reverseOrder());
-            Card currentStraightCard = null;
-            int value = 0;
-            for (Card card : cards) {
+            // This is a counting sort. Every card drops straight into its slot by value and suit,
+            // so reading the grid back from the top gives us the cards highest first without
+            // comparing any of them, and counts each value and suit along the way.
+            Card[][] grid = new Card[Card.RANK_COUNT][Card.NATURAL_SUIT_COUNT];
+            for (Card card : hand.getCards()) {
                 if (Card.Suit.JOKER == card.getSuit()) {
                     simpleHand.hasJoker = true;
-                    continue;
                 } else {
+                    int rank = card.getValue() - Card.MIN_CARD_VALUE;
+                    int suit = card.getSuit().getSuitValue() - 1;
+                    grid[rank][suit] = card;
+                    ++simpleHand.rankCounts[rank];
+                    ++simpleHand.suitCounts[suit];
+                }
+            }
+            
+            Card currentStraightCard = null;
+            int value = 0;
+            for (int rank = Card.RANK_COUNT - 1; rank >= 0; --rank) {
+                for (int suit = Card.NATURAL_SUIT_COUNT - 1; suit >= 0; --suit) {
+                    Card card = grid[rank][suit];
+                    if (card == null) {
+                        continue;
+                    }
                     if ( value == card.getValue() ) {
                         List<Card> valueList = simpleHand.pairLists.get(Integer.valueOf(value));
                         valueList.add(card);
@@ -197,7 +278,10 @@ public class HandEvaluator {
         FiveCardHand fch = new FiveCardHand();
         fch.hasJoker = simpleHand.hasJoker;
         
-        fch.importantList = getBestNaturalCollection(simpleHand.pairLists);
+        int bestValue = getBestNaturalCollection(simpleHand.rankCounts, 0);
+        if (bestValue != 0) {
+            fch.importantList = simpleHand.pairLists.get(Integer.valueOf(bestValue));
+        }
         
         int compliment = SCORING_HAND_SIZE - fch.importantList.size();
         if (simpleHand.hasJoker) {
@@ -205,14 +289,6 @@ public class HandEvaluator {
             --compliment;
         }
         
-        // Clone only returns an object, so we have to cast here.
-        // I don't usually suppress warnings, but for this project it felt
-        // overkill to verify that this cast worked, given that SimplifiedHand
-        // is an inner class of HandEvaluator.
-        @SuppressWarnings("unchecked")
-        HashMap<Integer, List<Card>> copyMap = 
-                (HashMap<Integer, List<Card>>) simpleHand.pairLists.clone();
-        
         switch(compliment) {
         case 4:
             // At the moment, we don't evaluate the second highest card for 
@@ -220,13 +296,11 @@ public class HandEvaluator {
             fch.type = Hand.HandType.HIGH_CARD;
             break;
         case 3:
-            // Then the best hand we can have is two pair.
-            
-            if (copyMap != null) {
-                // just a sanity check, then i'm removing the best set from the 
-                // copy table
-                copyMap.remove(Integer.valueOf(fch.importantList.get(0).getValue()));
-                fch.otherList = getBestNaturalCollection(copyMap);
+            // Then the best hand we can have is two pair. The best set is left out
+            // of the search for the second one.
+            int otherValue = getBestNaturalCollection(simpleHand.rankCounts, bestValue);
+            if (otherValue != 0) {
+                fch.otherList = simpleHand.pairLists.get(Integer.valueOf(otherValue));
             }
             
             if (fch.otherList.size() == 2) {
@@ -237,16 +311,14 @@ public class HandEvaluator {
             break;
         case 2:
             // then we could, in theory, have a full house.
-            if (copyMap != null) {
-                copyMap.remove(Integer.valueOf(fch.importantList.get(0).getValue()));
-                fch.otherList = getBestNaturalPair(copyMap);
-            }
-            
-            if (fch.otherList.size() == 2) {
+            int pairValue = getBestNaturalPair(simpleHand.rankCounts, bestValue);
+            if (pairValue != 0) {
+                List<Card> pairList = simpleHand.pairLists.get(Integer.valueOf(pairValue));
+                fch.otherList.add(pairList.get(0));
+                fch.otherList.add(pairList.get(1));
                 fch.type = Hand.HandType.FULL_HOUSE;
             } else {
                 fch.type = Hand.HandType.THREE_OF_A_KIND;
-                fch.otherList.clear();
             }
             break;
         case 1:
@@ -268,75 +340,54 @@ public class HandEvaluator {
     }
     
     /**
-     * Gets the best 'natural' (as in no wild cards) collection from the given table.
+     * Gets the value of the best 'natural' (as in no wild cards) collection: the value
+     * with the most cards, and the highest of those if there's a tie.
+     * 
+     * @param rankCounts
+     * The number of cards found at each value, indexed from the two.
      * 
-     * @param pairLists
-     * The Integer-List map pairing card values to the number of cards found at that value.
+     * @param skipValue
+     * A value to leave out of the search, or 0 to search them all.
      * 
      * @return
-     * A list containing the cards of the best collection, or an empty list if no such
-     * collection exists.
+     * The card value of the best collection, or 0 if no such collection exists.
      * 
      */
-    private List<Card> getBestNaturalCollection(HashMap<Integer, List<Card>> pairLists) {
-        List<Card> bestSet = new ArrayList<Card>();
-        List<Integer> sortList = new ArrayList<Integer>(pairLists.keySet());
-        Collections.sort(sortList, Collections.reverseOrder());
-        for (Integer i : sortList) {
-            List<Card> tempSet = pairLists.get(i);
-            if (null != tempSet) {
-                if (tempSet.size() > bestSet.size()) {
-                    bestSet = tempSet;
-                } else if ((tempSet.size() == bestSet.size()) && (tempSet.size() > 0) ) {
-                    Card tempTest = tempSet.get(0);
-                    Card bestTest = bestSet.get(0);
-                    if (tempTest.getValue() > bestTest.getValue()) {
-                        bestSet = tempSet;
-                    }
-                }
+    private int getBestNaturalCollection(int[] rankCounts, int skipValue) {
+        int bestValue = 0;
+        int bestCount = 0;
+        // Going from the top down means a tie never replaces the collection we already have.
+        for (int rank = rankCounts.length - 1; rank >= 0; --rank) {
+            int value = rank + Card.MIN_CARD_VALUE;
+            if (rankCounts[rank] > bestCount && value != skipValue) {
+                bestValue = value;
+                bestCount = rankCounts[rank];
             }
         }
-        return bestSet;
+        return bestValue;
     }
     
     /**
-     * Gets the best natural pair available from the table. Useful to find
-     * a secondary pair. This won't ever find three-of-a-kinds, four-of-a-kinds, etc.
-     * @param copyMap
-     * The Integer-List of cards table to search.
+     * Gets the value of the best natural pair available. Useful to find
+     * a secondary pair. Larger collections count as pairs here, too.
+     * 
+     * @param rankCounts
+     * The number of cards found at each value, indexed from the two.
+     * 
+     * @param skipValue
+     * A value to leave out of the search.
      * 
      * @return
-     * The best pair available, or an empty list if there are no pairs.
+     * The card value of the best pair available, or 0 if there are no pairs.
      */
-    private List<Card> getBestNaturalPair(HashMap<Integer, List<Card>> copyMap) {
-        List<Card> bestPair = new ArrayList<Card>();
-        List<Integer> sortList = new ArrayList<Integer>(copyMap.keySet());
-        Collections.sort(sortList, Collections.reverseOrder());
-
-        for (Integer i: sortList) {
-            boolean addNewPair = false;
-            List<Card> tempSet = copyMap.get(i);
-            if (null != tempSet) {
-                if (bestPair.size() == 2) {
-                    if (tempSet.size() >= 2) {
-                        addNewPair = tempSet.get(0).getValue() > bestPair.get(0).getValue();
-                    }
-                } else {
-                    // In this case, our best either hasn't been set yet or is
-                    // of size 1
-                    addNewPair = (tempSet.size() >= bestPair.size());
-                }
-                
-                if (addNewPair) {
-                    bestPair.clear();
-                    bestPair.add(tempSet.get(0));
-                    if (tempSet.size() >= 2) {
-                        bestPair.add(tempSet.get(1));
-                    }
-                }
+    private int getBestNaturalPair(int[] rankCounts, int skipValue) {
+        for (int rank = rankCounts.length - 1; rank >= 0; --rank) {
+            int value = rank + Card.MIN_CARD_VALUE;
+            if (rankCounts[rank] >= 2 && value != skipValue) {
+                return value;
             }
         }
-        return bestPair;
+        return 0;
     }
 
     /**
@@ -352,11 +403,15 @@ public class HandEvaluator {
     public FiveCardHand getBestStraight(SimplifiedHand simpleHand) {
         FiveCardHand fch = new FiveCardHand();
         fch.hasJoker = simpleHand.hasJoker;
+        // The first card at each value is the highest one, and walking the counts from the
+        // top keeps the list in order without sorting it.
         List<Card> amalgamatedList = new ArrayList<Card>();
-        for(Card card : simpleHand.straightLists.keySet()) {
-            amalgamatedList.addAll(simpleHand.straightLists.get(card));
+        for (int rank = Card.RANK_COUNT - 1; rank >= 0; --rank) {
+            if (simpleHand.rankCounts[rank] > 0) {
+                amalgamatedList.add(
+                        simpleHand.pairLists.get(Integer.valueOf(rank + Card.MIN_CARD_VALUE)).get(0));
+            }
         }
-        Collections.sort(amalgamatedList, Collections.reverseOrder());
         List<Card> straightList = getStraightFromOrderedListWithoutDuplicates(amalgamatedList, 
                 simpleHand.hasJoker);
 
@@ -0,0 +1,307 @@
+package com.mishmash.rally;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads files of hands, one hand per line in the notation Interpreter understands, straight
+ * out of memory-mapped bytes. No line is ever decoded into a String: the CardScanner reads
+ * each line through a window onto the buffer, and hands back the line's CardSet.
+ *
+ * A file (or any buffer of ASCII text) is first split into chunks, each ending at the end
+ * of a line, so that the chunks can be parsed in parallel, each on its own thread. Every
+ * line is reported with the offset of its first byte in the file, which says where it was
+ * without anyone having to count lines. Lines end with '\n'. A '\r' before it is
+ * whitespace to the scanner, so Windows line endings work too.
+ *
+ * @author mrmcduff
+ *
+ */
+public final class HandFileParser {
+
+    // No single mapping can be bigger than this, so bigger files take several chunks.
+    static final int MAX_CHUNK_SIZE = Integer.MAX_VALUE;
+
+    // How much of the file to read at a time while looking for the end of a line.
+    private static final int SEARCH_BLOCK_SIZE = 8192;
+
+    private static final byte NEW_LINE = '\n';
+
+    /**
+     * Gets told about each line as it's parsed.
+     *
+     * @author mrmcduff
+     *
+     */
+    public interface LineHandler {
+
+        /**
+         * Takes a line where every token was a card.
+         *
+         * @param offset
+         * Where the line starts in the file.
+         *
+         * @param cards
+         * The CardSet of the line's cards.
+         *
+         * @param cardCount
+         * How many cards the line named. If that's more than the size of the set, some card
+         * was named twice, and the hand isn't valid. A blank line has no cards at all, and
+         * comes to badLine instead.
+         */
+        void hand(long offset, long cards, int cardCount);
+
+        /**
+         * Takes a line with bad tokens.
+         *
+         * @param offset
+         * Where the line starts in the file.
+         *
+         * @param scanner
+         * The scanner that read the line, which has its bad tokens and error message. It
+         * only holds them until this method returns.
+         */
+        void badLine(long offset, CardScanner scanner);
+    }
+
+    /**
+     * A run of whole lines from a file or buffer.
+     *
+     * @author mrmcduff
+     *
+     */
+    public static final class Chunk {
+        private final ByteBuffer buffer;
+        private final long offset;
+
+        /**
+         * @param buffer
+         * The chunk's bytes, from position zero to the limit.
+         *
+         * @param offset
+         * Where the chunk starts in the file.
+         */
+        Chunk(ByteBuffer buffer, long offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        /**
+         * @return
+         * A view of the chunk's bytes, with its own position and limit.
+         */
+        public ByteBuffer getBuffer() {
+            return this.buffer.duplicate();
+        }
+
+        /**
+         * @return
+         * Where the chunk starts in the file.
+         */
+        public long getOffset() {
+            return this.offset;
+        }
+
+        /**
+         * @return
+         * The size of the chunk, in bytes.
+         */
+        public int getSize() {
+            return this.buffer.limit();
+        }
+    }
+
+    /**
+     * This is a static class, so there's no need to instantiate it.
+     */
+    private HandFileParser() {}
+
+    /**
+     * Maps a file into memory in chunks of whole lines.
+     *
+     * @param file
+     * The file to map.
+     *
+     * @param chunkCount
+     * How many chunks to aim for, such as one per thread. There can be fewer if the file
+     * has fewer lines, and more if the file is too big for that many mappings.
+     *
+     * @return
+     * The chunks, in order. An empty file has none.
+     *
+     * @throws IOException
+     * If the file can't be read, or a single line is too long to map.
+     *
+     * @throws IllegalArgumentException
+     * If the chunk count isn't positive.
+     */
+    public static List<Chunk> map(File file, int chunkCount) throws IOException, IllegalArgumentException {
+        checkChunkCount(chunkCount);
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+            // Aim for chunks of half the largest mapping at most, which leaves the other half
+            // for moving each end up to the end of a line.
+            long target = MAX_CHUNK_SIZE / 2;
+            long minimumCount = (size + target - 1) / target;
+            long count = Math.max(chunkCount, minimumCount);
+
+            List<Chunk> chunks = new ArrayList<Chunk>();
+            ByteBuffer block = ByteBuffer.allocate(SEARCH_BLOCK_SIZE);
+            long start = 0;
+            for (long k = 1; k <= count && start < size; ++k) {
+                long end = (k == count) ? size
+                        : findLineStart(channel, Math.max(start, size / count * k), size, block);
+                if (end - start > MAX_CHUNK_SIZE) {
+                    throw new IOException("The line at about " + start + " in " + file
+                            + " is too long to map.");
+                }
+                if (end > start) {
+                    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                    chunks.add(new Chunk(buffer, start));
+                    start = end;
+                }
+            }
+            return chunks;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Splits a buffer of text into chunks of whole lines. The chunks share the buffer's
+     * bytes, so nothing is copied.
+     *
+     * @param buffer
+     * The text, from its position to its limit. Neither is changed.
+     *
+     * @param offset
+     * Where the buffer's position is in the file, which is added to every line's offset.
+     *
+     * @param chunkCount
+     * How many chunks to aim for. There can be fewer if the buffer has fewer lines.
+     *
+     * @return
+     * The chunks, in order.
+     *
+     * @throws IllegalArgumentException
+     * If the chunk count isn't positive.
+     */
+    public static List<Chunk> split(ByteBuffer buffer, long offset, int chunkCount)
+            throws IllegalArgumentException {
+        checkChunkCount(chunkCount);
+        int first = buffer.position();
+        int size = buffer.limit() - first;
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        int start = first;
+        for (int k = 1; k <= chunkCount && start < buffer.limit(); ++k) {
+            int end = buffer.limit();
+            if (k < chunkCount) {
+                end = Math.max(start, first + (int) ((long) size * k / chunkCount));
+                while (end < buffer.limit() && end > first && buffer.get(end - 1) != NEW_LINE) {
+                    ++end;
+                }
+            }
+            if (end > start) {
+                ByteBuffer slice = buffer.duplicate();
+                slice.limit(end);
+                slice.position(start);
+                chunks.add(new Chunk(slice.slice(), offset + start - first));
+                start = end;
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Parses every line of a chunk, in order.
+     *
+     * @param chunk
+     * The chunk to parse. Chunks can be parsed on separate threads at the same time.
+     *
+     * @param handler
+     * Gets each line's cards, or its bad tokens.
+     */
+    public static void parse(Chunk chunk, LineHandler handler) {
+        ByteBuffer buffer = chunk.buffer;
+        ByteSequence line = new ByteSequence(buffer);
+        CardScanner scanner = new CardScanner();
+        int end = buffer.limit();
+        int start = 0;
+        while (start < end) {
+            int stop = start;
+            while (stop < end && buffer.get(stop) != NEW_LINE) {
+                ++stop;
+            }
+            line.set(start, stop);
+            long offset = chunk.offset + start;
+            if (scanner.scan(line)) {
+                handler.hand(offset, scanner.getCardSet(), scanner.getCardCount());
+            } else {
+                handler.badLine(offset, scanner);
+            }
+            start = stop + 1;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     * If the chunk count isn't positive.
+     */
+    private static void checkChunkCount(int chunkCount) throws IllegalArgumentException {
+        if (chunkCount <= 0) {
+            throw new IllegalArgumentException("Can't split a file into " + chunkCount + " chunks.");
+        }
+    }
+
+    /**
+     * Finds where the line holding a byte of a file ends.
+     *
+     * @param channel
+     * The file.
+     *
+     * @param from
+     * Where to start looking. If the byte before it ends a line, this is where the next
+     * line starts already.
+     *
+     * @param size
+     * The size of the file.
+     *
+     * @param block
+     * A buffer to read into.
+     *
+     * @return
+     * The offset of the start of the next line, or the size of the file if there isn't one.
+     *
+     * @throws IOException
+     * If the file can't be read.
+     */
+    private static long findLineStart(FileChannel channel, long from, long size, ByteBuffer block)
+            throws IOException {
+        if (from == 0) {
+            return 0;
+        }
+        long at = from - 1;
+        while (at < size) {
+            block.clear();
+            int read = channel.read(block, at);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; ++i) {
+                if (block.get(i) == NEW_LINE) {
+                    return at + i + 1;
+                }
+            }
+            at += read;
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,582 @@
+package com.mishmash.rally;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Does what CardMinnowShell's batch mode does, with the same output, but with the work split
+ * into stages that run at the same time. One thread reads lines, a pool of threads parses
+ * them, another pool evaluates and describes the hands, and one thread writes the results.
+ * The stages pass batches of lines to each other through bounded queues, so a slow stage
+ * holds up the ones before it instead of letting the batches pile up in memory. Batches are
+ * numbered as they're read, and the writer puts them back in that order, so the output lines
+ * match the input lines one for one. The batches the writer holds while it waits for an
+ * earlier one count too: the reader can only start a batch once there's room for it
+ * somewhere between reading and writing, so one stalled batch stops the whole pipeline
+ * rather than letting everything after it pile up at the writer.
+ *
+ * Every run comes with a Report of how busy each stage was and how full its queue got. The
+ * stage with the full queue in front of it is the one holding everything up, and is the one
+ * to give more threads (or a faster disk).
+ *
+ * @author mrmcduff
+ *
+ */
+public class HandPipeline {
+
+    // Lines read into each batch.
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    // Batches that can wait in front of each stage.
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    // The reader and writer each buffer this many characters.
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    // What the shell writes for blank lines and duplicates, without their line ends.
+    private static final String BLANK_RESULT = CardMinnowShell.WRITE_SOMETHING.trim();
+    private static final String INVALID_RESULT = CardMinnowShell.INVALID_HAND.trim();
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * The stages, in the order every batch goes through them.
+     *
+     * @author mrmcduff
+     *
+     */
+    public enum Stage {
+        READ, PARSE, EVALUATE, WRITE
+    }
+
+    /**
+     * Some lines of input, and what comes of them as they go through the stages.
+     *
+     * @author mrmcduff
+     *
+     */
+    private static class Batch {
+        final long sequence;
+        final String[] lines;
+        int count = 0;
+
+        // The CardSet of each valid hand, filled in by the parse stage.
+        final long[] cards;
+
+        // The line to write for each input line. The parse stage fills in the ones that
+        // aren't hands, and the evaluate stage does the rest.
+        final String[] results;
+
+        Batch(long sequence, int size) {
+            this.sequence = sequence;
+            this.lines = new String[size];
+            this.cards = new long[size];
+            this.results = new String[size];
+        }
+    }
+
+    // Passed along after the last batch, to shut each stage down in turn.
+    private static final Batch END = new Batch(-1, 0);
+
+    /**
+     * How a run went: the number of hands, and for every stage how long its threads spent
+     * working and how deep its queue got.
+     *
+     * @author mrmcduff
+     *
+     */
+    public static class Report {
+        private final int[] threads = new int[Stage.values().length];
+        private final long[] busyNanos = new long[Stage.values().length];
+        private final int[] queueCapacities = new int[Stage.values().length];
+        private final long[] queueSamples = new long[Stage.values().length];
+        private final long[] queueDepthTotals = new long[Stage.values().length];
+        private final int[] maxQueueDepths = new int[Stage.values().length];
+        private long handCount = 0;
+        private long wallNanos = 0;
+
+        Report(int parseThreads, int evaluateThreads, int queueCapacity) {
+            for (Stage stage : Stage.values()) {
+                this.threads[stage.ordinal()] = 1;
+                this.queueCapacities[stage.ordinal()] = queueCapacity;
+            }
+            this.threads[Stage.PARSE.ordinal()] = parseThreads;
+            this.threads[Stage.EVALUATE.ordinal()] = evaluateThreads;
+            // Nothing feeds the reader.
+            this.queueCapacities[Stage.READ.ordinal()] = 0;
+        }
+
+        /**
+         * Adds in the time a thread of a stage spent working.
+         */
+        synchronized void addBusyNanos(Stage stage, long nanos) {
+            this.busyNanos[stage.ordinal()] += nanos;
+        }
+
+        /**
+         * Records how deep a stage's queue was just after a batch went into it.
+         */
+        synchronized void sampleQueue(Stage stage, int depth) {
+            ++this.queueSamples[stage.ordinal()];
+            this.queueDepthTotals[stage.ordinal()] += depth;
+            this.maxQueueDepths[stage.ordinal()] = Math.max(this.maxQueueDepths[stage.ordinal()], depth);
+        }
+
+        synchronized void finish(long hands, long nanos) {
+            this.handCount = hands;
+            this.wallNanos = nanos;
+        }
+
+        /**
+         * @return
+         * How many lines went through the pipeline.
+         */
+        public synchronized long getHandCount() {
+            return this.handCount;
+        }
+
+        /**
+         * @return
+         * How long the whole run took, in nanoseconds.
+         */
+        public synchronized long getWallNanos() {
+            return this.wallNanos;
+        }
+
+        /**
+         * @return
+         * How many lines went through the pipeline per second.
+         */
+        public synchronized double getHandsPerSecond() {
+            return getRate(this.handCount, this.wallNanos);
+        }
+
+        /**
+         * @param stage
+         * A stage.
+         *
+         * @return
+         * How many threads ran it.
+         */
+        public int getThreadCount(Stage stage) {
+            return this.threads[stage.ordinal()];
+        }
+
+        /**
+         * @param stage
+         * A stage.
+         *
+         * @return
+         * How long its threads spent working in all, not counting time spent waiting on
+         * the queues, in nanoseconds.
+         */
+        public synchronized long getBusyNanos(Stage stage) {
+            return this.busyNanos[stage.ordinal()];
+        }
+
+        /**
+         * @param stage
+         * A stage.
+         *
+         * @return
+         * How many lines the stage could get through per second with all its threads busy.
+         * The stage with the lowest rate is the one that sets the pace.
+         */
+        public synchronized double getStageHandsPerSecond(Stage stage) {
+            return getRate(this.handCount * getThreadCount(stage), this.busyNanos[stage.ordinal()]);
+        }
+
+        /**
+         * @param stage
+         * A stage.
+         *
+         * @return
+         * The fraction of the run its threads spent working, from 0 to 1.
+         */
+        public synchronized double getUtilization(Stage stage) {
+            if (this.wallNanos == 0) {
+                return 0;
+            }
+            return (double) this.busyNanos[stage.ordinal()] / getThreadCount(stage) / this.wallNanos;
+        }
+
+        /**
+         * @param stage
+         * A stage.
+         *
+         * @return
+         * How many batches can wait in the queue in front of it. The reader has no queue.
+         */
+        public int getQueueCapacity(Stage stage) {
+            return this.queueCapacities[stage.ordinal()];
+        }
+
+        /**
+         * @param stage
+         * A stage.
+         *
+         * @return
+         * The most batches that were ever waiting in the queue in front of it.
+         */
+        public synchronized int getMaxQueueDepth(Stage stage) {
+            return this.maxQueueDepths[stage.ordinal()];
+        }
+
+        /**
+         * @param stage
+         * A stage.
+         *
+         * @return
+         * How many batches were waiting in the queue in front of it on average, counted
+         * each time a batch went in.
+         */
+        public synchronized double getMeanQueueDepth(Stage stage) {
+            long samples = this.queueSamples[stage.ordinal()];
+            return samples == 0 ? 0 : (double) this.queueDepthTotals[stage.ordinal()] / samples;
+        }
+
+        private static double getRate(long count, long nanos) {
+            return nanos == 0 ? 0 : count * NANOS_PER_SECOND / nanos;
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%d hands in %.3f s, %.0f hands/s%n", this.handCount,
+                    this.wallNanos / NANOS_PER_SECOND, getHandsPerSecond()));
+            for (Stage stage : Stage.values()) {
+                sb.append(String.format("%-8s %2d thread(s), %5.1f%% busy, %12.0f hands/s,"
+                        + " queue mean %5.2f max %3d of %3d%n", stage, getThreadCount(stage),
+                        100 * getUtilization(stage), getStageHandsPerSecond(stage),
+                        getMeanQueueDepth(stage), getMaxQueueDepth(stage), getQueueCapacity(stage)));
+            }
+            return sb.toString();
+        }
+    }
+
+    private final int parseThreads;
+    private final int evaluateThreads;
+    private final int batchSize;
+    private final int queueCapacity;
+
+    /**
+     * Constructor for a pipeline that shares the processors out between the parse and
+     * evaluate stages, with the default batch size and queue capacity. Evaluating is the
+     * slower of the two, so it gets the larger share.
+     */
+    public HandPipeline() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() / 4),
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 2
+                        - Runtime.getRuntime().availableProcessors() / 4),
+                DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructor for a pipeline with its own thread counts and batch sizes.
+     *
+     * @param parseThreads
+     * How many threads parse lines.
+     *
+     * @param evaluateThreads
+     * How many threads evaluate hands.
+     *
+     * @param batchSize
+     * How many lines go into each batch.
+     *
+     * @param queueCapacity
+     * How many batches can wait in front of each stage.
+     *
+     * @throws IllegalArgumentException
+     * If any of them isn't positive.
+     */
+    public HandPipeline(int parseThreads, int evaluateThreads, int batchSize, int queueCapacity)
+            throws IllegalArgumentException {
+        if (parseThreads <= 0 || evaluateThreads <= 0 || batchSize <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Can't run a pipeline with " + parseThreads
+                    + " parse threads, " + evaluateThreads + " evaluate threads, batches of "
+                    + batchSize + " and queues of " + queueCapacity + ".");
+        }
+        this.parseThreads = parseThreads;
+        this.evaluateThreads = evaluateThreads;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Evaluates one hand per line of input, writing one line of output for each, exactly as
+     * CardMinnowShell.runBatch does.
+     *
+     * @param input
+     * Where to read the hands. It's read to the end, but not closed.
+     *
+     * @param output
+     * Where to write the results. It's flushed, but not closed.
+     *
+     * @return
+     * How the run went.
+     *
+     * @throws IOException
+     * If the input can't be read or the output can't be written.
+     */
+    public Report run(Reader input, Writer output) throws IOException {
+        long started = System.nanoTime();
+        final Report report = new Report(this.parseThreads, this.evaluateThreads, this.queueCapacity);
+        final BlockingQueue<Batch> toParse = new ArrayBlockingQueue<Batch>(this.queueCapacity);
+        final BlockingQueue<Batch> toEvaluate = new ArrayBlockingQueue<Batch>(this.queueCapacity);
+        final BlockingQueue<Batch> toWrite = new ArrayBlockingQueue<Batch>(this.queueCapacity);
+        // Room for every queue to be full and every worker busy, and no more.
+        final Semaphore inFlight = new Semaphore(this.queueCapacity * (Stage.values().length - 1)
+                + this.parseThreads + this.evaluateThreads);
+        final long[] handCount = new long[1];
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        final BufferedReader reader = new BufferedReader(input, IO_BUFFER_SIZE);
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException, InterruptedException {
+                handCount[0] = read(reader, toParse, inFlight, report);
+                return null;
+            }
+        });
+        AtomicInteger parsing = new AtomicInteger(this.parseThreads);
+        for (int i = 0; i < this.parseThreads; ++i) {
+            tasks.add(new Worker(Stage.PARSE, toParse, toEvaluate, parsing, report) {
+                private final CardScanner scanner = new CardScanner();
+
+                @Override
+                void process(Batch batch) {
+                    parse(batch, this.scanner);
+                }
+            });
+        }
+        AtomicInteger evaluating = new AtomicInteger(this.evaluateThreads);
+        for (int i = 0; i < this.evaluateThreads; ++i) {
+            tasks.add(new Worker(Stage.EVALUATE, toEvaluate, toWrite, evaluating, report) {
+                @Override
+                void process(Batch batch) {
+                    evaluate(batch);
+                }
+            });
+        }
+        final BufferedWriter writer = new BufferedWriter(output, IO_BUFFER_SIZE);
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException, InterruptedException {
+                write(toWrite, writer, inFlight, report);
+                return null;
+            }
+        });
+
+        runAll(tasks);
+        report.finish(handCount[0], System.nanoTime() - started);
+        return report;
+    }
+
+    /**
+     * Runs every stage to the end. If any of them fails, the rest are stopped, so that
+     * nobody is left waiting on a queue that will never move.
+     *
+     * @throws IOException
+     * If a stage couldn't read or write.
+     */
+    private static void runAll(List<Callable<Void>> tasks) throws IOException {
+        ExecutorService threads = Executors.newFixedThreadPool(tasks.size());
+        CompletionService<Void> stages = new ExecutorCompletionService<Void>(threads);
+        try {
+            for (Callable<Void> task : tasks) {
+                stages.submit(task);
+            }
+            for (int i = 0; i < tasks.size(); ++i) {
+                stages.take().get();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while evaluating hands.", ie);
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof IOException) {
+                throw (IOException) ee.getCause();
+            } else if (ee.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ee.getCause();
+            } else if (ee.getCause() instanceof Error) {
+                throw (Error) ee.getCause();
+            }
+            throw new IllegalStateException("A stage of the pipeline failed.", ee.getCause());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    /**
+     * Puts a batch in a queue, and records how deep the queue is afterwards.
+     */
+    private static void put(BlockingQueue<Batch> queue, Batch batch, Stage next, Report report)
+            throws InterruptedException {
+        queue.put(batch);
+        if (batch != END) {
+            report.sampleQueue(next, queue.size());
+        }
+    }
+
+    /**
+     * The reading stage: reads the input into batches, numbered in order. Each batch takes a
+     * permit, which the writer gives back once it's written.
+     *
+     * @return
+     * The number of lines read.
+     */
+    private long read(BufferedReader reader, BlockingQueue<Batch> toParse, Semaphore inFlight,
+            Report report) throws IOException, InterruptedException {
+        long lines = 0;
+        long sequence = 0;
+        boolean done = false;
+        while (!done) {
+            inFlight.acquire();
+            long started = System.nanoTime();
+            Batch batch = new Batch(sequence++, this.batchSize);
+            while (batch.count < this.batchSize) {
+                String line = reader.readLine();
+                if (line == null) {
+                    done = true;
+                    break;
+                }
+                batch.lines[batch.count++] = line;
+            }
+            report.addBusyNanos(Stage.READ, System.nanoTime() - started);
+            lines += batch.count;
+            if (batch.count > 0) {
+                put(toParse, batch, Stage.PARSE, report);
+            } else {
+                inFlight.release();
+            }
+        }
+        put(toParse, END, Stage.PARSE, report);
+        return lines;
+    }
+
+    /**
+     * The parsing stage: finds the cards in each line of a batch, or the reason it isn't a
+     * hand.
+     */
+    private static void parse(Batch batch, CardScanner scanner) {
+        for (int i = 0; i < batch.count; ++i) {
+            String line = batch.lines[i];
+            if (line.trim().isEmpty()) {
+                batch.results[i] = BLANK_RESULT;
+            } else if (!scanner.scan(line)) {
+                batch.results[i] = scanner.getErrorMessage();
+            } else if (scanner.getCardCount() == 0 || scanner.hasDuplicates()) {
+                batch.results[i] = INVALID_RESULT;
+            } else {
+                batch.cards[i] = scanner.getCardSet();
+            }
+            // The line itself isn't needed any more.
+            batch.lines[i] = null;
+        }
+    }
+
+    /**
+     * The evaluating stage: describes every hand in a batch that the parse stage found.
+     */
+    private static void evaluate(Batch batch) {
+        for (int i = 0; i < batch.count; ++i) {
+            if (batch.results[i] == null) {
+                batch.results[i] = new CompactHand(batch.cards[i]).getDescription();
+            }
+        }
+    }
+
+    /**
+     * The writing stage: writes out the batches in the order they were read, holding on to
+     * any that arrive early. Each batch's permit is given back once it's written.
+     */
+    private static void write(BlockingQueue<Batch> toWrite, BufferedWriter writer,
+            Semaphore inFlight, Report report) throws IOException, InterruptedException {
+        Map<Long, Batch> early = new HashMap<Long, Batch>();
+        long next = 0;
+        Batch batch = toWrite.take();
+        while (batch != END) {
+            long started = System.nanoTime();
+            early.put(batch.sequence, batch);
+            Batch ready = early.remove(next);
+            while (ready != null) {
+                for (int i = 0; i < ready.count; ++i) {
+                    writer.write(ready.results[i]);
+                    writer.write('\n');
+                }
+                inFlight.release();
+                ready = early.remove(++next);
+            }
+            report.addBusyNanos(Stage.WRITE, System.nanoTime() - started);
+            batch = toWrite.take();
+        }
+        long started = System.nanoTime();
+        writer.flush();
+        report.addBusyNanos(Stage.WRITE, System.nanoTime() - started);
+        if (!early.isEmpty()) {
+            throw new IllegalStateException("Batch " + next + " never came.");
+        }
+    }
+
+    /**
+     * One thread of a stage that runs on several: takes batches from one queue, works on
+     * them, and passes them to the next. The last thread of the stage to see the end passes
+     * it along.
+     *
+     * @author mrmcduff
+     *
+     */
+    private abstract static class Worker implements Callable<Void> {
+        private final Stage stage;
+        private final BlockingQueue<Batch> input;
+        private final BlockingQueue<Batch> output;
+        private final AtomicInteger running;
+        private final Report report;
+
+        Worker(Stage stage, BlockingQueue<Batch> input, BlockingQueue<Batch> output,
+                AtomicInteger running, Report report) {
+            this.stage = stage;
+            this.input = input;
+            this.output = output;
+            this.running = running;
+            this.report = report;
+        }
+
+        abstract void process(Batch batch);
+
+        @Override
+        public Void call() throws InterruptedException {
+            Batch batch = this.input.take();
+            while (batch != END) {
+                long started = System.nanoTime();
+                process(batch);
+                this.report.addBusyNanos(this.stage, System.nanoTime() - started);
+                put(this.output, batch, Stage.values()[this.stage.ordinal() + 1], this.report);
+                batch = this.input.take();
+            }
+            // Leave the end for this stage's other threads, and pass it on after the last one.
+            this.input.put(END);
+            if (this.running.decrementAndGet() == 0) {
+                this.output.put(END);
+            }
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,442 @@
+package com.mishmash.rally;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Static helpers for the packed integer form of an evaluated hand. A hand value holds the
+ * hand type in its top bits and up to five card values (four bits each) below it, most
+ * significant first. The leading values are the ranks of the important cards, then the
+ * ranks of the second important cards, then kickers. Straights and straight flushes are
+ * the exception: they store only the rank of their top card, since every straight with the
+ * same top card ties, wherever the joker fills it in. Two hand values compare exactly the
+ * way the hands they describe do, so table-driven evaluators can store them directly.
+ *
+ * The wild card never contributes a rank. A hand made up of only a joker is a high card
+ * hand with no ranks at all, which puts it below every other hand.
+ *
+ * Every evaluator stores the value in the hand as its strength (see Hand.getStrength), so
+ * ranking hands, kickers and all, is a plain integer comparison.
+ *
+ * @author mrmcduff
+ *
+ */
+public final class HandValue {
+
+    // The number of ranks stored in a value. This is always the scoring hand size.
+    public static final int RANK_SLOTS = 5;
+
+    // Every card value from 2 through 14 fits in four bits.
+    public static final int RANK_BITS = 4;
+
+    // The hand type lives above the five rank slots.
+    public static final int TYPE_SHIFT = RANK_SLOTS * RANK_BITS;
+
+    // Never the value of a real hand. This is what an invalid hand's strength stays at.
+    public static final int INVALID_VALUE = -1;
+
+    private static final int RANK_MASK = (1 << RANK_BITS) - 1;
+
+    // Suits in the order the reference evaluator prefers them when breaking ties.
+    private static final Card.Suit[] SUIT_PREFERENCE = { Card.Suit.SPADES, Card.Suit.HEARTS,
+            Card.Suit.DIAMONDS, Card.Suit.CLUBS };
+
+    private static final Hand.HandType[] HAND_TYPES = Hand.HandType.values();
+
+    /**
+     * This is a static class, so there's no need to instantiate it.
+     */
+    private HandValue() {}
+
+    /**
+     * Gets the hand type stored in a value.
+     *
+     * @param value
+     * A packed hand value.
+     *
+     * @return
+     * The hand type of the value.
+     */
+    public static Hand.HandType getHandType(int value) {
+        return HAND_TYPES[value >>> TYPE_SHIFT];
+    }
+
+    /**
+     * Gets one of the ranks stored in a value.
+     *
+     * @param value
+     * A packed hand value.
+     *
+     * @param position
+     * Zero for the most significant rank, up to four for the least significant.
+     *
+     * @return
+     * The card value at that position, or zero if the slot is unused.
+     */
+    public static int getRank(int value, int position) {
+        return (value >>> ((RANK_SLOTS - 1 - position) * RANK_BITS)) & RANK_MASK;
+    }
+
+    /**
+     * Builds a value out of a hand type and its ranks.
+     *
+     * @param type
+     * The hand type.
+     *
+     * @param ranks
+     * Card values in order of significance. Unused trailing slots should be zero.
+     *
+     * @param count
+     * How many entries of ranks to use. At most five.
+     *
+     * @return
+     * The packed value.
+     */
+    public static int valueOf(Hand.HandType type, int[] ranks, int count) {
+        int value = type.getValue() << TYPE_SHIFT;
+        for (int i = 0; i < count; ++i) {
+            value |= ranks[i] << ((RANK_SLOTS - 1 - i) * RANK_BITS);
+        }
+        return value;
+    }
+
+    /**
+     * Computes the value of a hand from the result of its own evaluation. The important
+     * and second important cards give the leading ranks, and the highest remaining natural
+     * cards fill in as kickers until five cards (counting the joker) are accounted for.
+     *
+     * @param hand
+     * The hand to score. It is evaluated first if it hasn't been already.
+     *
+     * @return
+     * The packed value of the hand.
+     */
+    public static int valueOf(Hand hand) {
+        Hand.HandType type = hand.getHandType();
+        return valueOf(type, hand.getCards(), hand.getImportantCards(),
+                hand.getSecondImportantCards());
+    }
+
+    /**
+     * Computes the value of an evaluated hand from its parts, as valueOf(Hand) does.
+     * 
+     * @param type
+     * The hand type.
+     * 
+     * @param cards
+     * All of the hand's cards. This list is sorted in place, so pass a copy.
+     * 
+     * @param important
+     * The important cards.
+     * 
+     * @param other
+     * The second important cards.
+     * 
+     * @return
+     * The packed value of the hand.
+     */
+    public static int valueOf(Hand.HandType type, List<Card> cards, List<Card> important,
+            List<Card> other) {
+        Collections.sort(cards, Collections.reverseOrder());
+
+        int[] ranks = new int[RANK_SLOTS];
+        if (type == Hand.HandType.STRAIGHT || type == Hand.HandType.STRAIGHT_FLUSH) {
+            // The highest natural card names the straight, and nothing else counts.
+            for (Card card : important) {
+                if (card.getSuit() != Card.Suit.JOKER) {
+                    ranks[0] = Math.max(ranks[0], card.getValue());
+                }
+            }
+            return valueOf(type, ranks, 1);
+        }
+
+        int count = 0;
+        int used = 0;
+        boolean hasJoker = false;
+        for (Card card : cards) {
+            if (card.getSuit() == Card.Suit.JOKER) {
+                hasJoker = true;
+            }
+        }
+
+        int lastRank = 0;
+        for (Card card : important) {
+            if (card.getSuit() != Card.Suit.JOKER) {
+                ++used;
+                if (card.getValue() != lastRank) {
+                    lastRank = card.getValue();
+                    ranks[count++] = lastRank;
+                }
+            }
+        }
+        for (Card card : other) {
+            ++used;
+            if (card.getValue() != lastRank) {
+                lastRank = card.getValue();
+                ranks[count++] = lastRank;
+            }
+        }
+        if (hasJoker && used > 0) {
+            // The joker is part of every made hand except the lone joker.
+            ++used;
+        }
+
+        // Kickers are the best natural cards that aren't already part of the hand.
+        for (Card card : cards) {
+            if (used >= RANK_SLOTS || count >= RANK_SLOTS) {
+                break;
+            }
+            if (card.getSuit() != Card.Suit.JOKER && !important.contains(card)
+                    && !other.contains(card)) {
+                ranks[count++] = card.getValue();
+                ++used;
+            }
+        }
+        return valueOf(type, ranks, count);
+    }
+
+    /**
+     * Sets the type and important cards of a hand to match the given value. The cards are
+     * picked out of the hand exactly the way HandEvaluator would pick them: the highest
+     * suits first, and the first suit in spades, hearts, diamonds, clubs order when two
+     * flushes tie.
+     *
+     * @param hand
+     * The (valid) hand whose value has been computed.
+     *
+     * @param value
+     * The value of that hand.
+     */
+    public static void applyTo(Hand hand, int value) {
+        applyTo(hand, value, findFlushSuit(hand.getCardSet(), value));
+    }
+
+    /**
+     * Sets the type and important cards of a hand to match the given value, with the suit
+     * of a flush already known. This is for callers that know which suit the evaluator
+     * picked, for hands big enough that two suits could both hold the flush.
+     *
+     * @param hand
+     * The (valid) hand whose value has been computed.
+     *
+     * @param value
+     * The value of that hand.
+     *
+     * @param flushSuit
+     * For a flush or straight flush, the CardSet suit index (clubs zero, spades three) of
+     * the flush. Ignored for other types.
+     */
+    public static void applyTo(Hand hand, int value, int flushSuit) {
+        long cards = hand.getCardSet();
+        long important = getImportantCards(cards, value, flushSuit);
+        long other = getSecondImportantCards(cards, value);
+
+        hand.setHandType(getHandType(value));
+        hand.setEvaluated(true);
+        hand.setImportantCards(CardSet.toCards(important));
+        hand.setSecondImportantCards(CardSet.toCards(other));
+        hand.setStrength(value);
+    }
+
+    /**
+     * Picks the important cards for a value out of a hand's cards.
+     *
+     * @param cards
+     * The CardSet of the hand.
+     *
+     * @param value
+     * The value of that hand.
+     *
+     * @param flushSuit
+     * For a flush or straight flush, the CardSet suit index (clubs zero, spades three) of
+     * the flush. Ignored for other hand types.
+     *
+     * @return
+     * The CardSet of important cards.
+     */
+    public static long getImportantCards(long cards, int value, int flushSuit) {
+        int topRank = getRank(value, 0);
+        long important = CardSet.EMPTY;
+        switch(getHandType(value)) {
+        case HIGH_CARD:
+            if (topRank == 0) {
+                // Only a joker.
+                important = cards & CardSet.JOKER;
+            } else {
+                important = Long.highestOneBit(CardSet.getCardsOfValue(cards, topRank));
+            }
+            break;
+        case PAIR:
+        case TWO_PAIR:
+        case THREE_OF_A_KIND:
+        case FULL_HOUSE:
+        case FOUR_OF_A_KIND:
+        case FIVE_OF_A_KIND:
+            important = CardSet.getCardsOfValue(cards, topRank);
+            break;
+        case STRAIGHT:
+            // One card per rank of the straight, from the highest suit.
+            int rankMask = 0;
+            for (Card.Suit suit : SUIT_PREFERENCE) {
+                rankMask |= CardSet.getSuitMask(cards, suit);
+            }
+            int straight = getStraightRanks(rankMask, topRank, CardSet.containsJoker(cards));
+            for (int rank = Card.MIN_CARD_VALUE; rank <= Card.MAX_CARD_VALUE; ++rank) {
+                if ((straight & (1 << (rank - Card.MIN_CARD_VALUE))) != 0) {
+                    important |= Long.highestOneBit(CardSet.getCardsOfValue(cards, rank));
+                }
+            }
+            break;
+        case STRAIGHT_FLUSH:
+            int suitMask = (int) (cards >>> (flushSuit * CardSet.RANK_COUNT)) & CardSet.SUIT_MASK;
+            important = (long) getStraightRanks(suitMask, topRank, CardSet.containsJoker(cards))
+                    << (flushSuit * CardSet.RANK_COUNT);
+            break;
+        case FLUSH:
+            for (int i = 0; i < RANK_SLOTS; ++i) {
+                int rank = getRank(value, i);
+                if (rank != 0) {
+                    important |= 1L << (flushSuit * CardSet.RANK_COUNT + rank - Card.MIN_CARD_VALUE);
+                }
+            }
+            break;
+        default:
+            throw new IllegalStateException("Switched to an invalid handtype enum value.");
+        }
+        return important;
+    }
+
+    /**
+     * Picks the second important cards for a value out of a hand's cards.
+     *
+     * @param cards
+     * The CardSet of the hand.
+     *
+     * @param value
+     * The value of that hand.
+     *
+     * @return
+     * The CardSet of second important cards, which is empty for most hand types.
+     */
+    public static long getSecondImportantCards(long cards, int value) {
+        int secondRank = getRank(value, 1);
+        long cardsOfRank = (secondRank == 0) ? CardSet.EMPTY : CardSet.getCardsOfValue(cards, secondRank);
+        switch(getHandType(value)) {
+        case PAIR:
+            // The kicker HandEvaluator keeps, if there is one.
+            return Long.highestOneBit(cardsOfRank);
+        case TWO_PAIR:
+            return cardsOfRank;
+        case FULL_HOUSE:
+            // The top two cards of the pair.
+            long top = Long.highestOneBit(cardsOfRank);
+            return top | Long.highestOneBit(cardsOfRank & ~top);
+        default:
+            return CardSet.EMPTY;
+        }
+    }
+
+    /**
+     * Works out which of a hand's card values make up its straight, the way HandEvaluator
+     * picks them. Without the joker, that's all five. With it, four values in a row from the
+     * top are a straight already, and the joker takes the bottom slot even if the hand has a
+     * natural card there. Otherwise the joker fills the gap, and the rest of the five are
+     * natural.
+     *
+     * @param rankMask
+     * The hand's card values (of the flush suit, for a straight flush), as a 13-bit mask
+     * with the deuce in the lowest bit.
+     *
+     * @param topRank
+     * The card value of the straight's top card.
+     *
+     * @param withJoker
+     * Whether the hand has the joker.
+     *
+     * @return
+     * The natural values of the straight, as a mask.
+     */
+    private static int getStraightRanks(int rankMask, int topRank, boolean withJoker) {
+        int topFour = getStraightMask(topRank, RANK_SLOTS - 1);
+        if (withJoker && (rankMask & topFour) == topFour) {
+            return topFour;
+        }
+        return rankMask & getStraightMask(topRank, RANK_SLOTS);
+    }
+
+    /**
+     * Gets a run of card values.
+     *
+     * @param topRank
+     * The highest card value of the run.
+     *
+     * @param length
+     * How many values the run covers, stopping early at the deuce.
+     *
+     * @return
+     * The values as a 13-bit mask with the deuce in the lowest bit.
+     */
+    private static int getStraightMask(int topRank, int length) {
+        int window = (1 << length) - 1;
+        int shift = topRank - Card.MIN_CARD_VALUE - (length - 1);
+        return (shift >= 0) ? window << shift : window >>> -shift;
+    }
+
+    /**
+     * Finds the first suit, in order of preference, that holds every rank of a flush value.
+     * For a straight flush, it's the suit holding the most of the straight, which is every
+     * card of it or all but the joker's.
+     *
+     * @param cards
+     * The CardSet of the hand.
+     *
+     * @param value
+     * A packed hand value.
+     *
+     * @return
+     * The CardSet suit index (clubs zero, spades three) of the flush, or -1 if the value
+     * isn't a flush or straight flush.
+     *
+     * @throws IllegalStateException
+     * If no suit holds the value's cards, meaning the value doesn't belong to these cards.
+     */
+    public static int findFlushSuit(long cards, int value) throws IllegalStateException {
+        Hand.HandType type = getHandType(value);
+        if (type == Hand.HandType.STRAIGHT_FLUSH) {
+            // The suit holding the most of the straight. Only one can hold the four it takes,
+            // unless the hand is big enough for two straight flushes.
+            int straight = getStraightMask(getRank(value, 0), RANK_SLOTS);
+            int minimum = RANK_SLOTS - (CardSet.containsJoker(cards) ? 1 : 0);
+            int bestSuit = -1;
+            int bestCount = 0;
+            for (Card.Suit suit : SUIT_PREFERENCE) {
+                int count = Integer.bitCount(CardSet.getSuitMask(cards, suit) & straight);
+                if (count >= minimum && count > bestCount) {
+                    bestCount = count;
+                    bestSuit = suit.getSuitValue() - 1;
+                }
+            }
+            if (bestSuit < 0) {
+                throw new IllegalStateException("No suit in the hand matches the straight flush value.");
+            }
+            return bestSuit;
+        } else if (type != Hand.HandType.FLUSH) {
+            return -1;
+        }
+        for (Card.Suit suit : SUIT_PREFERENCE) {
+            int suitMask = CardSet.getSuitMask(cards, suit);
+            boolean holdsAll = true;
+            for (int i = 0; i < RANK_SLOTS && holdsAll; ++i) {
+                int rank = getRank(value, i);
+                if (rank != 0 && (suitMask & (1 << (rank - Card.MIN_CARD_VALUE))) == 0) {
+                    holdsAll = false;
+                }
+            }
+            if (holdsAll) {
+                return suit.getSuitValue() - 1;
+            }
+        }
+        throw new IllegalStateException("No suit in the hand matches the flush value.");
+    }
+
+}
@@ -0,0 +1,300 @@
+package com.mishmash.rally;
+
+/**
+ * A hand that's built up and taken apart a card at a time, for enumerating run-outs: put
+ * the shared cards in once, then add and remove each turn and river card around them.
+ * Adding or removing a card only updates the card mask, the count for its value and the
+ * mask for its suit, so it takes constant time, and the best hand can be asked for at any
+ * point. The evaluation starts from those counts and suit masks (see
+ * BitmaskEvaluator.evaluateCounted) rather than working them out from the cards again, so
+ * the shared cards aren't recounted for every run-out. There is no Hand to rebuild and
+ * nothing to sort, and the evaluation is only redone after the cards have changed.
+ *
+ * The joker can be added like any other card. An IncrementalEvaluator is meant to be used
+ * by one thread at a time. Give each thread its own.
+ *
+ * @author mrmcduff
+ *
+ */
+public class IncrementalEvaluator {
+
+    private long cards = CardSet.EMPTY;
+    private final int[] rankCounts = new int[CardSet.RANK_COUNT];
+    private final int[] suitMasks = new int[CardSet.SUIT_COUNT];
+    private final EvaluationResult result = new EvaluationResult();
+
+    /**
+     * Set when <b>result</b> belongs to the current cards.
+     */
+    private boolean isCurrent = false;
+
+    /**
+     * Constructor for an empty hand.
+     */
+    public IncrementalEvaluator() {}
+
+    /**
+     * Constructor for a hand that starts with some cards.
+     *
+     * @param cards
+     * The CardSet of the starting cards.
+     *
+     * @throws IllegalArgumentException
+     * If the set has stray bits set.
+     */
+    public IncrementalEvaluator(long cards) throws IllegalArgumentException {
+        if ((cards & ~CardSet.FULL_DECK) != 0) {
+            throw new IllegalArgumentException("The set holds cards that don't exist.");
+        }
+        for (long remaining = cards; remaining != CardSet.EMPTY;
+                remaining = CardSet.withoutFirst(remaining)) {
+            addCard(CardSet.firstOrdinal(remaining));
+        }
+    }
+
+    /**
+     * Adds a card to the hand.
+     *
+     * @param card
+     * The card to add.
+     *
+     * @throws IllegalArgumentException
+     * If the card isn't valid or is already in the hand.
+     */
+    public void addCard(Card card) throws IllegalArgumentException {
+        if (!card.isValid()) {
+            throw new IllegalArgumentException("Can't add the invalid card " + card + ".");
+        }
+        addCard(card.getOrdinal());
+    }
+
+    /**
+     * Adds a card to the hand by its ordinal (see Card.getOrdinal).
+     *
+     * @param ordinal
+     * The ordinal of the card to add.
+     *
+     * @throws IllegalArgumentException
+     * If there's no such card, or it's already in the hand.
+     */
+    public void addCard(int ordinal) throws IllegalArgumentException {
+        long card = getCard(ordinal);
+        if ((this.cards & card) != 0) {
+            throw new IllegalArgumentException("The hand already holds " + Card.fromOrdinal(ordinal) + ".");
+        }
+        this.cards |= card;
+        count(ordinal, 1);
+    }
+
+    /**
+     * Removes a card from the hand.
+     *
+     * @param card
+     * The card to remove.
+     *
+     * @throws IllegalArgumentException
+     * If the card isn't in the hand.
+     */
+    public void removeCard(Card card) throws IllegalArgumentException {
+        if (!card.isValid()) {
+            throw new IllegalArgumentException("Can't remove the invalid card " + card + ".");
+        }
+        removeCard(card.getOrdinal());
+    }
+
+    /**
+     * Removes a card from the hand by its ordinal (see Card.getOrdinal).
+     *
+     * @param ordinal
+     * The ordinal of the card to remove.
+     *
+     * @throws IllegalArgumentException
+     * If there's no such card, or it isn't in the hand.
+     */
+    public void removeCard(int ordinal) throws IllegalArgumentException {
+        long card = getCard(ordinal);
+        if ((this.cards & card) == 0) {
+            throw new IllegalArgumentException("The hand doesn't hold " + Card.fromOrdinal(ordinal) + ".");
+        }
+        this.cards &= ~card;
+        count(ordinal, -1);
+    }
+
+    /**
+     * Empties the hand.
+     */
+    public void clear() {
+        this.cards = CardSet.EMPTY;
+        for (int rank = 0; rank < this.rankCounts.length; ++rank) {
+            this.rankCounts[rank] = 0;
+        }
+        for (int suit = 0; suit < this.suitMasks.length; ++suit) {
+            this.suitMasks[suit] = 0;
+        }
+        this.isCurrent = false;
+    }
+
+    /**
+     * @return
+     * The bit for a card ordinal.
+     *
+     * @throws IllegalArgumentException
+     * If there's no card with that ordinal.
+     */
+    private static long getCard(int ordinal) throws IllegalArgumentException {
+        if (ordinal < 0 || ordinal >= CardSet.ORDINAL_COUNT) {
+            throw new IllegalArgumentException("There's no card with the ordinal " + ordinal + ".");
+        }
+        return 1L << ordinal;
+    }
+
+    /**
+     * Updates the value count and the suit mask for a card that was added or removed.
+     *
+     * @param ordinal
+     * The card's ordinal.
+     *
+     * @param change
+     * 1 for a card that was added, -1 for one that was removed.
+     */
+    private void count(int ordinal, int change) {
+        if (ordinal != CardSet.JOKER_ORDINAL) {
+            int rank = ordinal % CardSet.RANK_COUNT;
+            this.rankCounts[rank] += change;
+            this.suitMasks[ordinal / CardSet.RANK_COUNT] ^= 1 << rank;
+        }
+        this.isCurrent = false;
+    }
+
+    /**
+     * @return
+     * True if the card is in the hand.
+     */
+    public boolean contains(Card card) {
+        return CardSet.contains(this.cards, card);
+    }
+
+    /**
+     * @return
+     * The CardSet of the cards in the hand.
+     */
+    public long getCardSet() {
+        return this.cards;
+    }
+
+    /**
+     * @return
+     * The number of cards in the hand.
+     */
+    public int getHandSize() {
+        return CardSet.size(this.cards);
+    }
+
+    /**
+     * Gets how many cards of one value are in the hand.
+     *
+     * @param value
+     * A card value.
+     *
+     * @return
+     * How many natural cards of that value the hand holds.
+     *
+     * @throws IllegalArgumentException
+     * If the value isn't a card value.
+     */
+    public int getRankCount(int value) throws IllegalArgumentException {
+        if (value < Card.MIN_CARD_VALUE || value > Card.MAX_CARD_VALUE) {
+            throw new IllegalArgumentException(value + " isn't a card value.");
+        }
+        return this.rankCounts[value - Card.MIN_CARD_VALUE];
+    }
+
+    /**
+     * Gets how many cards of one suit are in the hand.
+     *
+     * @param suit
+     * A natural suit.
+     *
+     * @return
+     * How many cards of that suit the hand holds.
+     *
+     * @throws IllegalArgumentException
+     * If the suit is the joker's.
+     */
+    public int getSuitCount(Card.Suit suit) throws IllegalArgumentException {
+        if (suit == Card.Suit.JOKER) {
+            throw new IllegalArgumentException("The joker doesn't have a suit to count.");
+        }
+        return Integer.bitCount(this.suitMasks[suit.getSuitValue() - 1]);
+    }
+
+    /**
+     * Evaluates the current cards, unless they haven't changed since the last time.
+     *
+     * @return
+     * The result for the current cards.
+     */
+    private EvaluationResult getResult() {
+        if (!this.isCurrent) {
+            if (this.cards == CardSet.EMPTY) {
+                this.result.clear();
+            } else {
+                long wildCards = this.cards & CardSet.JOKER;
+                BitmaskEvaluator.evaluateCounted(this.cards & CardSet.NATURAL_DECK, wildCards,
+                        Long.bitCount(wildCards), this.rankCounts, this.suitMasks, this.result);
+            }
+            this.isCurrent = true;
+        }
+        return this.result;
+    }
+
+    /**
+     * @return
+     * The packed value (see HandValue) of the best hand in the current cards, or
+     * HandValue.INVALID_VALUE if there are no cards.
+     */
+    public int getValue() {
+        return getResult().getValue();
+    }
+
+    /**
+     * @return
+     * The type of the best hand in the current cards, or null if there are no cards.
+     */
+    public Hand.HandType getHandType() {
+        return getResult().getHandType();
+    }
+
+    /**
+     * @return
+     * The CardSet of the important cards of the best hand in the current cards.
+     */
+    public long getImportantCards() {
+        return getResult().getImportantCards();
+    }
+
+    /**
+     * @return
+     * The CardSet of the second important cards of the best hand in the current cards,
+     * which may be empty.
+     */
+    public long getSecondImportantCards() {
+        return getResult().getSecondImportantCards();
+    }
+
+    /**
+     * Copies the result for the current cards into a holder the caller supplies.
+     *
+     * @param out
+     * Where to put the result. It's cleared if there are no cards.
+     *
+     * @return
+     * True if there are any cards.
+     */
+    public boolean evaluate(EvaluationResult out) {
+        EvaluationResult current = getResult();
+        out.set(current.getValue(), current.getImportantCards(), current.getSecondImportantCards());
+        return current.isValid();
+    }
+
+}
@@ -30,6 +30,17 @@ public class Interpreter {
     public final static List<String> FACE_LIST = Arrays.asList( FACE_ARRAY );
     public final static char[] SUIT_ARRAY = { SPADES_CHAR, HEARTS_CHAR, DIAMONDS_CHAR, CLUBS_CHAR, JOKER_CHAR };
     
+    private final static Pattern TOKEN_PATTERN = 
+            Pattern.compile("((\\d*|[akqj])w)|((\\d+|[akqj])[shdcw])", Pattern.CASE_INSENSITIVE);
+    
+    // Each thread reads its lines with its own scanner, which keeps its buffers between lines.
+    private final static ThreadLocal<CardScanner> SCANNER = new ThreadLocal<CardScanner>() {
+        @Override
+        protected CardScanner initialValue() {
+            return new CardScanner();
+        }
+    };
+    
     /**
      * Interprets a line of input and returns a set of cars based on that
      * input if it is valid. If it isn't valid, this returns a descriptive string
@@ -46,24 +57,30 @@ public class Interpreter {
      * all of the invalid tokens to assist the user in determining what went wrong.
      */
     public static List<Card> interpret(String line) throws IllegalArgumentException{
-        List<Card> cardsWritten = new ArrayList<Card>();
-        String [] tokens = tokenize(line);
-        
-        List<String> badTokens = getBadFormatTokens(tokens);
-        // These are the bad tokens that are simply incorrect formatting.
-        if (badTokens.size() > 0) {
-            throw new IllegalArgumentException(getErrorString(badTokens));
+        // The scanner does the work of tokenize, getBadFormatTokens and convertStringsToCards
+        // in one pass, and gives back the same messages they would.
+        CardScanner scanner = SCANNER.get();
+        if (!scanner.scan(line)) {
+            throw new IllegalArgumentException(scanner.getErrorMessage());
         }
-        
-        badTokens.clear();
-        // Remember that this line can throw as well.
-        cardsWritten = convertStringsToCards(tokens, badTokens);
-        // These tokens have the right look, but don't make sense as cards.
-        if (badTokens.size() > 0) {
-            throw new IllegalArgumentException(getErrorString(badTokens));
-        }
-        
-        return cardsWritten;
+        return scanner.getCards();
+    }
+    
+    /**
+     * Reads a line of input into cards, as interpret does, but without throwing for a bad
+     * line. The result holds the cards that could be read and where the bad tokens were,
+     * along with the message interpret would have thrown.
+     * 
+     * @param line
+     * The line of input to be read.
+     * 
+     * @return
+     * The cards and bad tokens of the line.
+     */
+    public static ParseResult parse(String line) {
+        CardScanner scanner = SCANNER.get();
+        scanner.scan(line);
+        return new ParseResult(scanner);
     }
     
     /**
@@ -91,9 +108,8 @@ public class Interpreter {
      */
     public static List<String> getBadFormatTokens(String[] tokenizedInput) {
         List<String> badTokens = new ArrayList<String>();
-        Pattern pattern = Pattern.compile("((\\d*|[akqj])w)|((\\d+|[akqj])[shdcw])", Pattern.CASE_INSENSITIVE);
         for ( String token : tokenizedInput ) {
-            Matcher matcher = pattern.matcher(token);
+            Matcher matcher = TOKEN_PATTERN.matcher(token);
             if (!matcher.matches()) {
                 badTokens.add(token);
             }
@@ -139,14 +155,14 @@ public class Interpreter {
      * The string token to be converted.
      * 
      * @return
-     * The card based on the token.
+     * The card based on the token. Valid cards are the canonical (unchangeable) ones.
      * 
      * @throws IllegalArgumentException
      * If the string is not properly formatted.
      */
     public static Card convertTokenToCard(String token) throws IllegalArgumentException {
         // Right now it's a joker.
-        Card answer = new Card();
+        Card answer = Card.joker();
         
         String littleToken = token.toLowerCase();
         char suitChar = littleToken.charAt(token.length() - 1);
@@ -172,7 +188,13 @@ public class Interpreter {
                 }
                 // This line throws if you've given me a bad suit.
                 Card.Suit suit = getSuitFromChar(suitChar);
-                answer = new Card(value, suit);
+                // Valid cards are shared. A card with a bad value is still handed back
+                // (so that the hand fails validation), but it has to be a new one.
+                if (value >= Card.MIN_CARD_VALUE && value <= Card.MAX_CARD_VALUE) {
+                    answer = Card.valueOf(value, suit);
+                } else {
+                    answer = new Card(value, suit);
+                }
             } 
         }
         
@@ -8,13 +8,29 @@ package com.mishmash.rally;
  */
 public class Main {
 
+    private static final String BATCH = "--batch";
+    private static final String PIPELINE = "--pipeline";
+    private static final String USAGE = "Usage: java -jar CardMinnow.jar [--batch [file] | --pipeline [file]]";
+
     /**
      * @param args
-     * Unused for this program.
+     * Nothing, to run the interactive shell, or '--batch' and an optional file name, to
+     * evaluate every hand in the file (or the standard input) without any prompts. Use
+     * '--pipeline' instead of '--batch' to spread the work over every processor.
      */
     public static void main(String[] args) {
         CardMinnowShell cms = new CardMinnowShell();
-        cms.runShell();
+        if (args.length == 0) {
+            cms.runShell();
+        } else if ((BATCH.equals(args[0]) || PIPELINE.equals(args[0])) && args.length <= 2) {
+            HandPipeline pipeline = PIPELINE.equals(args[0]) ? new HandPipeline() : null;
+            if (!cms.runBatch(args.length == 2 ? args[1] : null, pipeline)) {
+                System.exit(1);
+            }
+        } else {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
     }
     
     
@@ -0,0 +1,192 @@
+package com.mishmash.rally;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scores arrays of hands on every core. The input is split in half again and again into
+ * fork-join tasks until each piece is small enough to score in one go with a BatchEvaluator.
+ * Every piece writes to its own stretch of the output arrays, so the results come out in
+ * input order without any copying or locking. The evaluators keep their scratch space per
+ * thread, so each worker has its own.
+ *
+ * By default the work runs in one pool shared by every ParallelBatchEvaluator, with one
+ * (daemon) worker per processor.
+ *
+ * @author mrmcduff
+ *
+ */
+public class ParallelBatchEvaluator {
+
+    // Pieces with fewer hands than this are scored without splitting them further.
+    public static final int DEFAULT_THRESHOLD = 4096;
+
+    /**
+     * Holds the shared pool, so that it's only started the first time it's needed.
+     *
+     * @author mrmcduff
+     *
+     */
+    private static class PoolHolder {
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final BatchEvaluator batchEvaluator = new BatchEvaluator();
+
+    /**
+     * Constructor for an evaluator that uses the shared pool.
+     */
+    public ParallelBatchEvaluator() {
+        this(PoolHolder.POOL, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Constructor for an evaluator with its own pool and piece size.
+     *
+     * @param pool
+     * The pool to run in.
+     *
+     * @param threshold
+     * The largest number of hands to score without splitting.
+     *
+     * @throws IllegalArgumentException
+     * If the threshold isn't positive.
+     */
+    public ParallelBatchEvaluator(ForkJoinPool pool, int threshold) throws IllegalArgumentException {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Can't split hands into pieces of " + threshold + ".");
+        }
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Scores every hand in an array of CardSets. See BatchEvaluator.evaluate.
+     *
+     * @param hands
+     * The hands to score.
+     *
+     * @param strengths
+     * Gets the strength of each hand. Must be at least as long as <b>hands</b>.
+     *
+     * @param types
+     * Gets the HandType ordinal of each hand, or null if the types aren't wanted.
+     *
+     * @throws IllegalArgumentException
+     * If an output array is too short.
+     */
+    public void evaluate(long[] hands, int[] strengths, byte[] types) throws IllegalArgumentException {
+        // Check everything up front, so that a bad call fails here instead of in a worker.
+        BatchEvaluator.checkRange(strengths.length, 0, hands.length, "strengths");
+        if (types != null) {
+            BatchEvaluator.checkRange(types.length, 0, hands.length, "types");
+        }
+        pool.invoke(new CardSetTask(hands, 0, hands.length, strengths, types));
+    }
+
+    /**
+     * Scores hands packed into an array of card ordinals, all of them the same size. See
+     * BatchEvaluator.evaluate.
+     *
+     * @param ordinals
+     * The packed hands. The length must be a multiple of <b>handSize</b>.
+     *
+     * @param handSize
+     * How many cards make up each hand.
+     *
+     * @param strengths
+     * Gets the strength of each hand. Must be long enough for every hand.
+     *
+     * @param types
+     * Gets the HandType ordinal of each hand, or null if the types aren't wanted.
+     *
+     * @throws IllegalArgumentException
+     * If the hand size doesn't divide the input, or an output array is too short.
+     */
+    public void evaluate(byte[] ordinals, int handSize, int[] strengths, byte[] types)
+            throws IllegalArgumentException {
+        int handCount = BatchEvaluator.getHandCount(ordinals, handSize);
+        BatchEvaluator.checkRange(strengths.length, 0, handCount, "strengths");
+        if (types != null) {
+            BatchEvaluator.checkRange(types.length, 0, handCount, "types");
+        }
+        pool.invoke(new OrdinalTask(ordinals, handSize, 0, handCount, strengths, types));
+    }
+
+    /**
+     * Scores a run of an array of CardSets, splitting it if it's too big.
+     *
+     * @author mrmcduff
+     *
+     */
+    private class CardSetTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] hands;
+        private final int from;
+        private final int count;
+        private final int[] strengths;
+        private final byte[] types;
+
+        CardSetTask(long[] hands, int from, int count, int[] strengths, byte[] types) {
+            this.hands = hands;
+            this.from = from;
+            this.count = count;
+            this.strengths = strengths;
+            this.types = types;
+        }
+
+        @Override
+        protected void compute() {
+            if (count <= threshold) {
+                batchEvaluator.evaluate(hands, from, count, strengths, types, from);
+            } else {
+                int half = count / 2;
+                invokeAll(new CardSetTask(hands, from, half, strengths, types),
+                        new CardSetTask(hands, from + half, count - half, strengths, types));
+            }
+        }
+    }
+
+    /**
+     * Scores a run of hands packed into an array of ordinals, splitting it if it's too big.
+     *
+     * @author mrmcduff
+     *
+     */
+    private class OrdinalTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] ordinals;
+        private final int handSize;
+        private final int fromHand;
+        private final int handCount;
+        private final int[] strengths;
+        private final byte[] types;
+
+        OrdinalTask(byte[] ordinals, int handSize, int fromHand, int handCount, int[] strengths,
+                byte[] types) {
+            this.ordinals = ordinals;
+            this.handSize = handSize;
+            this.fromHand = fromHand;
+            this.handCount = handCount;
+            this.strengths = strengths;
+            this.types = types;
+        }
+
+        @Override
+        protected void compute() {
+            if (handCount <= threshold) {
+                batchEvaluator.evaluate(ordinals, handSize, fromHand, handCount, strengths, types);
+            } else {
+                int half = handCount / 2;
+                invokeAll(new OrdinalTask(ordinals, handSize, fromHand, half, strengths, types),
+                        new OrdinalTask(ordinals, handSize, fromHand + half, handCount - half,
+                                strengths, types));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.mishmash.rally;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What came of reading a line of cards with Interpreter.parse: the cards that were read,
+ * and where the bad tokens were, if there were any. Unlike Interpreter.interpret, parsing
+ * never throws for a bad line. A bad line just gives a result with bad tokens, which is
+ * much cheaper when a lot of the input is noise.
+ *
+ * Callers reading a great many lines can skip the result objects altogether and keep a
+ * CardScanner of their own, which fills its own reusable buffers (and copies the cards
+ * into one of the caller's, if asked).
+ *
+ * A ParseResult can't be changed once it's made, so it can be shared between threads.
+ *
+ * @author mrmcduff
+ *
+ */
+public final class ParseResult {
+
+    private static final int FIELDS_PER_BAD_TOKEN = 3;
+
+    private final String line;
+    private final List<Card> cards;
+    private final long cardSet;
+
+    // Each bad token takes three entries: where it starts, where it ends, and its kind.
+    private final int[] badTokens;
+    private final String errorMessage;
+
+    /**
+     * Constructor for the result of the line a scanner just read.
+     *
+     * @param scanner
+     * The scanner, which has just read a line.
+     */
+    ParseResult(CardScanner scanner) {
+        this.line = scanner.getLine().toString();
+        this.cards = Collections.unmodifiableList(scanner.getCards());
+        this.cardSet = scanner.getCardSet();
+        this.badTokens = new int[scanner.getBadTokenCount() * FIELDS_PER_BAD_TOKEN];
+        for (int i = 0; i < scanner.getBadTokenCount(); ++i) {
+            this.badTokens[i * FIELDS_PER_BAD_TOKEN] = scanner.getBadTokenStart(i);
+            this.badTokens[i * FIELDS_PER_BAD_TOKEN + 1] = scanner.getBadTokenEnd(i);
+            this.badTokens[i * FIELDS_PER_BAD_TOKEN + 2] = scanner.getBadTokenKind(i);
+        }
+        this.errorMessage = scanner.getErrorMessage();
+    }
+
+    /**
+     * @return
+     * The line that was read.
+     */
+    public String getLine() {
+        return this.line;
+    }
+
+    /**
+     * @return
+     * True if every token in the line was a card.
+     */
+    public boolean isSuccessful() {
+        return this.badTokens.length == 0;
+    }
+
+    /**
+     * @return
+     * The cards that were read, in the order they were typed, duplicates included. If
+     * there were bad tokens, these are the good ones. The list can't be changed.
+     */
+    public List<Card> getCards() {
+        return this.cards;
+    }
+
+    /**
+     * @return
+     * The CardSet of the cards that were read.
+     */
+    public long getCardSet() {
+        return this.cardSet;
+    }
+
+    /**
+     * @return
+     * The number of bad tokens in the line.
+     */
+    public int getBadTokenCount() {
+        return this.badTokens.length / FIELDS_PER_BAD_TOKEN;
+    }
+
+    /**
+     * @param index
+     * Which bad token, in the order they were typed.
+     *
+     * @return
+     * Where the token starts in the line.
+     */
+    public int getBadTokenStart(int index) {
+        return getBadTokenField(index, 0);
+    }
+
+    /**
+     * @param index
+     * Which bad token, in the order they were typed.
+     *
+     * @return
+     * Where the token ends in the line (exclusive).
+     */
+    public int getBadTokenEnd(int index) {
+        return getBadTokenField(index, 1);
+    }
+
+    /**
+     * @param index
+     * Which bad token, in the order they were typed.
+     *
+     * @return
+     * What's wrong with it: CardScanner.BAD_FORMAT, BAD_NUMBER or BAD_VALUE.
+     */
+    public int getBadTokenKind(int index) {
+        return getBadTokenField(index, 2);
+    }
+
+    /**
+     * @param index
+     * Which bad token, in the order they were typed.
+     *
+     * @return
+     * The token itself, as it was typed.
+     */
+    public String getBadToken(int index) {
+        return this.line.substring(getBadTokenStart(index), getBadTokenEnd(index));
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException
+     * If there aren't that many bad tokens.
+     */
+    private int getBadTokenField(int index, int field) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= getBadTokenCount()) {
+            throw new IndexOutOfBoundsException("Bad token " + index + " of " + getBadTokenCount() + ".");
+        }
+        return this.badTokens[index * FIELDS_PER_BAD_TOKEN + field];
+    }
+
+    /**
+     * @return
+     * The message Interpreter.interpret would have thrown for this line, or null if the
+     * line was read without any bad tokens.
+     */
+    public String getErrorMessage() {
+        return this.errorMessage;
+    }
+
+}
@@ -0,0 +1,234 @@
+package com.mishmash.rally;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * An evaluator for hands of exactly seven cards, the Hold'em case. It walks a precomputed
+ * state table (see SevenCardTableBuilder) with one lookup per card, and the seventh lookup
+ * gives the packed value (see HandValue) of the hand.
+ *
+ * The table is generated the first time it's needed and saved to a file, which is then
+ * memory-mapped read-only. Every JVM on a machine that uses the same file shares the same
+ * physical pages. The file lives in the temp directory unless the
+ * <b>cardminnow.sevenCardTable</b> system property names another path. Generating it takes
+ * a little while and about 185MB of disk, so it's worth pointing every process at one copy.
+ *
+ * Hands of any other size are simply passed along to a HandEvaluator.
+ *
+ * @author mrmcduff
+ *
+ */
+public class SevenCardEvaluator implements Evaluator {
+
+    // This engine's name for EvaluatorSelector.
+    public static final String NAME = "seven-card";
+
+    public static final int HAND_SIZE = 7;
+
+    // Returned by getValue for hands that HandEvaluator would refuse to evaluate.
+    public static final int INVALID_VALUE = HandValue.INVALID_VALUE;
+
+    public static final String TABLE_PROPERTY = "cardminnow.sevenCardTable";
+    public static final String DEFAULT_TABLE_NAME = "cardminnow-seven-card.tbl";
+
+    private static final int CARD_COUNT = SevenCardTableBuilder.CARD_COUNT;
+    private static final int HEADER_INTS = SevenCardTableBuilder.HEADER_INTS;
+
+    /**
+     * Holds the mapped table, so that the table is only loaded (or generated) the first
+     * time a seven card hand is actually scored.
+     *
+     * @author mrmcduff
+     *
+     */
+    private static class TableHolder {
+        static final IntBuffer TABLE = loadTable(getTableFile());
+    }
+
+    // Falls back on this for hands that aren't seven cards long.
+    private HandEvaluator referenceEvaluator = new HandEvaluator();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Takes seven card hands, with or without the joker.
+     */
+    @Override
+    public boolean supports(int handSize, int wildCount) {
+        return handSize == HAND_SIZE && wildCount >= 0 && wildCount <= 1;
+    }
+
+    /**
+     * Evaluates a hand and sets its type and important cards, just like
+     * HandEvaluator.evaluate does. Invalid hands are left untouched.
+     *
+     * @param hand
+     * The hand to be evaluated.
+     */
+    @Override
+    public void evaluate(Hand hand) {
+        if (hand.getHandSize() != HAND_SIZE) {
+            referenceEvaluator.evaluate(hand);
+        } else {
+            int value = getValue(hand.getCards());
+            if (value != INVALID_VALUE) {
+                HandValue.applyTo(hand, value);
+            }
+        }
+    }
+
+    /**
+     * Gets the packed value (see HandValue) of a seven card hand.
+     *
+     * @param cards
+     * Exactly seven cards, in any order.
+     *
+     * @return
+     * The value of the hand, or INVALID_VALUE if it contains an invalid card or a duplicate.
+     *
+     * @throws IllegalArgumentException
+     * If the list doesn't hold seven cards.
+     */
+    public int getValue(List<Card> cards) throws IllegalArgumentException {
+        if (cards.size() != HAND_SIZE) {
+            throw new IllegalArgumentException("A seven card evaluator can't score "
+                    + cards.size() + " cards.");
+        }
+
+        long set = CardSet.of(cards);
+        if (CardSet.size(set) != HAND_SIZE) {
+            // Duplicates (including a second joker) and invalid cards drop out of the set.
+            return INVALID_VALUE;
+        }
+        return getValue(set);
+    }
+
+    /**
+     * Gets the packed value (see HandValue) of a seven card hand.
+     *
+     * @param cards
+     * A CardSet holding exactly seven cards.
+     *
+     * @return
+     * The value of the hand.
+     *
+     * @throws IllegalArgumentException
+     * If the set doesn't hold seven cards.
+     */
+    @Override
+    public int getValue(long cards) throws IllegalArgumentException {
+        if (CardSet.size(cards) != HAND_SIZE) {
+            throw new IllegalArgumentException("A seven card evaluator can't score "
+                    + CardSet.size(cards) + " cards.");
+        }
+
+        IntBuffer table = TableHolder.TABLE;
+        int state = 0;
+        for (long rest = cards; rest != 0; rest = CardSet.withoutFirst(rest)) {
+            state = table.get(HEADER_INTS + state * CARD_COUNT + CardSet.firstOrdinal(rest));
+        }
+        return state;
+    }
+
+    /**
+     * Gets the file the table is read from (and written to, if it doesn't exist yet).
+     *
+     * @return
+     * The table file.
+     */
+    public static File getTableFile() {
+        String path = System.getProperty(TABLE_PROPERTY);
+        if (path != null) {
+            return new File(path);
+        }
+        return new File(System.getProperty("java.io.tmpdir"), DEFAULT_TABLE_NAME);
+    }
+
+    /**
+     * Maps the table file into memory, generating the file first if it's missing or doesn't
+     * look like a table. A new table is written to a temporary file next to the real one and
+     * then renamed, so another process never sees half a table.
+     *
+     * @param tableFile
+     * Where the table lives.
+     *
+     * @return
+     * A read-only view of the table, header included.
+     *
+     * @throws IllegalStateException
+     * If the table can't be read or written.
+     */
+    static IntBuffer loadTable(File tableFile) throws IllegalStateException {
+        try {
+            IntBuffer table = mapTable(tableFile);
+            if (table == null) {
+                File directory = tableFile.getAbsoluteFile().getParentFile();
+                File temp = File.createTempFile(tableFile.getName(), ".tmp", directory);
+                try {
+                    SevenCardTableBuilder.build(temp);
+                    // If the rename fails, someone else may have finished first, in which
+                    // case we can just use theirs.
+                    if (!temp.renameTo(tableFile) && mapTable(tableFile) == null) {
+                        throw new IOException("Couldn't move the new table to " + tableFile);
+                    }
+                } finally {
+                    temp.delete();
+                }
+                table = mapTable(tableFile);
+                if (table == null) {
+                    throw new IOException("The table written to " + tableFile + " is unreadable.");
+                }
+            }
+            return table;
+        } catch (IOException ioe) {
+            throw new IllegalStateException("Couldn't load the seven card table: "
+                    + ioe.getMessage(), ioe);
+        }
+    }
+
+    /**
+     * Maps an existing table file.
+     *
+     * @param tableFile
+     * Where the table lives.
+     *
+     * @return
+     * A read-only view of the table, or null if the file is missing or isn't a valid table.
+     *
+     * @throws IOException
+     * If the file exists but can't be read.
+     */
+    private static IntBuffer mapTable(File tableFile) throws IOException {
+        if (!tableFile.isFile()) {
+            return null;
+        }
+        RandomAccessFile file = new RandomAccessFile(tableFile, "r");
+        try {
+            // The mapping stays valid after the file is closed.
+            MappedByteBuffer mapped = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                    file.length());
+            mapped.order(SevenCardTableBuilder.TABLE_ORDER);
+            IntBuffer table = mapped.asIntBuffer();
+            if (table.capacity() < HEADER_INTS
+                    || table.get(0) != SevenCardTableBuilder.TABLE_MAGIC
+                    || table.get(1) != SevenCardTableBuilder.TABLE_VERSION
+                    || table.get(3) != CARD_COUNT
+                    || (long) table.get(2) * CARD_COUNT + HEADER_INTS != table.capacity()) {
+                return null;
+            }
+            return table;
+        } finally {
+            file.close();
+        }
+    }
+
+}
@@ -0,0 +1,357 @@
+package com.mishmash.rally;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates the state table that SevenCardEvaluator walks. Each state stands for the cards
+ * seen so far, and each row holds one entry per card: the next state, or, for six card
+ * states, the value of the finished seven card hand. Because a state is a set of cards, the
+ * cards can be fed to the table in any order.
+ *
+ * To keep the table small, a card's suit is forgotten as soon as its suit can no longer make
+ * a flush. Without the joker that means fewer than five cards of the suit once every
+ * remaining card is counted, and with the joker fewer than four. Hands that only differ in
+ * forgotten suits score the same, so they share a state.
+ *
+ * Finished hands are scored by HandEvaluator, so the table agrees with it by construction.
+ *
+ * @author mrmcduff
+ *
+ */
+class SevenCardTableBuilder {
+
+    // The file starts with these four ints, followed by stateCount * CARD_COUNT entries.
+    static final int TABLE_MAGIC = 0x434d3753;
+    static final int TABLE_VERSION = 2;
+    static final int HEADER_INTS = 4;
+    static final ByteOrder TABLE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    // Every natural card plus the joker, indexed by CardSet ordinal.
+    static final int CARD_COUNT = CardSet.ORDINAL_COUNT;
+    private static final int JOKER_INDEX = CardSet.JOKER_ORDINAL;
+    private static final int RANK_COUNT = CardSet.RANK_COUNT;
+    private static final int SUIT_COUNT = CardSet.SUIT_COUNT;
+
+    private static final int HAND_SIZE = SevenCardEvaluator.HAND_SIZE;
+
+    // A state is stored as a sorted set of small codes packed seven bits apiece into a long.
+    // Natural cards are 1 + rank * 5 + suit, where suit 4 means "forgotten".
+    private static final int CODE_BITS = 7;
+    private static final int CODE_MASK = (1 << CODE_BITS) - 1;
+    private static final int SLOTS_PER_RANK = SUIT_COUNT + 1;
+    private static final int FORGOTTEN_SUIT = SUIT_COUNT;
+    private static final int JOKER_CODE = 1 + RANK_COUNT * SLOTS_PER_RANK;
+
+    // Scratch space reused from one transition to the next.
+    private final int[] codes = new int[HAND_SIZE];
+    private final int[] suitCounts = new int[SUIT_COUNT];
+    private final int[] rankCounts = new int[RANK_COUNT];
+    private final int[] forgottenCounts = new int[RANK_COUNT];
+
+    private final LongIntMap finalValues = new LongIntMap();
+    private final HandEvaluator reference = new HandEvaluator();
+
+    /**
+     * Builds the table and writes it to the given file.
+     *
+     * @param destination
+     * The file to write. It is overwritten if it exists.
+     *
+     * @throws IOException
+     * If the file can't be written.
+     */
+    static void build(File destination) throws IOException {
+        new SevenCardTableBuilder().write(destination);
+    }
+
+    /**
+     * Walks through the states one level (hand size) at a time, writing each state's row as
+     * soon as it's known. The states of the next level are numbered as they're discovered,
+     * which keeps every level in one contiguous block of rows.
+     *
+     * @param destination
+     * The file to write.
+     *
+     * @throws IOException
+     * If the file can't be written.
+     */
+    private void write(File destination) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(destination, "rw");
+        try {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            ByteBuffer row = ByteBuffer.allocate(CARD_COUNT * 4).order(TABLE_ORDER);
+            channel.position(HEADER_INTS * 4);
+
+            long[] level = { 0L };
+            int levelSize = 1;
+            int levelBase = 0;
+            for (int depth = 0; depth < HAND_SIZE; ++depth) {
+                boolean lastLevel = (depth == HAND_SIZE - 1);
+                LongIntMap nextIds = new LongIntMap();
+                long[] nextLevel = new long[Math.max(16, levelSize)];
+                int nextSize = 0;
+                int nextBase = levelBase + levelSize;
+
+                for (int i = 0; i < levelSize; ++i) {
+                    row.clear();
+                    for (int card = 0; card < CARD_COUNT; ++card) {
+                        long key = addCard(level[i], card);
+                        int entry = 0;
+                        if (key != 0L) {
+                            if (lastLevel) {
+                                entry = getFinalValue(key);
+                            } else {
+                                entry = nextIds.get(key);
+                                if (entry < 0) {
+                                    entry = nextBase + nextSize;
+                                    nextIds.put(key, entry);
+                                    if (nextSize == nextLevel.length) {
+                                        nextLevel = Arrays.copyOf(nextLevel, nextSize * 2);
+                                    }
+                                    nextLevel[nextSize++] = key;
+                                }
+                            }
+                        }
+                        row.putInt(entry);
+                    }
+                    row.flip();
+                    while (row.hasRemaining()) {
+                        channel.write(row);
+                    }
+                }
+
+                level = nextLevel;
+                levelBase = nextBase;
+                levelSize = nextSize;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_INTS * 4).order(TABLE_ORDER);
+            header.putInt(TABLE_MAGIC);
+            header.putInt(TABLE_VERSION);
+            header.putInt(levelBase);
+            header.putInt(CARD_COUNT);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Adds a card to a state.
+     *
+     * @param key
+     * The packed state.
+     *
+     * @param card
+     * The CardSet ordinal of the card to add.
+     *
+     * @return
+     * The packed state after the card is added and suits that can no longer make a flush are
+     * forgotten, or zero if the card can't be added (a duplicate, or an impossible hand).
+     */
+    private long addCard(long key, int card) {
+        int size = 0;
+        boolean hasJoker = false;
+        for (long rest = key; rest != 0L; rest >>>= CODE_BITS) {
+            int code = (int) (rest & CODE_MASK);
+            codes[size++] = code;
+            hasJoker |= (code == JOKER_CODE);
+        }
+
+        int newCode;
+        if (card == JOKER_INDEX) {
+            if (hasJoker) {
+                return 0L;
+            }
+            newCode = JOKER_CODE;
+            hasJoker = true;
+        } else {
+            newCode = 1 + (card % RANK_COUNT) * SLOTS_PER_RANK + card / RANK_COUNT;
+            for (int i = 0; i < size; ++i) {
+                if (codes[i] == newCode) {
+                    return 0L;
+                }
+            }
+        }
+        codes[size++] = newCode;
+
+        Arrays.fill(suitCounts, 0);
+        for (int i = 0; i < size; ++i) {
+            if (codes[i] != JOKER_CODE && (codes[i] - 1) % SLOTS_PER_RANK != FORGOTTEN_SUIT) {
+                ++suitCounts[(codes[i] - 1) % SLOTS_PER_RANK];
+            }
+        }
+
+        // The joker takes up a slot of its own, so this threshold works whether or not the
+        // joker is still to come.
+        int remaining = HAND_SIZE - size;
+        int flushSize = hasJoker ? Hand.FIVE_CARD_DRAW_HAND_SIZE - 1 : Hand.FIVE_CARD_DRAW_HAND_SIZE;
+        int forgottenSuits = 0;
+        for (int suit = 0; suit < SUIT_COUNT; ++suit) {
+            if (suitCounts[suit] + remaining < flushSize) {
+                ++forgottenSuits;
+            }
+        }
+
+        Arrays.fill(rankCounts, 0);
+        Arrays.fill(forgottenCounts, 0);
+        for (int i = 0; i < size; ++i) {
+            if (codes[i] != JOKER_CODE) {
+                int rank = (codes[i] - 1) / SLOTS_PER_RANK;
+                int suit = (codes[i] - 1) % SLOTS_PER_RANK;
+                if (suit == FORGOTTEN_SUIT || suitCounts[suit] + remaining < flushSize) {
+                    codes[i] = 1 + rank * SLOTS_PER_RANK + FORGOTTEN_SUIT;
+                    ++forgottenCounts[rank];
+                }
+                ++rankCounts[rank];
+            }
+        }
+        for (int rank = 0; rank < RANK_COUNT; ++rank) {
+            // Every forgotten card has a distinct forgotten suit, so a hand with more forgotten
+            // cards of one rank than there are forgotten suits can't happen.
+            if (rankCounts[rank] > SUIT_COUNT || forgottenCounts[rank] > forgottenSuits) {
+                return 0L;
+            }
+        }
+
+        Arrays.sort(codes, 0, size);
+        long newKey = 0L;
+        for (int i = 0; i < size; ++i) {
+            newKey = (newKey << CODE_BITS) | codes[i];
+        }
+        return newKey;
+    }
+
+    /**
+     * Scores a finished seven card state, remembering the answer since many rows lead to the
+     * same hand.
+     *
+     * @param key
+     * A packed state holding seven cards.
+     *
+     * @return
+     * The packed value (see HandValue) of the hand.
+     */
+    private int getFinalValue(long key) {
+        int value = finalValues.get(key);
+        if (value < 0) {
+            Hand hand = new Hand(toCards(key));
+            reference.evaluate(hand);
+            value = HandValue.valueOf(hand);
+            finalValues.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Builds a real hand out of a finished state. Cards whose suits were forgotten are dealt
+     * round-robin into the suits that have no remembered cards, which keeps cards of the same
+     * rank apart and leaves every such suit too short to make a flush.
+     *
+     * @param key
+     * A packed state holding seven cards.
+     *
+     * @return
+     * A list of cards that score the same as any hand the state stands for.
+     */
+    private List<Card> toCards(long key) {
+        boolean[] remembered = new boolean[SUIT_COUNT];
+        for (long rest = key; rest != 0L; rest >>>= CODE_BITS) {
+            int code = (int) (rest & CODE_MASK);
+            if (code != JOKER_CODE && (code - 1) % SLOTS_PER_RANK != FORGOTTEN_SUIT) {
+                remembered[(code - 1) % SLOTS_PER_RANK] = true;
+            }
+        }
+
+        List<Card> cards = new ArrayList<Card>();
+        int nextSuit = 0;
+        for (long rest = key; rest != 0L; rest >>>= CODE_BITS) {
+            int code = (int) (rest & CODE_MASK);
+            if (code == JOKER_CODE) {
+                cards.add(Card.joker());
+            } else {
+                int rank = (code - 1) / SLOTS_PER_RANK;
+                int suit = (code - 1) % SLOTS_PER_RANK;
+                if (suit == FORGOTTEN_SUIT) {
+                    while (remembered[nextSuit % SUIT_COUNT]) {
+                        ++nextSuit;
+                    }
+                    suit = nextSuit % SUIT_COUNT;
+                    ++nextSuit;
+                }
+                cards.add(CardSet.getCard(suit * RANK_COUNT + rank));
+            }
+        }
+        return cards;
+    }
+
+    /**
+     * A bare-bones open addressing hash map from nonzero long keys to nonnegative ints.
+     * The generator looks up millions of states, and boxing them all would be slow.
+     *
+     * @author mrmcduff
+     *
+     */
+    private static class LongIntMap {
+        private long[] keys = new long[1 << 10];
+        private int[] values = new int[1 << 10];
+        private int size = 0;
+
+        /**
+         * @return
+         * The value stored for the key, or -1 if there is none.
+         */
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); keys[i] != 0L; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Stores a value for a key that isn't in the map yet.
+         */
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                long[] oldKeys = keys;
+                int[] oldValues = values;
+                keys = new long[oldKeys.length * 2];
+                values = new int[oldKeys.length * 2];
+                size = 0;
+                for (int i = 0; i < oldKeys.length; ++i) {
+                    if (oldKeys[i] != 0L) {
+                        put(oldKeys[i], oldValues[i]);
+                    }
+                }
+            }
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != 0L) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            ++size;
+        }
+
+        private static int slot(long key, int mask) {
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ (mixed >>> 32)) & mask;
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.mishmash.rally;
+
+/**
+ * Static helpers for finding the suit-isomorphic form of a hand. No suit is worth more than
+ * any other, so swapping the suits of a hand around (all the hearts become spades and all the
+ * spades become hearts, say) never changes its type or its strength. Every hand has one
+ * canonical form among all of those swaps, and two hands share a canonical form exactly
+ * when one is a suit swap of the other, which makes it a good key for caching results.
+ *
+ * In the canonical form the suit holding the highest mask of values (see
+ * CardSet.getSuitMask) becomes spades, the next hearts, then diamonds, then clubs. The joker
+ * stays where it is.
+ *
+ * Only the suit-blind parts of a result carry over between hands with the same form. Which
+ * cards are important can still depend on the suits, because HandEvaluator breaks ties
+ * between equal flushes by suit.
+ *
+ * @author mrmcduff
+ *
+ */
+public final class SuitCanonicalizer {
+
+    private static final int RANK_COUNT = CardSet.RANK_COUNT;
+
+    /**
+     * This is a static class, so there's no need to instantiate it.
+     */
+    private SuitCanonicalizer() {}
+
+    /**
+     * Gets the canonical form of a set of cards.
+     *
+     * @param cards
+     * A CardSet.
+     *
+     * @return
+     * The canonical CardSet, which holds the same number of cards.
+     */
+    public static long canonicalize(long cards) {
+        int first = getMask(cards, 0);
+        int second = getMask(cards, 1);
+        int third = getMask(cards, 2);
+        int fourth = getMask(cards, 3);
+
+        // A sorting network for four masks, highest first. Masks that are equal are
+        // interchangeable, so it doesn't matter how ties land.
+        int swap;
+        if (first < second) { swap = first; first = second; second = swap; }
+        if (third < fourth) { swap = third; third = fourth; fourth = swap; }
+        if (first < third) { swap = first; first = third; third = swap; }
+        if (second < fourth) { swap = second; second = fourth; fourth = swap; }
+        if (second < third) { swap = second; second = third; third = swap; }
+
+        return (cards & ~CardSet.FULL_DECK) | (cards & CardSet.JOKER)
+                | ((long) first << (3 * RANK_COUNT)) | ((long) second << (2 * RANK_COUNT))
+                | ((long) third << RANK_COUNT) | fourth;
+    }
+
+    /**
+     * Checks whether a set of cards is already in its canonical form.
+     *
+     * @param cards
+     * A CardSet.
+     *
+     * @return
+     * True if canonicalize would return the set unchanged.
+     */
+    public static boolean isCanonical(long cards) {
+        return canonicalize(cards) == cards;
+    }
+
+    /**
+     * @return
+     * The 13-bit mask of the values held in one suit, by its CardSet suit index.
+     */
+    private static int getMask(long cards, int suit) {
+        return (int) (cards >>> (suit * RANK_COUNT)) & CardSet.SUIT_MASK;
+    }
+
+}
@@ -0,0 +1,289 @@
+package com.mishmash.rally;
+
+import java.util.List;
+
+/**
+ * An evaluator for games with more wild cards than the one joker, such as two-joker games
+ * or deuces wild. Rather than trying every card in place of every wild card, it scores the
+ * hand directly: the wild cards all join the best collection, fill the gaps in straights
+ * (using precomputed tables, as BitmaskEvaluator does) and count towards flushes.
+ *
+ * A WildCardEvaluator can be given a wild value, in which case every card of that value is
+ * wild, and the joker is always wild. Callers can also add wild cards that aren't in the set
+ * at all, such as a second joker. A wild card never adds a rank of its own, so a hand's
+ * important cards and value are made only of its natural cards, just as with the joker.
+ *
+ * With a single wild card, this gives exactly the same results as HandEvaluator does with
+ * the joker (including how it finds straights). With more than one, the straight is simply
+ * the highest five values in a row that the natural cards and wild cards can make, and it's
+ * valued by the top of that run even when a wild card fills it. A hand of nothing but two
+ * or more wild cards is the best collection they can make: a pair of aces, and so on up to
+ * five aces.
+ *
+ * The evaluator holds no state once it's built, so one instance can be shared by any
+ * number of threads.
+ *
+ * @author mrmcduff
+ *
+ */
+public class WildCardEvaluator implements Evaluator {
+
+    // This engine's name for EvaluatorSelector.
+    public static final String NAME = "wild";
+
+    // The wild value for a game where only the joker is wild.
+    public static final int NO_WILD_VALUE = 0;
+
+    private static final int SCORING_HAND_SIZE = Hand.FIVE_CARD_DRAW_HAND_SIZE;
+    private static final int RANK_COUNT = CardSet.RANK_COUNT;
+
+    // The tables cover two to four wild cards. With four, any natural card at all makes
+    // five of a kind, so nobody needs a straight with more.
+    private static final int MIN_TABLE_WILDS = 2;
+    private static final int MAX_TABLE_WILDS = SCORING_HAND_SIZE - 1;
+
+    // The straight found among a mask of values, indexed first by the number of wild cards
+    // (less two) and then by the mask, or zero if there isn't one.
+    private static final char[][] WILD_STRAIGHTS =
+            new char[MAX_TABLE_WILDS - MIN_TABLE_WILDS + 1][1 << RANK_COUNT];
+
+    static {
+        for (int wildCount = MIN_TABLE_WILDS; wildCount <= MAX_TABLE_WILDS; ++wildCount) {
+            char[] straights = WILD_STRAIGHTS[wildCount - MIN_TABLE_WILDS];
+            for (int rankMask = 0; rankMask < straights.length; ++rankMask) {
+                straights[rankMask] = (char) findStraight(rankMask, wildCount);
+            }
+        }
+    }
+
+    /**
+     * The scratch space for one thread.
+     *
+     * @author mrmcduff
+     *
+     */
+    private static class Scratch {
+        final int[] rankCounts = new int[CardSet.RANK_COUNT];
+        final int[] suitMasks = new int[CardSet.SUIT_COUNT];
+        final EvaluationResult result = new EvaluationResult();
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private final int wildValue;
+    private final long wildCards;
+
+    /**
+     * Constructor for an evaluator where only the joker (and any extra wild cards) is wild.
+     */
+    public WildCardEvaluator() {
+        this.wildValue = NO_WILD_VALUE;
+        this.wildCards = CardSet.JOKER;
+    }
+
+    /**
+     * Constructor for an evaluator where every card of one value is wild, as well as the
+     * joker.
+     *
+     * @param wildValue
+     * The wild value, such as 2 for deuces wild.
+     *
+     * @throws IllegalArgumentException
+     * If the value isn't a card value.
+     */
+    public WildCardEvaluator(int wildValue) throws IllegalArgumentException {
+        if (wildValue < Card.MIN_CARD_VALUE || wildValue > Card.MAX_CARD_VALUE) {
+            throw new IllegalArgumentException(wildValue + " isn't a card value that can be wild.");
+        }
+        this.wildValue = wildValue;
+        this.wildCards = CardSet.JOKER | CardSet.getCardsOfValue(CardSet.FULL_DECK, wildValue);
+    }
+
+    /**
+     * @return
+     * The value whose cards are wild, or NO_WILD_VALUE if only the joker is.
+     */
+    public int getWildValue() {
+        return this.wildValue;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Takes hands of any size with any number of wild cards. For wild cards that aren't in
+     * the set (a second joker), use getValue(long, int).
+     */
+    @Override
+    public boolean supports(int handSize, int wildCount) {
+        return handSize > 0 && wildCount >= 0;
+    }
+
+    /**
+     * Evaluates a hand and sets its type and important cards, just like
+     * HandEvaluator.evaluate does, but with this evaluator's wild cards. Invalid hands are
+     * left untouched. (A Hand can't hold two jokers, so use getValue(List) for those.)
+     *
+     * @param hand
+     * The hand to be evaluated.
+     */
+    @Override
+    public void evaluate(Hand hand) {
+        if (hand.isValid()) {
+            EvaluationResult result = new EvaluationResult();
+            evaluate(hand.getCardSet(), 0, result);
+            result.applyTo(hand);
+        }
+    }
+
+    /**
+     * Evaluates a set of cards into a holder that the caller supplies (and can reuse).
+     *
+     * @param cards
+     * A CardSet of any size.
+     *
+     * @param extraWilds
+     * How many wild cards the hand has on top of the ones in the set, such as 1 for a
+     * second joker.
+     *
+     * @param result
+     * Where to put the result. It's cleared if the set isn't a valid hand.
+     *
+     * @return
+     * True if the hand was valid: it has at least one card, and the set has no stray bits.
+     *
+     * @throws IllegalArgumentException
+     * If <b>extraWilds</b> is negative.
+     */
+    public boolean evaluate(long cards, int extraWilds, EvaluationResult result)
+            throws IllegalArgumentException {
+        if (extraWilds < 0) {
+            throw new IllegalArgumentException("Can't have " + extraWilds + " extra wild cards.");
+        }
+        if ((cards == CardSet.EMPTY && extraWilds == 0) || (cards & ~CardSet.FULL_DECK) != 0) {
+            result.clear();
+            return false;
+        }
+
+        long wilds = cards & this.wildCards;
+        // If the hand is nothing but wild cards, its important cards are the natural-looking
+        // ones (the deuces, say) rather than the joker, unless the joker is all there is.
+        long shownWilds = ((wilds & CardSet.NATURAL_DECK) != CardSet.EMPTY)
+                ? wilds & CardSet.NATURAL_DECK : wilds;
+        Scratch scratch = SCRATCH.get();
+        BitmaskEvaluator.evaluate(cards & ~wilds, shownWilds, Long.bitCount(wilds) + extraWilds,
+                scratch.rankCounts, scratch.suitMasks, result);
+        return true;
+    }
+
+    /**
+     * Gets the packed value (see HandValue) of a set of cards, with no extra wild cards.
+     *
+     * @param cards
+     * A CardSet of any size.
+     *
+     * @return
+     * The value of the hand, or HandValue.INVALID_VALUE if it isn't valid.
+     */
+    @Override
+    public int getValue(long cards) {
+        return getValue(cards, 0);
+    }
+
+    /**
+     * Gets the packed value (see HandValue) of a set of cards.
+     *
+     * @param cards
+     * A CardSet of any size.
+     *
+     * @param extraWilds
+     * How many wild cards the hand has on top of the ones in the set.
+     *
+     * @return
+     * The value of the hand, or HandValue.INVALID_VALUE if it isn't valid.
+     *
+     * @throws IllegalArgumentException
+     * If <b>extraWilds</b> is negative.
+     */
+    public int getValue(long cards, int extraWilds) throws IllegalArgumentException {
+        EvaluationResult result = SCRATCH.get().result;
+        evaluate(cards, extraWilds, result);
+        return result.getValue();
+    }
+
+    /**
+     * Gets the packed value (see HandValue) of a list of cards. Unlike a Hand, the list can
+     * hold the joker more than once, and every copy is wild.
+     *
+     * @param cards
+     * The cards of the hand.
+     *
+     * @return
+     * The value of the hand, or HandValue.INVALID_VALUE if it's empty or holds an invalid
+     * card or a duplicate natural card.
+     */
+    public int getValue(List<Card> cards) {
+        long set = CardSet.EMPTY;
+        int jokers = 0;
+        for (Card card : cards) {
+            if (card.isValid() && card.getSuit() == Card.Suit.JOKER) {
+                ++jokers;
+            } else {
+                long cardSet = CardSet.of(card);
+                if (cardSet == CardSet.EMPTY || (set & cardSet) != 0) {
+                    return HandValue.INVALID_VALUE;
+                }
+                set |= cardSet;
+            }
+        }
+        return getValue(set, jokers);
+    }
+
+    /**
+     * Looks up the straight among a set of card values for two or more wild cards.
+     *
+     * @param rankMask
+     * The card values to search, as a 13-bit mask with the deuce in the lowest bit.
+     *
+     * @param wildCount
+     * How many wild cards there are, at least two.
+     *
+     * @return
+     * The natural values making up the straight, as a mask, or zero if there is none.
+     */
+    static int getStraight(int rankMask, int wildCount) {
+        return WILD_STRAIGHTS[Math.min(wildCount, MAX_TABLE_WILDS) - MIN_TABLE_WILDS][rankMask];
+    }
+
+    /**
+     * Finds the highest straight that a set of card values can make with some wild cards
+     * filling in the missing values. It only runs while the tables are built.
+     *
+     * @param rankMask
+     * The card values to search, as a 13-bit mask with the deuce in the lowest bit.
+     *
+     * @param wildCount
+     * How many wild cards there are.
+     *
+     * @return
+     * The natural values making up the straight, as a mask, or zero if there is none.
+     */
+    private static int findStraight(int rankMask, int wildCount) {
+        int window = (1 << SCORING_HAND_SIZE) - 1;
+        for (int low = RANK_COUNT - SCORING_HAND_SIZE; low >= 0; --low) {
+            int inWindow = rankMask & (window << low);
+            if (inWindow != 0 && Integer.bitCount(inWindow) + wildCount >= SCORING_HAND_SIZE) {
+                return inWindow;
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,268 @@
+/**
+ *
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mishmash.rally.Card;
+import com.mishmash.rally.CardScanner;
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.EvaluationResult;
+import com.mishmash.rally.Evaluator;
+import com.mishmash.rally.EvaluatorSelector;
+import com.mishmash.rally.Hand;
+import com.mishmash.rally.HandEvaluator;
+import com.mishmash.rally.Interpreter;
+
+/**
+ * Holds the evaluation path to a budget of bytes allocated per call, measured with the
+ * JVM's per-thread allocation counter. A call that goes over its budget fails the test, so
+ * that a change which starts allocating (or allocating more) in a hot path gets noticed.
+ *
+ * The budgets leave some room over what the calls allocate today, with or without the JIT
+ * compiler, so they don't fail on noise. The bitmask and table engines and the CardScanner
+ * allocate nothing at all, and their budget is zero.
+ *
+ * @author mrmcduff
+ *
+ */
+public class AllocationBudgetTest {
+
+    private static final int[] HAND_SIZES = { 5, 7, 13, 53 };
+
+    // Bytes per call for each of HAND_SIZES.
+    private static final long[] EVALUATE_BUDGETS = { 4096, 4096, 4608, 6144 };
+    private static final long[] INTERPRET_BUDGETS = { 128, 128, 160, 320 };
+    private static final long DESCRIPTION_BUDGET = 640;
+    private static final long SELECTED_EVALUATE_BUDGET = 512;
+
+    private static final int HAND_COUNT = 256;
+    private static final int CALLS = 2000;
+
+    private com.sun.management.ThreadMXBean threads;
+    private Random random;
+
+    /**
+     * Something to call over and over.
+     *
+     * @author mrmcduff
+     *
+     */
+    private abstract static class Call {
+        Object sink;
+
+        /**
+         * Makes the call once. Whatever it returns is kept, so that it isn't optimized away.
+         *
+         * @param i
+         * Which time this is.
+         */
+        abstract void run(int i);
+    }
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        random = new Random(20);
+    }
+
+    /**
+     * Measures how many bytes a call allocates, after running it enough to warm it up.
+     *
+     * @param call
+     * The call to measure.
+     *
+     * @return
+     * The bytes allocated per call, on average.
+     */
+    private long measure(Call call) {
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < CALLS; ++i) {
+            call.run(i);
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < CALLS; ++i) {
+            call.run(i);
+        }
+        return (threads.getThreadAllocatedBytes(thread) - before) / CALLS;
+    }
+
+    /**
+     * Measures a call and fails if it goes over its budget.
+     *
+     * @param name
+     * What the call is, for the failure message.
+     *
+     * @param budget
+     * The most bytes the call may allocate.
+     *
+     * @param call
+     * The call to measure.
+     */
+    private void assertWithinBudget(String name, long budget, Call call) {
+        long allocated = measure(call);
+        assertTrue(name + " allocated " + allocated + " bytes per call, over its budget of "
+                + budget, allocated <= budget);
+    }
+
+    /**
+     * Deals HAND_COUNT random hands.
+     *
+     * @param size
+     * The number of cards in each, which may include the joker.
+     *
+     * @return
+     * The hands, as CardSets.
+     */
+    private long[] deal(int size) {
+        long[] hands = new long[HAND_COUNT];
+        for (int i = 0; i < hands.length; ++i) {
+            long cards = CardSet.EMPTY;
+            while (CardSet.size(cards) < size) {
+                cards |= 1L << random.nextInt(CardSet.ORDINAL_COUNT);
+            }
+            hands[i] = cards;
+        }
+        return hands;
+    }
+
+    /**
+     * @return
+     * The cards as a user would type them in.
+     */
+    private static String toInput(long cards) {
+        StringBuilder sb = new StringBuilder();
+        for (Card card : CardSet.toCards(cards)) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            if (card.getSuit() == Card.Suit.JOKER) {
+                sb.append('w');
+            } else {
+                sb.append(card.getValue()).append(card.getSuit().name().charAt(0));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return
+     * A hand for each CardSet.
+     */
+    private static Hand[] toHands(long[] cards) {
+        Hand[] hands = new Hand[cards.length];
+        for (int i = 0; i < cards.length; ++i) {
+            hands[i] = CardSet.toHand(cards[i]);
+        }
+        return hands;
+    }
+
+    @Test
+    public void testEvaluate() {
+        final HandEvaluator evaluator = new HandEvaluator();
+        for (int s = 0; s < HAND_SIZES.length; ++s) {
+            final Hand[] hands = toHands(deal(HAND_SIZES[s]));
+            assertWithinBudget("HandEvaluator.evaluate on " + HAND_SIZES[s] + " cards",
+                    EVALUATE_BUDGETS[s], new Call() {
+                        @Override
+                        void run(int i) {
+                            evaluator.evaluate(hands[i % HAND_COUNT]);
+                        }
+                    });
+            assertWithinBudget("The selected engine's evaluate on " + HAND_SIZES[s] + " cards",
+                    SELECTED_EVALUATE_BUDGET, new Call() {
+                        @Override
+                        void run(int i) {
+                            Hand hand = hands[i % HAND_COUNT];
+                            EvaluatorSelector.select(hand).evaluate(hand);
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void testAllocationFreeEngines() {
+        final EvaluationResult result = new EvaluationResult();
+        for (int size : HAND_SIZES) {
+            final long[] hands = deal(size);
+            assertWithinBudget("BitmaskEvaluator.evaluate on " + size + " cards", 0, new Call() {
+                @Override
+                void run(int i) {
+                    sink = EvaluatorSelector.BITMASK.evaluate(hands[i % HAND_COUNT], result);
+                }
+            });
+            for (final Evaluator engine : EvaluatorSelector.getAvailableEngines()) {
+                if (engine == EvaluatorSelector.REFERENCE || !engine.supports(size, 1)) {
+                    continue;
+                }
+                final int[] values = new int[1];
+                assertWithinBudget(engine.getName() + " getValue on " + size + " cards", 0,
+                        new Call() {
+                            @Override
+                            void run(int i) {
+                                values[0] = engine.getValue(hands[i % HAND_COUNT]);
+                            }
+                        });
+            }
+        }
+    }
+
+    @Test
+    public void testInterpret() {
+        for (int s = 0; s < HAND_SIZES.length; ++s) {
+            long[] hands = deal(HAND_SIZES[s]);
+            final String[] lines = new String[hands.length];
+            for (int i = 0; i < hands.length; ++i) {
+                lines[i] = toInput(hands[i]);
+            }
+            assertWithinBudget("Interpreter.interpret on " + HAND_SIZES[s] + " cards",
+                    INTERPRET_BUDGETS[s], new Call() {
+                        @Override
+                        void run(int i) {
+                            sink = Interpreter.interpret(lines[i % HAND_COUNT]);
+                        }
+                    });
+            // Only the list of cards should cost anything; reading them costs nothing.
+            final CardScanner scanner = new CardScanner();
+            assertWithinBudget("CardScanner.scan on " + HAND_SIZES[s] + " cards", 0, new Call() {
+                @Override
+                void run(int i) {
+                    sink = scanner.scan(lines[i % HAND_COUNT]);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testGetDescription() {
+        for (int size : HAND_SIZES) {
+            final Hand[] hands = toHands(deal(size));
+            for (Hand hand : hands) {
+                hand.getDescription();
+            }
+            assertWithinBudget("Hand.getDescription on " + size + " cards", DESCRIPTION_BUDGET,
+                    new Call() {
+                        @Override
+                        void run(int i) {
+                            sink = hands[i % HAND_COUNT].getDescription();
+                        }
+                    });
+        }
+    }
+
+}
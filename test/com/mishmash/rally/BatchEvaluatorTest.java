@@ -0,0 +1,165 @@
+/**
+ * 
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mishmash.rally.BatchEvaluator;
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.Hand;
+
+/**
+ * Tests the array-based BatchEvaluator against evaluating hands one at a time.
+ * 
+ * @author mrmcduff
+ *
+ */
+public class BatchEvaluatorTest {
+    
+    private BatchEvaluator batch;
+    private Random random;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        batch = new BatchEvaluator();
+        random = new Random(7);
+    }
+    
+    /**
+     * Deals a random hand.
+     * 
+     * @param size
+     * The number of cards to deal.
+     * 
+     * @return
+     * A CardSet of that many cards.
+     */
+    private long deal(int size) {
+        long set = CardSet.EMPTY;
+        while (CardSet.size(set) < size) {
+            set |= 1L << random.nextInt(CardSet.ORDINAL_COUNT);
+        }
+        return set;
+    }
+
+    /**
+     * Test method for {@link com.mishmash.rally.BatchEvaluator#evaluate(long[], int[], byte[])}.
+     */
+    @Test
+    public void testEvaluateCardSets() {
+        long[] hands = new long[3000];
+        for (int i = 0; i < hands.length; ++i) {
+            // Mostly five card hands, with some of every other size mixed in.
+            hands[i] = deal((i % 3 == 0) ? 1 + random.nextInt(CardSet.ORDINAL_COUNT) : 5);
+        }
+        hands[17] = CardSet.EMPTY;
+        
+        int[] strengths = new int[hands.length];
+        byte[] types = new byte[hands.length];
+        batch.evaluate(hands, strengths, types);
+        for (int i = 0; i < hands.length; ++i) {
+            Hand hand = CardSet.toHand(hands[i]);
+            assertEquals(hand.getStrength(), strengths[i]);
+            if (hand.isValid()) {
+                assertEquals(hand.getHandType().ordinal(), types[i]);
+            } else {
+                assertEquals(BatchEvaluator.INVALID_TYPE, types[i]);
+            }
+        }
+        
+        // A run can go anywhere in the output, and the types can be left out.
+        int[] someStrengths = new int[10];
+        batch.evaluate(hands, 100, 5, someStrengths, null, 5);
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(0, someStrengths[i]);
+            assertEquals(strengths[100 + i], someStrengths[5 + i]);
+        }
+    }
+    
+    /**
+     * Test method for {@link com.mishmash.rally.BatchEvaluator#evaluate(byte[], int, int[], byte[])}.
+     */
+    @Test
+    public void testEvaluateOrdinals() {
+        final int handSize = 7;
+        final int handCount = 500;
+        byte[] ordinals = new byte[handSize * handCount];
+        long[] hands = new long[handCount];
+        for (int i = 0; i < handCount; ++i) {
+            hands[i] = deal(handSize);
+            int next = i * handSize;
+            for (long rest = hands[i]; rest != 0; rest = CardSet.withoutFirst(rest)) {
+                ordinals[next++] = (byte) CardSet.firstOrdinal(rest);
+            }
+        }
+        // A duplicate and a card that doesn't exist.
+        ordinals[1] = ordinals[0];
+        ordinals[handSize] = (byte) CardSet.ORDINAL_COUNT;
+        
+        int[] strengths = new int[handCount];
+        byte[] types = new byte[handCount];
+        batch.evaluate(ordinals, handSize, strengths, types);
+        assertEquals(HandValue.INVALID_VALUE, strengths[0]);
+        assertEquals(BatchEvaluator.INVALID_TYPE, types[0]);
+        assertEquals(HandValue.INVALID_VALUE, strengths[1]);
+        for (int i = 2; i < handCount; ++i) {
+            assertEquals(CardSet.toHand(hands[i]).getStrength(), strengths[i]);
+            assertEquals(HandValue.getHandType(strengths[i]).ordinal(), types[i]);
+        }
+    }
+    
+    /**
+     * Test method for {@link com.mishmash.rally.BatchEvaluator#classify(long[], byte[])}.
+     */
+    @Test
+    public void testClassify() {
+        long[] hands = new long[3000];
+        for (int i = 0; i < hands.length; ++i) {
+            hands[i] = deal(1 + random.nextInt(CardSet.ORDINAL_COUNT));
+        }
+        hands[0] = CardSet.EMPTY;
+        hands[1] = CardSet.FULL_DECK + 1;
+        byte[] types = new byte[hands.length];
+        batch.classify(hands, types);
+        assertEquals(BatchEvaluator.INVALID_TYPE, types[0]);
+        assertEquals(BatchEvaluator.INVALID_TYPE, types[1]);
+        for (int i = 2; i < hands.length; ++i) {
+            assertEquals(CardSet.toHand(hands[i]).getHandType().ordinal(), types[i]);
+        }
+    }
+    
+    /**
+     * Arrays that don't fit should be refused.
+     */
+    @Test
+    public void testBadArrays() {
+        try {
+            batch.evaluate(new long[5], new int[4], null);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+        try {
+            batch.evaluate(new byte[12], 5, new int[5], null);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+        try {
+            batch.classify(new long[5], new byte[4]);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+    }
+
+}
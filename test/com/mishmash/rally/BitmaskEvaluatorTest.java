@@ -0,0 +1,131 @@
+/**
+ *
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mishmash.rally.BitmaskEvaluator;
+import com.mishmash.rally.EvaluationResult;
+import com.mishmash.rally.Hand;
+import com.mishmash.rally.HandEvaluator;
+import com.mishmash.rally.Interpreter;
+
+/**
+ * Tests the allocation-free BitmaskEvaluator against the original HandEvaluator.
+ *
+ * @author mrmcduff
+ *
+ */
+public class BitmaskEvaluatorTest {
+
+    private BitmaskEvaluator be;
+    private HandEvaluator he;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        be = new BitmaskEvaluator();
+        he = new HandEvaluator();
+    }
+
+    /**
+     * Test method for {@link com.mishmash.rally.BitmaskEvaluator#evaluate(com.mishmash.rally.Hand)}.
+     */
+    @Test
+    public void testEvaluateMatchesHandEvaluator() {
+        String[] inputs = { "w", "8c", "8c, 2d", "w, 2c", "as, 3c, 3s, 2h, 2d", "w, ah, jd, 10h, 10c, 9h",
+                "kh, kd, 7s, 6h, 5d, 4c, 3s, 2s, 2h", "w, As, 7s, 6h, 5d, 4c, 3s, 2s, 2h",
+                "w, 8s, 8d, 7d, 7c, 6d, 6c", "as, ah, ad, 2s, 2h, 2d, 3c, 3d", "w, 4s, 4h, 4d, kc, kd, ks",
+                "w, 2s, 2h, 2d, 2c", "w, 10s, 8h, 7d, 5c, 4s, 2d", "w, 10h, 8h, 7h, 5h, 4h",
+                "as, ks, qs, js, 10s, 9s, 8s, ah, kh, qh, jh, 10h", "ah, kh, qh, jh, 10h, 10s, 10d",
+                "w, 9d, 8d, 7d, 5d, 4d, 3d, 9c, 8c, 7c, 5c, 4c", "w, 10s, 8s, 7s, 5s, 4s, 8h, 7h, 5h, 4h",
+                "w, ac, kd, qh, js, 9c, 8d, 7h, 6s, 4c, 3d, 2h" };
+        for (String input : inputs) {
+            Hand expected = new Hand(Interpreter.interpret(input));
+            Hand actual = new Hand(Interpreter.interpret(input));
+            he.evaluate(expected);
+            be.evaluate(actual);
+            assertEquals(input, expected.getHandType(), actual.getHandType());
+            assertEquals(input, expected.getImportantCards(), actual.getImportantCards());
+            assertEquals(input, expected.getSecondImportantCards(), actual.getSecondImportantCards());
+            assertEquals(input, HandValue.valueOf(expected), be.getValue(actual.getCardSet()));
+        }
+    }
+
+    /**
+     * Random hands of every size should come out the same as they do with HandEvaluator.
+     */
+    @Test
+    public void testRandomHands() {
+        Random random = new Random(1);
+        EvaluationResult result = new EvaluationResult();
+        for (int i = 0; i < 20000; ++i) {
+            int size = 1 + random.nextInt(CardSet.ORDINAL_COUNT);
+            long set = CardSet.EMPTY;
+            while (CardSet.size(set) < size) {
+                set |= 1L << random.nextInt(CardSet.ORDINAL_COUNT);
+            }
+            Hand expected = CardSet.toHand(set);
+            he.evaluate(expected);
+            assertTrue(be.evaluate(set, result));
+            assertEquals(HandValue.valueOf(expected), result.getValue());
+            assertEquals(expected.getHandType(), result.getHandType());
+            assertEquals(CardSet.of(expected.getImportantCards()), result.getImportantCards());
+            assertEquals(CardSet.of(expected.getSecondImportantCards()), result.getSecondImportantCards());
+        }
+    }
+
+    /**
+     * Test method for {@link com.mishmash.rally.BitmaskEvaluator#classify(long)}.
+     */
+    @Test
+    public void testClassify() {
+        Random random = new Random(3);
+        for (int i = 0; i < 20000; ++i) {
+            int size = 1 + random.nextInt(CardSet.ORDINAL_COUNT);
+            long set = CardSet.EMPTY;
+            while (CardSet.size(set) < size) {
+                set |= 1L << random.nextInt(CardSet.ORDINAL_COUNT);
+            }
+            assertEquals(HandValue.getHandType(be.getValue(set)), be.classify(set));
+        }
+        assertEquals(Hand.HandType.TWO_PAIR, be.classify(CardSet.of(Interpreter.interpret("as, ah, 3c, 3d, 2h"))));
+        assertEquals(Hand.HandType.PAIR, be.classify(CardSet.of(Interpreter.interpret("w, ah, 9c, 3d, 2h"))));
+        assertEquals(Hand.HandType.FULL_HOUSE, be.classify(CardSet.of(Interpreter.interpret("w, ah, as, 3d, 3h"))));
+        assertEquals(Hand.HandType.HIGH_CARD, be.classify(CardSet.JOKER));
+        assertNull(be.classify(CardSet.EMPTY));
+        assertNull(be.classify(CardSet.FULL_DECK + 1));
+    }
+
+    /**
+     * Test method for {@link com.mishmash.rally.BitmaskEvaluator#evaluate(long, EvaluationResult)}.
+     */
+    @Test
+    public void testInvalidHands() {
+        EvaluationResult result = new EvaluationResult();
+        assertTrue(be.evaluate(CardSet.of(Interpreter.interpret("as, ah")), result));
+        assertTrue(result.isValid());
+        assertEquals(Hand.HandType.PAIR, result.getHandType());
+
+        assertFalse(be.evaluate(CardSet.EMPTY, result));
+        assertFalse(result.isValid());
+        assertNull(result.getHandType());
+        assertNull(new EvaluationResult().getHandType());
+        assertEquals(BitmaskEvaluator.INVALID_VALUE, be.getValue(CardSet.FULL_DECK + 1));
+
+        Hand duplicates = new Hand(Interpreter.interpret("as, as, 3c, 4d, 5h"));
+        be.evaluate(duplicates);
+        // Invalid hands are left untouched.
+        assertTrue(duplicates.getImportantCards().isEmpty());
+        assertTrue(duplicates.getSecondImportantCards().isEmpty());
+    }
+
+}
@@ -0,0 +1,144 @@
+/**
+ * 
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mishmash.rally.CachingEvaluator;
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.Hand;
+import com.mishmash.rally.HandEvaluator;
+import com.mishmash.rally.Interpreter;
+
+/**
+ * Tests the CachingEvaluator against the HandEvaluator it sits in front of.
+ * 
+ * @author mrmcduff
+ *
+ */
+public class CachingEvaluatorTest {
+    
+    private CachingEvaluator cache;
+    private HandEvaluator he;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        cache = new CachingEvaluator(64);
+        he = new HandEvaluator();
+    }
+    
+    /**
+     * Checks that the cache evaluates a hand exactly as the HandEvaluator does.
+     * 
+     * @param input
+     * The hand, as the Interpreter would read it.
+     */
+    private void assertSameHand(String input) {
+        Hand expected = new Hand(Interpreter.interpret(input));
+        Hand actual = new Hand(Interpreter.interpret(input));
+        he.evaluate(expected);
+        cache.evaluate(actual);
+        assertEquals(input, expected.getHandType(), actual.getHandType());
+        assertEquals(input, expected.getStrength(), actual.getStrength());
+        assertEquals(input, expected.getImportantCards(), actual.getImportantCards());
+        assertEquals(input, expected.getSecondImportantCards(), actual.getSecondImportantCards());
+    }
+
+    /**
+     * Test method for {@link com.mishmash.rally.CachingEvaluator#evaluate(com.mishmash.rally.Hand)}.
+     */
+    @Test
+    public void testEvaluate() {
+        assertSameHand("as, ah, 3c, 3d, 2h");
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        
+        // The same hand with its suits swapped around is a hit.
+        assertSameHand("ad, ac, 3s, 3h, 2c");
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        
+        String[] inputs = { "w", "8c", "w, 2c", "w, ah, jd, 10h, 10c, 9h", "w, 10h, 8h, 7h, 5h, 4h",
+                "kh, kd, 7s, 6h, 5d, 4c, 3s, 2s, 2h", "w, 8s, 8d, 7d, 7c, 6d, 6c",
+                "as, ks, qs, js, 10s, 9s, 8s, ah, kh, qh, jh, 10h",
+                "w, 10s, 8s, 7s, 5s, 4s, 8h, 7h, 5h, 4h", "9s, 8s, 7s, 6s, 5s, 9h, 8h, 7h, 6h, 5h, 2h" };
+        for (String input : inputs) {
+            assertSameHand(input);
+            // A second time round, every hand comes from the cache.
+            assertSameHand(input);
+        }
+        assertEquals(1 + inputs.length, cache.getHitCount());
+        
+        // Invalid hands are left alone, and never looked up.
+        Hand invalid = new Hand(Interpreter.interpret("as, as"));
+        cache.evaluate(invalid);
+        assertTrue(invalid.getImportantCards().isEmpty());
+        assertEquals(1 + inputs.length, cache.getMissCount());
+    }
+    
+    /**
+     * Test method for {@link com.mishmash.rally.CachingEvaluator#getValue(long)}.
+     */
+    @Test
+    public void testGetValue() {
+        Random random = new Random(9);
+        for (int i = 0; i < 2000; ++i) {
+            int size = 1 + random.nextInt(10);
+            long set = CardSet.EMPTY;
+            while (CardSet.size(set) < size) {
+                set |= 1L << random.nextInt(CardSet.ORDINAL_COUNT);
+            }
+            Hand expected = CardSet.toHand(set);
+            he.evaluate(expected);
+            assertEquals(expected.getStrength(), cache.getValue(set));
+            assertEquals(expected.getStrength(), cache.getValue(set));
+        }
+        assertEquals(HandValue.INVALID_VALUE, cache.getValue(CardSet.EMPTY));
+        assertEquals(HandValue.INVALID_VALUE, cache.getValue(CardSet.FULL_DECK + 1));
+    }
+    
+    /**
+     * The cache should never hold more than its capacity, and should keep the hands it
+     * used most recently.
+     */
+    @Test
+    public void testBounded() {
+        long kept = CardSet.of(Interpreter.interpret("as, ah"));
+        cache.getValue(kept);
+        for (int value = Card.MIN_CARD_VALUE; value <= Card.MAX_CARD_VALUE; ++value) {
+            for (int other = Card.MIN_CARD_VALUE; other <= Card.MAX_CARD_VALUE; ++other) {
+                cache.getValue(CardSet.of(Card.valueOf(value, Card.Suit.CLUBS)) 
+                        | CardSet.of(Card.valueOf(other, Card.Suit.DIAMONDS))
+                        | CardSet.of(Card.valueOf(other, Card.Suit.SPADES)));
+                // Keep this one in use.
+                cache.getValue(kept);
+                assertTrue(cache.size() <= cache.getCapacity());
+            }
+        }
+        long hits = cache.getHitCount();
+        cache.getValue(kept);
+        assertEquals(hits + 1, cache.getHitCount());
+        
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        
+        try {
+            new CachingEvaluator(0);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+    }
+
+}
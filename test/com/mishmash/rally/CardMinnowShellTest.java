@@ -0,0 +1,72 @@
+/**
+ *
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import com.mishmash.rally.CardMinnowShell;
+import com.mishmash.rally.Hand;
+import com.mishmash.rally.Interpreter;
+
+/**
+ * Tests the shell's batch mode, and the interactive shell running out of input.
+ *
+ * @author mrmcduff
+ *
+ */
+public class CardMinnowShellTest {
+
+    @Test
+    public void testBatch() throws Exception {
+        String input = "ah, kh, qh, jh, 10h\n\n2h 2h\nhelp\r\n  w  \nah:10d";
+        StringWriter output = new StringWriter();
+        assertEquals(6, new CardMinnowShell().runBatch(new StringReader(input), output));
+
+        String[] lines = output.toString().split("\n", -1);
+        assertEquals(7, lines.length);
+        assertEquals(new Hand(Interpreter.interpret("ah, kh, qh, jh, 10h")).getDescription(), lines[0]);
+        assertTrue(lines[1].startsWith("You have to write something"));
+        assertTrue(lines[2].startsWith("That's an invalid hand."));
+        assertEquals(Interpreter.parse("help").getErrorMessage(), lines[3]);
+        assertEquals(new Hand(Interpreter.interpret("w")).getDescription(), lines[4]);
+        assertEquals(Interpreter.parse("ah:10d").getErrorMessage(), lines[5]);
+        assertEquals("", lines[6]);
+    }
+
+    @Test
+    public void testBatchEmpty() throws Exception {
+        StringWriter output = new StringWriter();
+        assertEquals(0, new CardMinnowShell().runBatch(new StringReader(""), output));
+        assertEquals("", output.toString());
+    }
+
+    @Test
+    public void testShellEndOfInput() {
+        InputStream oldIn = System.in;
+        PrintStream oldOut = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            // No 'quit' at the end, so the shell has to stop when the input does.
+            System.setIn(new ByteArrayInputStream("2c 3c\n".getBytes()));
+            System.setOut(new PrintStream(output));
+            new CardMinnowShell().runShell();
+        } finally {
+            System.setIn(oldIn);
+            System.setOut(oldOut);
+        }
+        String text = output.toString();
+        assertTrue(text.contains(new Hand(Interpreter.interpret("2c 3c")).getDescription()));
+        assertFalse(text.contains("IO Exception"));
+    }
+
+}
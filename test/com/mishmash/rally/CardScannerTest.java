@@ -0,0 +1,146 @@
+/**
+ *
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mishmash.rally.Card;
+import com.mishmash.rally.CardScanner;
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.Interpreter;
+
+/**
+ * Tests reading lines of cards with the scanner.
+ *
+ * @author mrmcduff
+ *
+ */
+public class CardScannerTest {
+
+    private CardScanner scanner;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        scanner = new CardScanner();
+    }
+
+    /**
+     * Gets the message that the regular expression path (tokenize, getBadFormatTokens and
+     * convertStringsToCards) gives for a line, which the scanner has to match.
+     *
+     * @param line
+     * The line to read.
+     *
+     * @return
+     * The message, or null if the line reads without one.
+     */
+    private static String getOldMessage(String line) {
+        String[] tokens = Interpreter.tokenize(line);
+        java.util.List<String> badTokens = Interpreter.getBadFormatTokens(tokens);
+        try {
+            if (badTokens.isEmpty()) {
+                Interpreter.convertStringsToCards(tokens, badTokens);
+            }
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        return badTokens.isEmpty() ? null : Interpreter.getErrorString(badTokens);
+    }
+
+    @Test
+    public void testScan() {
+        assertTrue(scanner.scan("10h, 11s, AD; 2h      3c"));
+        assertEquals(5, scanner.getCardCount());
+        assertEquals(Card.valueOf(10, Card.Suit.HEARTS).getOrdinal(), scanner.getOrdinal(0));
+        assertEquals(Card.valueOf(11, Card.Suit.SPADES).getOrdinal(), scanner.getOrdinal(1));
+        assertEquals(Card.valueOf(14, Card.Suit.DIAMONDS).getOrdinal(), scanner.getOrdinal(2));
+        assertEquals(Card.valueOf(2, Card.Suit.HEARTS).getOrdinal(), scanner.getOrdinal(3));
+        assertEquals(Card.valueOf(3, Card.Suit.CLUBS).getOrdinal(), scanner.getOrdinal(4));
+        assertEquals(CardSet.of(Interpreter.convertStringsToCards(
+                new String[] { "10h", "11s", "ad", "2h", "3c" }, new java.util.ArrayList<String>())),
+                scanner.getCardSet());
+        assertFalse(scanner.hasDuplicates());
+        assertNull(scanner.getErrorMessage());
+
+        assertTrue(scanner.scan("2h;2s,,,,,,w, 10W, kw"));
+        assertEquals(5, scanner.getCardCount());
+        assertEquals(Card.JOKER_ORDINAL, scanner.getOrdinal(4));
+        assertTrue(scanner.hasDuplicates());
+        assertEquals(Arrays.asList(Card.valueOf(2, Card.Suit.HEARTS), Card.valueOf(2, Card.Suit.SPADES),
+                Card.joker(), Card.joker(), Card.joker()), scanner.getCards());
+
+        try {
+            scanner.getOrdinal(5);
+            fail("Failed to throw an exception when expected");
+        } catch (IndexOutOfBoundsException e) {
+            assertTrue("Threw the right type of exception", true);
+        }
+    }
+
+    @Test
+    public void testBadTokens() {
+        String line = "Ah, 15h, a h, 99999999999s";
+        assertFalse(scanner.scan(line));
+        // The space splits "a h" in two, and neither half looks like a card.
+        assertEquals(4, scanner.getBadTokenCount());
+        assertEquals(CardScanner.BAD_VALUE, scanner.getBadTokenKind(0));
+        assertEquals("15h", line.substring(scanner.getBadTokenStart(0), scanner.getBadTokenEnd(0)));
+        assertEquals(CardScanner.BAD_FORMAT, scanner.getBadTokenKind(1));
+        assertEquals("a", line.substring(scanner.getBadTokenStart(1), scanner.getBadTokenEnd(1)));
+        assertEquals(CardScanner.BAD_FORMAT, scanner.getBadTokenKind(2));
+        assertEquals(CardScanner.BAD_NUMBER, scanner.getBadTokenKind(3));
+        // The good card is still there.
+        assertEquals(1, scanner.getCardCount());
+        assertEquals(Interpreter.ERROR_POLITE + "'a' or 'h'.", scanner.getErrorMessage());
+
+        // Reading another line forgets the last one.
+        assertTrue(scanner.scan("w"));
+        assertEquals(0, scanner.getBadTokenCount());
+        assertEquals(1, scanner.getCardCount());
+    }
+
+    @Test
+    public void testSameMessages() {
+        String[] lines = { "Ace of hearts, ten of diamonds", "a h 10 d", "ah:10d", "92h",
+                "15h, 1s, 2h", "2147483647s", "2147483648s", "15h, 99999999999s, 1d, 99999999999c",
+                "99999999999w", "", "   ", ";2h", ";;", ",,2h, 3h", "2h, 3h;", "0002h, 14s",
+                "\u00012h", "2h\u0001", "k, ks, kw, kk" };
+        for (String line : lines) {
+            boolean read = scanner.scan(line);
+            String expected = getOldMessage(line);
+            assertEquals(line, expected == null, read);
+            assertEquals(line, expected, scanner.getErrorMessage());
+        }
+    }
+
+    @Test
+    public void testLongSeparatorRuns() {
+        StringBuilder sb = new StringBuilder("2h");
+        for (int i = 0; i < 100000; ++i) {
+            sb.append(" ,;\t".charAt(i % 4));
+        }
+        sb.append("3h");
+        assertTrue(scanner.scan(sb));
+        assertEquals(2, scanner.getCardCount());
+
+        // Enough cards to grow the buffers, duplicates and all.
+        sb = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            sb.append("ah ").append(i).append("x ");
+        }
+        assertFalse(scanner.scan(sb));
+        assertEquals(1000, scanner.getCardCount());
+        assertEquals(1000, scanner.getBadTokenCount());
+        assertTrue(scanner.hasDuplicates());
+    }
+
+}
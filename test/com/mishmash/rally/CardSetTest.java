@@ -0,0 +1,98 @@
+/**
+ * 
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.mishmash.rally.Card;
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.CardUtils;
+import com.mishmash.rally.Interpreter;
+
+/**
+ * Tests the bitmask card set helpers.
+ * 
+ * @author mrmcduff
+ *
+ */
+public class CardSetTest {
+
+    /**
+     * Test method for {@link com.mishmash.rally.CardSet#ordinal(com.mishmash.rally.Card)}.
+     */
+    @Test
+    public void testOrdinal() {
+        assertEquals(0, CardSet.ordinal(new Card(2, Card.Suit.CLUBS)));
+        assertEquals(12, CardSet.ordinal(new Card(14, Card.Suit.CLUBS)));
+        assertEquals(51, CardSet.ordinal(new Card(14, Card.Suit.SPADES)));
+        assertEquals(CardSet.JOKER_ORDINAL, CardSet.ordinal(new Card(7, Card.Suit.JOKER)));
+        Card bad = new Card();
+        bad.setSuit(Card.Suit.HEARTS);
+        assertEquals(CardSet.INVALID_ORDINAL, CardSet.ordinal(bad));
+        
+        // Every ordinal should round trip.
+        for (int ordinal = 0; ordinal < CardSet.ORDINAL_COUNT; ++ordinal) {
+            assertEquals(ordinal, CardSet.ordinal(CardSet.getCard(ordinal)));
+        }
+    }
+    
+    /**
+     * Test method for {@link com.mishmash.rally.CardSet#of(java.util.List)}.
+     */
+    @Test
+    public void testOf() {
+        List<Card> deck = CardUtils.getWholeDeck();
+        assertEquals(CardSet.NATURAL_DECK, CardSet.of(deck));
+        
+        // Duplicates only count once.
+        long set = CardSet.of(Interpreter.interpret("ah, ah, w, 9c"));
+        assertEquals(3, CardSet.size(set));
+        assertTrue(CardSet.containsJoker(set));
+        assertTrue(CardSet.contains(set, new Card(9, Card.Suit.CLUBS)));
+        assertFalse(CardSet.contains(set, new Card(9, Card.Suit.SPADES)));
+    }
+    
+    /**
+     * Test method for {@link com.mishmash.rally.CardSet#toCards(long)}.
+     */
+    @Test
+    public void testToCards() {
+        List<Card> sorted = Interpreter.interpret("w, as, ah, 10d, 9s, 2c");
+        assertEquals(sorted, CardSet.toCards(CardSet.of(Interpreter.interpret("2c, 9s, ah, w, 10d, as"))));
+        assertEquals(CardUtils.getWholeDeck(), CardSet.toCards(CardSet.NATURAL_DECK));
+        assertEquals(0, CardSet.toCards(CardSet.EMPTY).size());
+    }
+    
+    /**
+     * Tests combining sets and dealing cards out of them.
+     */
+    @Test
+    public void testSetOperations() {
+        long hole = CardSet.of(Interpreter.interpret("ah, kh"));
+        long board = CardSet.of(Interpreter.interpret("qh, jh, 10h"));
+        long both = CardSet.union(hole, board);
+        assertEquals(5, CardSet.size(both));
+        assertTrue(CardSet.isDisjoint(hole, board));
+        assertEquals(hole, CardSet.intersection(both, hole));
+        
+        long deck = CardSet.remove(CardSet.FULL_DECK, both);
+        assertEquals(48, CardSet.size(deck));
+        assertFalse(CardSet.contains(deck, new Card(14, Card.Suit.HEARTS)));
+        
+        assertEquals(Integer.parseInt("1111100000000", 2), CardSet.getSuitMask(both, Card.Suit.HEARTS));
+        assertEquals(0, CardSet.getSuitMask(both, Card.Suit.SPADES));
+        
+        int count = 0;
+        for (long rest = both; rest != 0; rest = CardSet.withoutFirst(rest)) {
+            assertTrue(CardSet.getSuit(CardSet.firstOrdinal(rest)) == Card.Suit.HEARTS);
+            ++count;
+        }
+        assertEquals(5, count);
+    }
+
+}
@@ -177,4 +177,85 @@ public class CardTest {
         assertFalse(c3.equals(j2));
     }
 
+    /**
+     * Test method for {@link com.mishmash.rally.Card#valueOf(int, Card.Suit)}.
+     */
+    @Test
+    public void testValueOf() {
+        Card fiveClubs = Card.valueOf(5, Card.Suit.CLUBS);
+        assertSame(fiveClubs, Card.valueOf(5, Card.Suit.CLUBS));
+        assertEquals(new Card(5, Card.Suit.CLUBS), fiveClubs);
+        assertEquals(new Card(5, Card.Suit.CLUBS).hashCode(), fiveClubs.hashCode());
+        assertSame(Card.joker(), Card.valueOf(9, Card.Suit.JOKER));
+        assertSame(fiveClubs, Card.fromOrdinal(fiveClubs.getOrdinal()));
+        
+        try {
+            Card.valueOf(15, Card.Suit.HEARTS);
+            fail("There is no fifteen of hearts.");
+        } catch (IllegalArgumentException iae) {
+            // Expected.
+        }
+    }
+    
+    /**
+     * Test method for {@link com.mishmash.rally.Card#getOrdinal()}.
+     */
+    @Test
+    public void testGetOrdinal() {
+        for (int ordinal = 0; ordinal < Card.ORDINAL_COUNT; ++ordinal) {
+            Card card = Card.fromOrdinal(ordinal);
+            assertEquals(ordinal, card.getOrdinal());
+            assertTrue(card.isCanonical());
+            assertTrue(card.isValid());
+        }
+        assertEquals(0, new Card(2, Card.Suit.CLUBS).getOrdinal());
+        assertEquals(Card.JOKER_ORDINAL - 1, new Card(14, Card.Suit.SPADES).getOrdinal());
+        assertEquals(Card.JOKER_ORDINAL, new Card().getOrdinal());
+        
+        Card unset = new Card();
+        unset.setSuit(Card.Suit.HEARTS);
+        assertEquals(Card.INVALID_ORDINAL, unset.getOrdinal());
+        unset.setValue(3);
+        assertEquals(Card.valueOf(3, Card.Suit.HEARTS).getOrdinal(), unset.getOrdinal());
+    }
+    
+    /**
+     * Canonical cards are shared, so they can't be changed.
+     */
+    @Test
+    public void testCanonicalCardsCantChange() {
+        Card ace = Card.valueOf(14, Card.Suit.SPADES);
+        try {
+            ace.setValue(2);
+            fail("Changed a canonical card's value.");
+        } catch (UnsupportedOperationException uoe) {
+            // Expected.
+        }
+        try {
+            ace.setSuit(Card.Suit.HEARTS);
+            fail("Changed a canonical card's suit.");
+        } catch (UnsupportedOperationException uoe) {
+            // Expected.
+        }
+        assertEquals(new Card(14, Card.Suit.SPADES), ace);
+        assertFalse(new Card(14, Card.Suit.SPADES).isCanonical());
+    }
+    
+    /**
+     * Canonical cards sort the same way as any other cards.
+     */
+    @Test
+    public void testCompareToCanonical() {
+        Card twoClubs = Card.valueOf(2, Card.Suit.CLUBS);
+        Card twoSpades = Card.valueOf(2, Card.Suit.SPADES);
+        Card aceClubs = Card.valueOf(14, Card.Suit.CLUBS);
+        
+        assertTrue(twoClubs.compareTo(twoSpades) < 0);
+        assertTrue(aceClubs.compareTo(twoSpades) > 0);
+        assertTrue(Card.joker().compareTo(Card.valueOf(14, Card.Suit.SPADES)) > 0);
+        assertTrue(aceClubs.compareTo(Card.joker()) < 0);
+        assertEquals(0, Card.joker().compareTo(new Card(7, Card.Suit.JOKER)));
+        assertEquals(0, aceClubs.compareTo(new Card(14, Card.Suit.CLUBS)));
+    }
+
 }
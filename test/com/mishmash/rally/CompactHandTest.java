@@ -0,0 +1,105 @@
+/**
+ * 
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.CompactHand;
+import com.mishmash.rally.Hand;
+import com.mishmash.rally.Interpreter;
+
+/**
+ * Tests that a CompactHand answers everything the same way a Hand does.
+ * 
+ * @author mrmcduff
+ *
+ */
+public class CompactHandTest {
+    
+    /**
+     * Checks a compact hand against a Hand holding the same cards.
+     * 
+     * @param expected
+     * The Hand.
+     * 
+     * @param actual
+     * The CompactHand.
+     */
+    private void assertSameHand(Hand expected, CompactHand actual) {
+        String message = expected.getCards().toString();
+        assertEquals(message, expected.isValid(), actual.isValid());
+        assertEquals(message, expected.getHandType(), actual.getHandType());
+        assertEquals(message, expected.getStrength(), actual.getStrength());
+        assertEquals(message, expected.getImportantCards(), actual.getImportantCards());
+        assertEquals(message, expected.getSecondImportantCards(), actual.getSecondImportantCards());
+        if (expected.isValid()) {
+            assertEquals(message, expected.getDescription(), actual.getDescription());
+        }
+    }
+
+    /**
+     * Test method for {@link com.mishmash.rally.CompactHand#getImportantCards()}.
+     */
+    @Test
+    public void testMatchesHand() {
+        String[] inputs = { "w", "8c", "w, 2c", "as, 3c, 3s, 2h, 2d", "w, ah, jd, 10h, 10c, 9h",
+                "kh, kd, 7s, 6h, 5d, 4c, 3s, 2s, 2h", "w, As, 7s, 6h, 5d, 4c, 3s, 2s, 2h",
+                "w, 8s, 8d, 7d, 7c, 6d, 6c", "w, 4s, 4h, 4d, kc, kd, ks", "w, 2s, 2h, 2d, 2c",
+                "as, ks, qs, js, 10s, 9s, 8s, ah, kh, qh, jh, 10h",
+                "w, 10s, 8s, 7s, 5s, 4s, 8h, 7h, 5h, 4h" };
+        for (String input : inputs) {
+            assertSameHand(new Hand(Interpreter.interpret(input)), 
+                    new CompactHand(Interpreter.interpret(input)));
+        }
+        
+        Random random = new Random(3);
+        for (int i = 0; i < 5000; ++i) {
+            int size = 1 + random.nextInt(CardSet.ORDINAL_COUNT);
+            long set = CardSet.EMPTY;
+            while (CardSet.size(set) < size) {
+                set |= 1L << random.nextInt(CardSet.ORDINAL_COUNT);
+            }
+            assertSameHand(CardSet.toHand(set), new CompactHand(set));
+        }
+    }
+    
+    /**
+     * Invalid hands should behave like invalid Hands.
+     */
+    @Test
+    public void testInvalidHands() {
+        CompactHand duplicates = new CompactHand(Interpreter.interpret("as, as, 3c"));
+        assertFalse(duplicates.isValid());
+        assertEquals(Hand.HandType.HIGH_CARD, duplicates.getHandType());
+        assertEquals(HandValue.INVALID_VALUE, duplicates.getStrength());
+        assertTrue(duplicates.getImportantCards().isEmpty());
+        try {
+            duplicates.getDescription();
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalStateException ise) {
+            assertTrue("Threw the right type of exception", true);
+        }
+        assertFalse(new CompactHand(CardSet.EMPTY).isValid());
+    }
+    
+    /**
+     * Test method for {@link com.mishmash.rally.CompactHand#toHand()}.
+     */
+    @Test
+    public void testToHand() {
+        CompactHand compact = new CompactHand(Interpreter.interpret("w, 9h, 7h, 6h, 2h, 9c"));
+        assertEquals(compact, new CompactHand(CardSet.of(Interpreter.interpret("9c, 2h, 6h, 7h, w, 9h"))));
+        assertEquals(compact.hashCode(), new CompactHand(compact.getCardSet()).hashCode());
+        Hand hand = compact.toHand();
+        assertEquals(Hand.HandType.FLUSH, hand.getHandType());
+        assertEquals(compact.getImportantCards(), hand.getImportantCards());
+        assertEquals(compact.getDescription(), hand.getDescription());
+    }
+
+}
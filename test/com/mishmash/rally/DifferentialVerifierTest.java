@@ -0,0 +1,122 @@
+/**
+ *
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.mishmash.rally.DifferentialVerifier;
+import com.mishmash.rally.Evaluator;
+import com.mishmash.rally.EvaluatorSelector;
+import com.mishmash.rally.Hand;
+import com.mishmash.rally.HandValue;
+
+/**
+ * Tests checking engines against the reference on every hand of a size.
+ *
+ * @author mrmcduff
+ *
+ */
+public class DifferentialVerifierTest {
+
+    /**
+     * An engine that gets every pair wrong, by scoring it as high card.
+     */
+    private static final Evaluator BROKEN = new Evaluator() {
+        @Override
+        public String getName() {
+            return "broken";
+        }
+
+        @Override
+        public boolean supports(int handSize, int wildCount) {
+            return EvaluatorSelector.BITMASK.supports(handSize, wildCount);
+        }
+
+        @Override
+        public void evaluate(Hand hand) {
+            EvaluatorSelector.BITMASK.evaluate(hand);
+        }
+
+        @Override
+        public int getValue(long cards) {
+            int value = EvaluatorSelector.BITMASK.getValue(cards);
+            if (HandValue.getHandType(value) == Hand.HandType.PAIR) {
+                return HandValue.valueOf(Hand.HandType.HIGH_CARD, new int[0], 0);
+            }
+            return value;
+        }
+    };
+
+    @Test
+    public void testEveryEngineAgrees() {
+        DifferentialVerifier verifier = new DifferentialVerifier();
+
+        DifferentialVerifier.Report report = verifier.verify(3, false);
+        assertEquals(22100, report.getHandCount());
+        assertEquals(0, report.getTotalMismatchCount());
+        // The five card table doesn't take three cards.
+        assertFalse(report.getEngines().contains(EvaluatorSelector.FIVE_CARD));
+        assertTrue(report.getEngines().contains(EvaluatorSelector.BITMASK));
+
+        report = verifier.verify(5, true);
+        assertEquals(270725, report.getHandCount());
+        assertEquals(0, report.getTotalMismatchCount());
+        assertTrue(report.getEngines().contains(EvaluatorSelector.FIVE_CARD));
+        for (int i = 0; i < report.getEngines().size(); ++i) {
+            assertTrue(report.getHandsPerSecond(i) > 0);
+        }
+
+        report = verifier.verify(1, true);
+        assertEquals(1, report.getHandCount());
+        assertEquals(0, report.getTotalMismatchCount());
+    }
+
+    @Test
+    public void testFindsMismatches() {
+        DifferentialVerifier verifier = new DifferentialVerifier(
+                Arrays.asList(EvaluatorSelector.BITMASK, BROKEN), 2);
+        DifferentialVerifier.Report report = verifier.verify(2, false);
+        assertEquals(1326, report.getHandCount());
+        assertEquals(0, report.getMismatchCount(0));
+        // Thirteen values, six pairs of each.
+        assertEquals(78, report.getMismatchCount(1));
+        assertEquals(DifferentialVerifier.MAX_EXAMPLES, report.getExamples(1).size());
+        assertTrue(report.toString().contains("broken"));
+    }
+
+    @Test
+    public void testInvalid() {
+        DifferentialVerifier verifier = new DifferentialVerifier();
+        try {
+            verifier.verify(0, false);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException e) {
+            assertTrue("Threw the right type of exception", true);
+        }
+        try {
+            verifier.verify(53, false);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException e) {
+            assertTrue("Threw the right type of exception", true);
+        }
+        try {
+            new DifferentialVerifier(Collections.<Evaluator>emptyList(), 1);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException e) {
+            assertTrue("Threw the right type of exception", true);
+        }
+        try {
+            new DifferentialVerifier(Arrays.<Evaluator>asList(EvaluatorSelector.BITMASK), 0);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException e) {
+            assertTrue("Threw the right type of exception", true);
+        }
+    }
+
+}
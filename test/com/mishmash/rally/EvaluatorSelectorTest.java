@@ -0,0 +1,159 @@
+/**
+ *
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.Evaluator;
+import com.mishmash.rally.EvaluatorSelector;
+import com.mishmash.rally.Hand;
+import com.mishmash.rally.HandValue;
+import com.mishmash.rally.Interpreter;
+
+/**
+ * Tests picking evaluation engines, and that every engine agrees with the reference.
+ *
+ * @author mrmcduff
+ *
+ */
+public class EvaluatorSelectorTest {
+
+    private static final int HANDS_PER_SIZE = 2000;
+
+    private Random random;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        random = new Random(17);
+    }
+
+    /**
+     * Deals a random hand.
+     *
+     * @param size
+     * The number of cards, which may include the joker.
+     *
+     * @return
+     * The CardSet of the hand.
+     */
+    private long deal(int size) {
+        long cards = CardSet.EMPTY;
+        while (CardSet.size(cards) < size) {
+            cards |= 1L << random.nextInt(CardSet.ORDINAL_COUNT);
+        }
+        return cards;
+    }
+
+    @Test
+    public void testSelect() {
+        if (EvaluatorSelector.getForced() != null) {
+            // Somebody forced an engine for the whole run, so the defaults don't apply.
+            return;
+        }
+        assertSame(EvaluatorSelector.FIVE_CARD, EvaluatorSelector.select(5, 0));
+        assertSame(EvaluatorSelector.FIVE_CARD, EvaluatorSelector.select(5, 1));
+        assertSame(EvaluatorSelector.BITMASK, EvaluatorSelector.select(3, 0));
+        assertSame(EvaluatorSelector.BITMASK, EvaluatorSelector.select(13, 1));
+        assertSame(EvaluatorSelector.BITMASK, EvaluatorSelector.select(53, 1));
+        assertSame(EvaluatorSelector.WILD, EvaluatorSelector.select(5, 2));
+        assertSame(EvaluatorSelector.WILD, EvaluatorSelector.select(7, 4));
+
+        Evaluator seven = EvaluatorSelector.select(7, 0);
+        assertTrue(seven == EvaluatorSelector.SEVEN_CARD || seven == EvaluatorSelector.BITMASK);
+        assertSame(EvaluatorSelector.FIVE_CARD,
+                EvaluatorSelector.select(new Hand(Interpreter.interpret("2h, 3h, 4h, 5h, w"))));
+
+        try {
+            EvaluatorSelector.select(0, 0);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException e) {
+            assertTrue("Threw the right type of exception", true);
+        }
+    }
+
+    @Test
+    public void testForced() {
+        assertSame(EvaluatorSelector.REFERENCE,
+                EvaluatorSelector.select(5, 0, EvaluatorSelector.REFERENCE));
+        assertSame(EvaluatorSelector.BITMASK,
+                EvaluatorSelector.select(5, 0, EvaluatorSelector.BITMASK));
+        // The five card table can't take seven cards, so the reference does.
+        assertSame(EvaluatorSelector.REFERENCE,
+                EvaluatorSelector.select(7, 0, EvaluatorSelector.FIVE_CARD));
+        // Nothing but the wild card evaluator takes two wild cards.
+        assertSame(EvaluatorSelector.WILD,
+                EvaluatorSelector.select(5, 2, EvaluatorSelector.FIVE_CARD));
+    }
+
+    @Test
+    public void testForName() {
+        assertSame(EvaluatorSelector.REFERENCE, EvaluatorSelector.forName("reference"));
+        assertSame(EvaluatorSelector.FIVE_CARD, EvaluatorSelector.forName(" Five-Card "));
+        assertSame(EvaluatorSelector.SEVEN_CARD, EvaluatorSelector.forName("seven-card"));
+        assertSame(EvaluatorSelector.BITMASK, EvaluatorSelector.forName("BITMASK"));
+        assertSame(EvaluatorSelector.WILD, EvaluatorSelector.forName("wild"));
+
+        try {
+            EvaluatorSelector.forName("fastest");
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException e) {
+            assertTrue("Threw the right type of exception", true);
+        }
+    }
+
+    /**
+     * A bad property value has to be ignored rather than thrown, since it's read while the
+     * class is loading.
+     */
+    @Test
+    public void testForcedProperty() {
+        assertSame(EvaluatorSelector.BITMASK, EvaluatorSelector.getForced("bitmask"));
+        assertNull(EvaluatorSelector.getForced(null));
+        assertNull(EvaluatorSelector.getForced(" "));
+        PrintStream oldErr = System.err;
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        try {
+            System.setErr(new PrintStream(err));
+            assertNull(EvaluatorSelector.getForced("fastest"));
+        } finally {
+            System.setErr(oldErr);
+        }
+        assertTrue(err.toString().contains("'fastest'"));
+    }
+
+    @Test
+    public void testEnginesAgree() {
+        Evaluator[] engines = { EvaluatorSelector.FIVE_CARD, EvaluatorSelector.BITMASK,
+                EvaluatorSelector.WILD };
+        int[] sizes = { 1, 3, 5, 7, 9, 13, 53 };
+        for (int size : sizes) {
+            for (int i = 0; i < HANDS_PER_SIZE; ++i) {
+                long cards = deal(size);
+                int expected = EvaluatorSelector.REFERENCE.getValue(cards);
+                int wildCount = CardSet.containsJoker(cards) ? 1 : 0;
+                for (Evaluator engine : engines) {
+                    if (engine.supports(size, wildCount)) {
+                        assertEquals(engine.getName() + " on " + CardSet.toCards(cards),
+                                expected, engine.getValue(cards));
+                    }
+                }
+                Hand hand = CardSet.toHand(cards);
+                assertEquals(expected, hand.getStrength());
+                assertEquals(HandValue.getHandType(expected), hand.getHandType());
+            }
+        }
+    }
+
+}
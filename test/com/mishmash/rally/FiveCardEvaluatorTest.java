@@ -0,0 +1,124 @@
+/**
+ * 
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mishmash.rally.Card;
+import com.mishmash.rally.CardUtils;
+import com.mishmash.rally.FiveCardEvaluator;
+import com.mishmash.rally.Hand;
+import com.mishmash.rally.HandEvaluator;
+import com.mishmash.rally.Interpreter;
+
+/**
+ * Tests the table-driven five card evaluator against the original HandEvaluator.
+ * 
+ * @author mrmcduff
+ *
+ */
+public class FiveCardEvaluatorTest {
+    
+    private FiveCardEvaluator fce;
+    private HandEvaluator he;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        fce = new FiveCardEvaluator();
+        he = new HandEvaluator();
+    }
+
+    /**
+     * Every kind of hand should come out of the tables with the same type and the same
+     * important cards as HandEvaluator gives it.
+     * 
+     * Test method for {@link com.mishmash.rally.FiveCardEvaluator#evaluate(com.mishmash.rally.Hand)}.
+     */
+    @Test
+    public void testEvaluateMatchesHandEvaluator() {
+        String[] inputs = { "8c, 2d, 5h, jd, 9s", "w, 2c, 5h, 9d, kc", "as, 3c, 3s, 2h, 2d",
+                "w, ah, jd, 10h, 10c", "7s, 6h, 5d, 4c, 3s", "w, js, 9d, 8c, 7h",
+                "w, as, 7s, 3s, 2s", "kh, 9h, 7h, 4h, 2h", "w, 8s, 8d, 7d, 7c", "as, ah, ad, 2s, 2h",
+                "w, 4s, 4h, 4d, kc", "4s, 4h, 4d, 4c, 3h", "w, ks, qs, js, 10s", "as, ks, qs, js, 10s",
+                "w, 2s, 2h, 2d, 2c", "w, ah, ks, qd, 5c" };
+        for (String input : inputs) {
+            Hand expected = new Hand(Interpreter.interpret(input));
+            Hand actual = new Hand(Interpreter.interpret(input));
+            he.evaluate(expected);
+            fce.evaluate(actual);
+            assertEquals(input, expected.getHandType(), actual.getHandType());
+            assertEquals(input, expected.getImportantCards(), actual.getImportantCards());
+            assertEquals(input, expected.getSecondImportantCards(), actual.getSecondImportantCards());
+            assertEquals(input, expected.getDescription(), actual.getDescription());
+        }
+    }
+    
+    /**
+     * Hands of other sizes are handed off to HandEvaluator, and bad hands are left alone.
+     */
+    @Test
+    public void testOtherHands() {
+        Hand sevenCards = new Hand(Interpreter.interpret("w, as, ah, 7s, 6s, 5s, 4s"));
+        fce.evaluate(sevenCards);
+        assertEquals(Hand.HandType.STRAIGHT_FLUSH, sevenCards.getHandType());
+        
+        Hand duplicates = new Hand(Interpreter.interpret("as, as, 3c, 4d, 5h"));
+        fce.evaluate(duplicates);
+        assertEquals(0, duplicates.getImportantCards().size());
+        assertEquals(FiveCardEvaluator.INVALID_VALUE, fce.getValue(Interpreter.interpret("w, w, 3c, 4d, 5h")));
+        
+        try {
+            fce.getValue(Interpreter.interpret("as, 3c"));
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+    }
+
+    /**
+     * Walks through every five card hand from a single deck and makes sure we land on
+     * exactly 7,462 different values.
+     * 
+     * Test method for {@link com.mishmash.rally.FiveCardEvaluator#getValue(java.util.List)}.
+     */
+    @Test
+    public void testEquivalenceClasses() {
+        List<Card> deck = CardUtils.getWholeDeck();
+        Set<Integer> values = new HashSet<Integer>();
+        List<Card> hand = new ArrayList<Card>();
+        for (int i = 0; i < 5; ++i) {
+            hand.add(null);
+        }
+        int n = deck.size();
+        for (int a = 0; a < n; ++a) {
+            hand.set(0, deck.get(a));
+            for (int b = a + 1; b < n; ++b) {
+                hand.set(1, deck.get(b));
+                for (int c = b + 1; c < n; ++c) {
+                    hand.set(2, deck.get(c));
+                    for (int d = c + 1; d < n; ++d) {
+                        hand.set(3, deck.get(d));
+                        for (int e = d + 1; e < n; ++e) {
+                            hand.set(4, deck.get(e));
+                            values.add(Integer.valueOf(fce.getValue(hand)));
+                        }
+                    }
+                }
+            }
+        }
+        assertEquals(7462, values.size());
+    }
+
+}
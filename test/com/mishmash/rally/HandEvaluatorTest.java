@@ -222,7 +222,26 @@ public class HandEvaluatorTest {
         assertEquals(0, testHand.straightLists.size());
         assertEquals(0, testHand.flushLists.size());
     }
-    
+
+    /**
+     * Test method for the value and suit counts built by
+     * {@link com.mishmash.rally.HandEvaluator#sortHand(com.mishmash.rally.Hand)}.
+     */
+    @Test
+    public void testSortCounts() {
+        HandEvaluator.SimplifiedHand testHand =
+                he.sortHand(new Hand(Interpreter.interpret("w, as, ah, 7h, 2h, 2c, 2d")));
+        assertTrue(testHand.hasJoker);
+        assertArrayEquals(new int[] { 3, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 2 }, testHand.rankCounts);
+        assertArrayEquals(new int[] { 1, 1, 3, 1 }, testHand.suitCounts);
+
+        // The lists still come out highest first.
+        assertArrayEquals(Interpreter.interpret("ah, 7h, 2h").toArray(),
+                testHand.flushLists.get(Card.Suit.HEARTS).toArray());
+        assertArrayEquals(Interpreter.interpret("2h, 2d, 2c").toArray(),
+                testHand.pairLists.get(Integer.valueOf(2)).toArray());
+    }
+
     /**
      * Sorts a pretty complicated hand. This is a bit of an edge case.
      */
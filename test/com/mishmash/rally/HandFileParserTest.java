@@ -0,0 +1,179 @@
+/**
+ *
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mishmash.rally.CardScanner;
+import com.mishmash.rally.HandFileParser;
+import com.mishmash.rally.Interpreter;
+import com.mishmash.rally.ParseResult;
+
+/**
+ * Tests parsing files of hands straight from their bytes.
+ *
+ * @author mrmcduff
+ *
+ */
+public class HandFileParserTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final String[] LINES = { "ah, kh, qh, jh, 10h", "2c 3c;4c", "w", "15h, 2s",
+            "ah:10d", "", "  7d 7s 7h\r", "2h 2h", ";3s", "k, ks" };
+
+    private String text;
+
+    /**
+     * Collects what each line turned into, by offset.
+     *
+     * @author mrmcduff
+     *
+     */
+    private static class Collector implements HandFileParser.LineHandler {
+        final Map<Long, String> lines = Collections.synchronizedMap(new TreeMap<Long, String>());
+
+        @Override
+        public void hand(long offset, long cards, int cardCount) {
+            lines.put(offset, cards + "/" + cardCount);
+        }
+
+        @Override
+        public void badLine(long offset, CardScanner scanner) {
+            lines.put(offset, scanner.getErrorMessage());
+        }
+    }
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int copy = 0; copy < 50; ++copy) {
+            for (String line : LINES) {
+                sb.append(line).append('\n');
+            }
+        }
+        text = sb.toString();
+    }
+
+    /**
+     * @return
+     * What every line of the text should turn into, by offset, as read by Interpreter.parse.
+     */
+    private Map<Long, String> getExpected() {
+        Map<Long, String> expected = new TreeMap<Long, String>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            ParseResult result = Interpreter.parse(text.substring(start, end));
+            expected.put((long) start, result.isSuccessful()
+                    ? result.getCardSet() + "/" + result.getCards().size() : result.getErrorMessage());
+            start = end + 1;
+        }
+        return expected;
+    }
+
+    @Test
+    public void testSplitAndParse() {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(ASCII));
+        for (int chunkCount : new int[] { 1, 2, 3, 7, 1000 }) {
+            List<HandFileParser.Chunk> chunks = HandFileParser.split(buffer, 0, chunkCount);
+            assertTrue(chunks.size() <= chunkCount);
+            long next = 0;
+            Collector collector = new Collector();
+            for (HandFileParser.Chunk chunk : chunks) {
+                // The chunks cover the text in order, and each ends with a whole line.
+                assertEquals(next, chunk.getOffset());
+                next += chunk.getSize();
+                assertEquals('\n', text.charAt((int) next - 1));
+                HandFileParser.parse(chunk, collector);
+            }
+            assertEquals(text.length(), next);
+            assertEquals(getExpected(), collector.lines);
+        }
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void testNoFinalNewLine() {
+        ByteBuffer buffer = ByteBuffer.wrap("2c\n3c".getBytes(ASCII));
+        Collector collector = new Collector();
+        for (HandFileParser.Chunk chunk : HandFileParser.split(buffer, 100, 2)) {
+            HandFileParser.parse(chunk, collector);
+        }
+        assertEquals(2, collector.lines.size());
+        assertTrue(collector.lines.containsKey(100L));
+        assertTrue(collector.lines.containsKey(103L));
+    }
+
+    @Test
+    public void testMapInParallel() throws Exception {
+        File file = File.createTempFile("hands", ".txt");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes(ASCII));
+        } finally {
+            out.close();
+        }
+
+        List<HandFileParser.Chunk> chunks = HandFileParser.map(file, 4);
+        assertEquals(4, chunks.size());
+        final Collector collector = new Collector();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (final HandFileParser.Chunk chunk : chunks) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        HandFileParser.parse(chunk, collector);
+                        return null;
+                    }
+                });
+            }
+            for (Future<Void> done : pool.invokeAll(tasks)) {
+                done.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(getExpected(), collector.lines);
+        assertTrue(file.delete() || !file.exists());
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        try {
+            HandFileParser.split(ByteBuffer.allocate(1), 0, 0);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException e) {
+            assertTrue("Threw the right type of exception", true);
+        }
+        File empty = File.createTempFile("empty", ".txt");
+        empty.deleteOnExit();
+        assertTrue(HandFileParser.map(empty, 3).isEmpty());
+    }
+
+}
@@ -0,0 +1,123 @@
+/**
+ *
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mishmash.rally.CardMinnowShell;
+import com.mishmash.rally.HandPipeline;
+
+/**
+ * Tests running batches of hands through the pipeline.
+ *
+ * @author mrmcduff
+ *
+ */
+public class HandPipelineTest {
+
+    private static final String[] TOKENS = { "2h", "3d", "10s", "jc", "qh", "kd", "as", "ah", "9h",
+            "8h", "7h", "6h", "5h", "4h", "w", "w", "2s", "2d", "2c", "15s", "x", "10" };
+
+    private String input;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        // Good hands, duplicates, bad tokens and blank lines, all mixed up.
+        Random random = new Random(25);
+        StringBuilder sb = new StringBuilder();
+        for (int line = 0; line < 3000; ++line) {
+            int size = random.nextInt(9);
+            for (int card = 0; card < size; ++card) {
+                sb.append(TOKENS[random.nextInt(TOKENS.length)]).append(random.nextBoolean() ? ", " : " ");
+            }
+            sb.append('\n');
+        }
+        input = sb.toString();
+    }
+
+    @Test
+    public void testSameAsBatch() throws IOException {
+        StringWriter expected = new StringWriter();
+        new CardMinnowShell().runBatch(new StringReader(input), expected);
+
+        int[][] shapes = { { 1, 1, 1, 1 }, { 2, 3, 7, 2 }, { 3, 4, 64, 16 }, { 1, 2, 5000, 1 } };
+        for (int[] shape : shapes) {
+            StringWriter output = new StringWriter();
+            HandPipeline.Report report = new HandPipeline(shape[0], shape[1], shape[2], shape[3])
+                    .run(new StringReader(input), output);
+            assertEquals(expected.toString(), output.toString());
+
+            assertEquals(3000, report.getHandCount());
+            assertEquals(shape[0], report.getThreadCount(HandPipeline.Stage.PARSE));
+            assertEquals(shape[1], report.getThreadCount(HandPipeline.Stage.EVALUATE));
+            assertEquals(0, report.getQueueCapacity(HandPipeline.Stage.READ));
+            for (HandPipeline.Stage stage : HandPipeline.Stage.values()) {
+                assertTrue(report.getBusyNanos(stage) > 0);
+                assertTrue(report.getMaxQueueDepth(stage) <= report.getQueueCapacity(stage));
+                assertTrue(report.getMeanQueueDepth(stage) <= report.getMaxQueueDepth(stage));
+            }
+            assertTrue(report.toString().contains("EVALUATE"));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        StringWriter output = new StringWriter();
+        HandPipeline.Report report = new HandPipeline().run(new StringReader(""), output);
+        assertEquals("", output.toString());
+        assertEquals(0, report.getHandCount());
+    }
+
+    @Test
+    public void testBrokenOutput() {
+        // The writer fails, and the other stages must stop rather than wait on it forever.
+        Writer broken = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void flush() throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void close() {}
+        };
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 20; ++i) {
+            big.append(input);
+        }
+        try {
+            new HandPipeline(1, 1, 16, 1).run(new StringReader(big.toString()), broken);
+            fail("Failed to throw an exception when expected");
+        } catch (IOException e) {
+            assertEquals("Broken pipe", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testInvalid() {
+        try {
+            new HandPipeline(1, 0, 1, 1);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException e) {
+            assertTrue("Threw the right type of exception", true);
+        }
+    }
+
+}
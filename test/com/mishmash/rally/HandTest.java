@@ -7,6 +7,10 @@ import static org.junit.Assert.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Test;
 import com.mishmash.rally.Card;
 import com.mishmash.rally.Hand;
@@ -106,4 +110,103 @@ public class HandTest {
         assertEquals(h2.getHandSize(), 2);
     }
 
+    /**
+     * Test method for {@link com.mishmash.rally.Hand#getStrength()}.
+     */
+    @Test
+    public void testGetStrength() {
+        // Kickers decide between hands of the same type.
+        String[] ascending = { "w", "7h, 5s, 4d, 3c, 2h", "ah, kd, 9c, 5s, 3h", "ah, kd, 10c, 5s, 3h",
+                "2h, 2d, 5s, 4c, 3h", "2h, 2d, 6s, 4c, 3h", "w, 2c, 7s, 4c, 3h", "9s, 9h, 2c, 2d, 3s",
+                "9s, 9h, 2c, 2d, 4s", "10s, 10h, 2c, 2d, 3s", "10s, 10h, 10c, kd, qs", "w, 6s, 7d, 8h, 9c",
+                "9h, 7h, 5h, 4h, 2h", "w, 8c, 8d, 8h, 4d", "w, 8c, 8d, 8h, 8s" };
+        int lastStrength = HandValue.INVALID_VALUE;
+        for (String input : ascending) {
+            int strength = new Hand(Interpreter.interpret(input)).getStrength();
+            assertTrue(input, strength > lastStrength);
+            lastStrength = strength;
+        }
+        
+        // Suits don't matter, and neither does whether the joker or a natural card makes the hand.
+        assertEquals(new Hand(Interpreter.interpret("ah, kd, 9c, 5s, 3h")).getStrength(),
+                new Hand(Interpreter.interpret("as, kc, 9h, 5d, 3s")).getStrength());
+        assertEquals(new Hand(Interpreter.interpret("w, 2c, 7s, 4c, 3h")).getStrength(),
+                new Hand(Interpreter.interpret("7h, 2c, 7s, 4c, 3h")).getStrength());
+        
+        assertEquals(HandValue.INVALID_VALUE, new Hand(Interpreter.interpret("as, as")).getStrength());
+        assertEquals(HandValue.INVALID_VALUE, new Hand().getStrength());
+    }
+
+    /**
+     * Many threads asking one hand for its result at once should all get the one result,
+     * computed once.
+     * 
+     * @throws Exception
+     * If a thread fails.
+     */
+    @Test
+    public void testSharedAcrossThreads() throws Exception {
+        final int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            for (int round = 0; round < 200; ++round) {
+                final Hand shared = new Hand(Interpreter.interpret("w, 8s, 8d, 7d, 7c, 6d, 6c, 2h"));
+                List<Future<List<Card>>> futures = new ArrayList<Future<List<Card>>>();
+                for (int i = 0; i < threadCount; ++i) {
+                    futures.add(executor.submit(new Callable<List<Card>>() {
+                        @Override
+                        public List<Card> call() {
+                            assertEquals(Hand.HandType.FULL_HOUSE, shared.getHandType());
+                            return shared.getImportantCards();
+                        }
+                    }));
+                }
+                List<Card> first = futures.get(0).get();
+                for (Future<List<Card>> future : futures) {
+                    assertSame(first, future.get());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        
+        Hand hand = new Hand(Interpreter.interpret("as, ah"));
+        try {
+            hand.getImportantCards().clear();
+            fail("Changed an evaluated hand's important cards.");
+        } catch (UnsupportedOperationException uoe) {
+            // Expected.
+        }
+    }
+
+    /**
+     * A hand only evaluates as far as it's asked to, but every step has to agree with a
+     * full evaluation, whichever order the getters are called in.
+     */
+    @Test
+    public void testLazyEvaluation() {
+        HandEvaluator he = new HandEvaluator();
+        String[] inputs = { "w", "w, 8s, 8d, 7d, 7c, 6d, 6c, 2h", "w, 10h, 8h, 7h, 5h, 4h, 4s",
+                "ah, kh, qh, jh, 10h, 10s, 10d", "kh, kd, 7s, 6h, 5d, 4c, 3s, 2s, 2h" };
+        for (String input : inputs) {
+            Hand expected = new Hand(Interpreter.interpret(input));
+            he.evaluate(expected);
+            
+            Hand typeFirst = new Hand(Interpreter.interpret(input));
+            assertEquals(input, expected.getHandType(), typeFirst.getHandType());
+            assertEquals(input, expected.getStrength(), typeFirst.getStrength());
+            assertEquals(input, expected.getImportantCards(), typeFirst.getImportantCards());
+            assertEquals(input, expected.getSecondImportantCards(), typeFirst.getSecondImportantCards());
+            
+            Hand descriptionFirst = new Hand(Interpreter.interpret(input));
+            assertEquals(input, expected.getDescription(), descriptionFirst.getDescription());
+            assertEquals(input, expected.getStrength(), descriptionFirst.getStrength());
+        }
+        
+        Hand invalid = new Hand(Interpreter.interpret("as, as"));
+        assertEquals(Hand.HandType.HIGH_CARD, invalid.getHandType());
+        assertEquals(HandValue.INVALID_VALUE, invalid.getStrength());
+        assertTrue(invalid.getImportantCards().isEmpty());
+    }
+
 }
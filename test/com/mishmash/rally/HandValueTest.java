@@ -0,0 +1,143 @@
+/**
+ * 
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.mishmash.rally.BitmaskEvaluator;
+import com.mishmash.rally.Card;
+import com.mishmash.rally.FiveCardEvaluator;
+import com.mishmash.rally.Hand;
+import com.mishmash.rally.HandEvaluator;
+import com.mishmash.rally.HandValue;
+import com.mishmash.rally.Interpreter;
+
+/**
+ * Tests packing and unpacking hand values.
+ * 
+ * @author mrmcduff
+ *
+ */
+public class HandValueTest {
+
+    /**
+     * Test method for {@link com.mishmash.rally.HandValue#valueOf(com.mishmash.rally.Hand)}.
+     */
+    @Test
+    public void testValueOf() {
+        int twoPair = HandValue.valueOf(new Hand(Interpreter.interpret("as, 3c, 3s, 2h, 2d")));
+        assertEquals(Hand.HandType.TWO_PAIR, HandValue.getHandType(twoPair));
+        assertEquals(3, HandValue.getRank(twoPair, 0));
+        assertEquals(2, HandValue.getRank(twoPair, 1));
+        assertEquals(14, HandValue.getRank(twoPair, 2));
+        assertEquals(0, HandValue.getRank(twoPair, 3));
+        
+        // The joker fills a slot but never contributes a rank.
+        int wildFlush = HandValue.valueOf(new Hand(Interpreter.interpret("w, as, 7s, 3s, 2s")));
+        int[] flushRanks = { 14, 7, 3, 2 };
+        assertEquals(HandValue.valueOf(Hand.HandType.FLUSH, flushRanks, flushRanks.length), wildFlush);
+        
+        assertEquals(0, HandValue.valueOf(new Hand(Interpreter.interpret("w"))));
+    }
+    
+    /**
+     * Kickers should break ties that the hand type and important cards leave open.
+     */
+    @Test
+    public void testOrdering() {
+        int kingKicker = HandValue.valueOf(new Hand(Interpreter.interpret("9s, 9h, kd, 4c, 2s")));
+        int queenKicker = HandValue.valueOf(new Hand(Interpreter.interpret("9d, 9c, qd, jc, 10s")));
+        int lowTrips = HandValue.valueOf(new Hand(Interpreter.interpret("2s, 2h, 2d, 4c, 3s")));
+        assertTrue(kingKicker > queenKicker);
+        assertTrue(lowTrips > kingKicker);
+        assertTrue(HandValue.valueOf(new Hand(Interpreter.interpret("2c"))) > 
+                HandValue.valueOf(new Hand(Interpreter.interpret("w"))));
+    }
+    
+    /**
+     * Test method for {@link com.mishmash.rally.HandValue#applyTo(com.mishmash.rally.Hand, int)}.
+     */
+    @Test
+    public void testApplyTo() {
+        Hand reference = new Hand(Interpreter.interpret("kd, jh, 10h, 10d, 9h, 9d, 8h, 8d, 7h, 7d"));
+        Hand applied = new Hand(Interpreter.interpret("kd, jh, 10h, 10d, 9h, 9d, 8h, 8d, 7h, 7d"));
+        HandValue.applyTo(applied, HandValue.valueOf(reference));
+        assertEquals(reference.getHandType(), applied.getHandType());
+        assertEquals(reference.getImportantCards(), applied.getImportantCards());
+        assertEquals(reference.getSecondImportantCards(), applied.getSecondImportantCards());
+    }
+
+    /**
+     * Straights with the same top card tie, wherever the joker sits in them.
+     */
+    @Test
+    public void testStraightTies() {
+        String[] kingHigh = { "w, kh, qd, jc, 10s", "w, kh, qd, 10c, 9s", "kh, qd, jc, 10s, 9h" };
+        for (String line : kingHigh) {
+            Hand hand = new Hand(Interpreter.interpret(line));
+            assertEquals("King-high straight.", hand.getDescription());
+            assertEquals(HandValue.valueOf(Hand.HandType.STRAIGHT, new int[] { 13 }, 1), hand.getStrength());
+            long cards = hand.getCardSet();
+            assertEquals(hand.getStrength(), new FiveCardEvaluator().getValue(cards));
+            assertEquals(hand.getStrength(), new BitmaskEvaluator().getValue(cards));
+        }
+        assertTrue(new Hand(Interpreter.interpret("w, as, kd, qc, js")).getStrength()
+                > new Hand(Interpreter.interpret("kh, qd, jc, 10s, 9h")).getStrength());
+    }
+
+    /**
+     * Two five card hands with the same straight (or straight flush) description must have
+     * the same strength, joker or not, and the cards picked out of each by its value must
+     * be the ones the reference evaluator picked.
+     */
+    @Test
+    public void testEqualDescriptionsTie() {
+        Map<String, Integer> strengths = new HashMap<String, Integer>();
+        HandEvaluator reference = new HandEvaluator();
+        int straightCount = 0;
+        for (int ranks = 0; ranks < (1 << 13); ++ranks) {
+            int rankCount = Integer.bitCount(ranks);
+            if (rankCount < 4 || rankCount > 5) {
+                continue;
+            }
+            for (boolean oneSuit : new boolean[] { false, true }) {
+                List<Card> cards = new ArrayList<Card>();
+                for (int rank = 0; rank < 13; ++rank) {
+                    if ((ranks & (1 << rank)) != 0) {
+                        Card.Suit suit = oneSuit ? Card.Suit.HEARTS
+                                : Card.Suit.values()[cards.size() % 4];
+                        cards.add(Card.valueOf(rank + 2, suit));
+                    }
+                }
+                if (rankCount == 4) {
+                    cards.add(Card.joker());
+                }
+                Hand hand = new Hand(cards);
+                reference.evaluate(hand);
+                Hand.HandType type = hand.getHandType();
+                if (type != Hand.HandType.STRAIGHT && type != Hand.HandType.STRAIGHT_FLUSH) {
+                    continue;
+                }
+                ++straightCount;
+                Integer seen = strengths.put(hand.getDescription(), hand.getStrength());
+                if (seen != null) {
+                    assertEquals(hand.getDescription(), seen.intValue(), hand.getStrength());
+                }
+
+                Hand applied = new Hand(new ArrayList<Card>(cards));
+                HandValue.applyTo(applied, hand.getStrength());
+                assertEquals(hand.getImportantCards(), applied.getImportantCards());
+            }
+        }
+        assertTrue(straightCount > 50);
+    }
+
+}
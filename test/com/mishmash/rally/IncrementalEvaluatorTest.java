@@ -0,0 +1,176 @@
+/**
+ * 
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mishmash.rally.BitmaskEvaluator;
+import com.mishmash.rally.Card;
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.EvaluationResult;
+import com.mishmash.rally.Hand;
+import com.mishmash.rally.IncrementalEvaluator;
+import com.mishmash.rally.Interpreter;
+
+/**
+ * Tests building a hand up a card at a time.
+ * 
+ * @author mrmcduff
+ *
+ */
+public class IncrementalEvaluatorTest {
+    
+    private IncrementalEvaluator ie;
+    private BitmaskEvaluator be;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        ie = new IncrementalEvaluator();
+        be = new BitmaskEvaluator();
+    }
+
+    /**
+     * Test method for {@link com.mishmash.rally.IncrementalEvaluator#addCard(com.mishmash.rally.Card)}.
+     */
+    @Test
+    public void testAddAndRemove() {
+        assertEquals(HandValue.INVALID_VALUE, ie.getValue());
+        assertNull(ie.getHandType());
+        for (Card card : Interpreter.interpret("as, ah, 7c, 7d, w")) {
+            ie.addCard(card);
+        }
+        assertEquals(5, ie.getHandSize());
+        assertEquals(Hand.HandType.FULL_HOUSE, ie.getHandType());
+        assertEquals(CardSet.of(Interpreter.interpret("as, ah")), ie.getImportantCards());
+        assertEquals(2, ie.getRankCount(14));
+        assertEquals(1, ie.getSuitCount(Card.Suit.CLUBS));
+        assertTrue(ie.contains(Card.joker()));
+        
+        ie.removeCard(Card.joker());
+        assertEquals(Hand.HandType.TWO_PAIR, ie.getHandType());
+        ie.removeCard(Card.valueOf(7, Card.Suit.DIAMONDS));
+        assertEquals(Hand.HandType.PAIR, ie.getHandType());
+        assertEquals(1, ie.getRankCount(7));
+        assertEquals(0, ie.getSuitCount(Card.Suit.DIAMONDS));
+        
+        ie.clear();
+        assertEquals(0, ie.getHandSize());
+        assertEquals(0, ie.getRankCount(14));
+        assertEquals(HandValue.INVALID_VALUE, ie.getValue());
+        assertNull(ie.getHandType());
+        EvaluationResult result = new EvaluationResult();
+        assertFalse(ie.evaluate(result));
+        assertFalse(result.isValid());
+        assertNull(result.getHandType());
+    }
+    
+    /**
+     * Random adds and removes should always leave the same result as evaluating the cards
+     * from scratch.
+     */
+    @Test
+    public void testRandomChanges() {
+        Random random = new Random(17);
+        EvaluationResult expected = new EvaluationResult();
+        EvaluationResult actual = new EvaluationResult();
+        for (int i = 0; i < 20000; ++i) {
+            int ordinal = random.nextInt(CardSet.ORDINAL_COUNT);
+            if ((ie.getCardSet() & (1L << ordinal)) == 0) {
+                ie.addCard(ordinal);
+            } else {
+                ie.removeCard(ordinal);
+            }
+            if (ie.getHandSize() > 0) {
+                be.evaluate(ie.getCardSet(), expected);
+                assertTrue(ie.evaluate(actual));
+                assertEquals(expected.getValue(), actual.getValue());
+                assertEquals(expected.getImportantCards(), actual.getImportantCards());
+                assertEquals(expected.getSecondImportantCards(), actual.getSecondImportantCards());
+            }
+            if (ordinal != CardSet.JOKER_ORDINAL) {
+                Card card = Card.fromOrdinal(ordinal);
+                assertEquals(CardSet.size(CardSet.getCardsOfValue(ie.getCardSet(), card.getValue())),
+                        ie.getRankCount(card.getValue()));
+                assertEquals(Integer.bitCount(CardSet.getSuitMask(ie.getCardSet(), card.getSuit())),
+                        ie.getSuitCount(card.getSuit()));
+            }
+        }
+    }
+    
+    /**
+     * Enumerating every turn and river around a fixed set of cards.
+     */
+    @Test
+    public void testRunOuts() {
+        long shared = CardSet.of(Interpreter.interpret("ah, kh, 7c, 7d, 2s"));
+        IncrementalEvaluator runOut = new IncrementalEvaluator(shared);
+        int runOuts = 0;
+        for (int turn = 0; turn < CardSet.JOKER_ORDINAL; ++turn) {
+            if ((shared & (1L << turn)) != 0) {
+                continue;
+            }
+            runOut.addCard(turn);
+            for (int river = turn + 1; river < CardSet.JOKER_ORDINAL; ++river) {
+                if ((shared & (1L << river)) != 0) {
+                    continue;
+                }
+                runOut.addCard(river);
+                assertEquals(be.getValue(runOut.getCardSet()), runOut.getValue());
+                runOut.removeCard(river);
+                ++runOuts;
+            }
+            runOut.removeCard(turn);
+        }
+        assertEquals(47 * 46 / 2, runOuts);
+        assertEquals(shared, runOut.getCardSet());
+    }
+    
+    /**
+     * Cards that don't exist, duplicates and missing cards should be refused.
+     */
+    @Test
+    public void testBadCards() {
+        ie.addCard(Card.joker());
+        try {
+            ie.addCard(Card.joker());
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+        try {
+            ie.removeCard(3);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+        try {
+            ie.addCard(new Card(1, Card.Suit.SPADES));
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+        try {
+            ie.addCard(CardSet.ORDINAL_COUNT);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+        try {
+            new IncrementalEvaluator(CardSet.FULL_DECK + 1);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+        assertEquals(1, ie.getHandSize());
+    }
+
+}
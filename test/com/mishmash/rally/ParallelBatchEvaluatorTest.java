@@ -0,0 +1,133 @@
+/**
+ * 
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mishmash.rally.BatchEvaluator;
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.ParallelBatchEvaluator;
+
+/**
+ * Tests that the parallel batch evaluator gives the same results, in the same order, as
+ * the plain BatchEvaluator.
+ * 
+ * @author mrmcduff
+ *
+ */
+public class ParallelBatchEvaluatorTest {
+    
+    private ForkJoinPool pool;
+    private ParallelBatchEvaluator parallel;
+    private BatchEvaluator serial;
+    private long[] hands;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        // Small pieces and more workers than this machine may have, so that the
+        // work really does get split up.
+        pool = new ForkJoinPool(4);
+        parallel = new ParallelBatchEvaluator(pool, 100);
+        serial = new BatchEvaluator();
+        
+        Random random = new Random(11);
+        hands = new long[10007];
+        for (int i = 0; i < hands.length; ++i) {
+            int size = (i % 2 == 0) ? 7 : 1 + random.nextInt(CardSet.ORDINAL_COUNT);
+            while (CardSet.size(hands[i]) < size) {
+                hands[i] |= 1L << random.nextInt(CardSet.ORDINAL_COUNT);
+            }
+        }
+    }
+    
+    /**
+     * @throws java.lang.Exception
+     */
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdown();
+    }
+
+    /**
+     * Test method for {@link com.mishmash.rally.ParallelBatchEvaluator#evaluate(long[], int[], byte[])}.
+     */
+    @Test
+    public void testEvaluateCardSets() {
+        int[] expectedStrengths = new int[hands.length];
+        byte[] expectedTypes = new byte[hands.length];
+        serial.evaluate(hands, expectedStrengths, expectedTypes);
+        
+        int[] strengths = new int[hands.length];
+        byte[] types = new byte[hands.length];
+        parallel.evaluate(hands, strengths, types);
+        assertTrue(Arrays.equals(expectedStrengths, strengths));
+        assertTrue(Arrays.equals(expectedTypes, types));
+        
+        // The shared pool should give the same answer.
+        int[] sharedStrengths = new int[hands.length];
+        new ParallelBatchEvaluator().evaluate(hands, sharedStrengths, null);
+        assertTrue(Arrays.equals(expectedStrengths, sharedStrengths));
+    }
+    
+    /**
+     * Test method for {@link com.mishmash.rally.ParallelBatchEvaluator#evaluate(byte[], int, int[], byte[])}.
+     */
+    @Test
+    public void testEvaluateOrdinals() {
+        final int handSize = 7;
+        int handCount = 0;
+        byte[] ordinals = new byte[hands.length * handSize];
+        for (long hand : hands) {
+            if (CardSet.size(hand) == handSize) {
+                for (long rest = hand; rest != 0; rest = CardSet.withoutFirst(rest)) {
+                    ordinals[handCount * handSize + CardSet.size(hand ^ rest)] = 
+                            (byte) CardSet.firstOrdinal(rest);
+                }
+                ++handCount;
+            }
+        }
+        ordinals = Arrays.copyOf(ordinals, handCount * handSize);
+        
+        int[] expectedStrengths = new int[handCount];
+        serial.evaluate(ordinals, handSize, expectedStrengths, null);
+        int[] strengths = new int[handCount];
+        byte[] types = new byte[handCount];
+        parallel.evaluate(ordinals, handSize, strengths, types);
+        assertTrue(Arrays.equals(expectedStrengths, strengths));
+        for (int i = 0; i < handCount; ++i) {
+            assertEquals(expectedStrengths[i] >>> HandValue.TYPE_SHIFT, types[i]);
+        }
+    }
+    
+    /**
+     * Bad arrays should be refused before any work starts.
+     */
+    @Test
+    public void testBadArrays() {
+        try {
+            parallel.evaluate(hands, new int[hands.length - 1], null);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+        try {
+            new ParallelBatchEvaluator(pool, 0);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+    }
+
+}
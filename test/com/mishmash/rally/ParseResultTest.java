@@ -0,0 +1,105 @@
+/**
+ *
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.mishmash.rally.Card;
+import com.mishmash.rally.CardScanner;
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.Interpreter;
+import com.mishmash.rally.ParseResult;
+
+/**
+ * Tests reading lines without exceptions.
+ *
+ * @author mrmcduff
+ *
+ */
+public class ParseResultTest {
+
+    @Test
+    public void testGoodLine() {
+        ParseResult result = Interpreter.parse("ah, 10h w");
+        assertTrue(result.isSuccessful());
+        assertEquals("ah, 10h w", result.getLine());
+        assertEquals(Arrays.asList(Card.valueOf(14, Card.Suit.HEARTS),
+                Card.valueOf(10, Card.Suit.HEARTS), Card.joker()), result.getCards());
+        assertEquals(Interpreter.interpret("ah, 10h w"), result.getCards());
+        assertEquals(CardSet.of(result.getCards()), result.getCardSet());
+        assertEquals(0, result.getBadTokenCount());
+        assertNull(result.getErrorMessage());
+
+        try {
+            result.getCards().add(Card.joker());
+            fail("Failed to throw an exception when expected");
+        } catch (UnsupportedOperationException e) {
+            assertTrue("Threw the right type of exception", true);
+        }
+    }
+
+    @Test
+    public void testBadLine() {
+        String line = "ah, 10 d, 15s, 3c";
+        ParseResult result = Interpreter.parse(line);
+        assertFalse(result.isSuccessful());
+        assertEquals(Arrays.asList(Card.valueOf(14, Card.Suit.HEARTS), Card.valueOf(3, Card.Suit.CLUBS)),
+                result.getCards());
+
+        assertEquals(3, result.getBadTokenCount());
+        assertEquals("10", result.getBadToken(0));
+        assertEquals(4, result.getBadTokenStart(0));
+        assertEquals(6, result.getBadTokenEnd(0));
+        assertEquals(CardScanner.BAD_FORMAT, result.getBadTokenKind(0));
+        assertEquals("d", result.getBadToken(1));
+        assertEquals("15s", result.getBadToken(2));
+        assertEquals(CardScanner.BAD_VALUE, result.getBadTokenKind(2));
+
+        try {
+            Interpreter.interpret(line);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException e) {
+            assertEquals(e.getMessage(), result.getErrorMessage());
+        }
+
+        try {
+            result.getBadToken(3);
+            fail("Failed to throw an exception when expected");
+        } catch (IndexOutOfBoundsException e) {
+            assertTrue("Threw the right type of exception", true);
+        }
+    }
+
+    @Test
+    public void testResultsAreIndependent() {
+        // Every parse on a thread shares one scanner, so the results must not.
+        ParseResult first = Interpreter.parse("2h, x");
+        ParseResult second = Interpreter.parse("3c");
+        assertEquals(Arrays.asList(Card.valueOf(2, Card.Suit.HEARTS)), first.getCards());
+        assertEquals("x", first.getBadToken(0));
+        assertEquals(Arrays.asList(Card.valueOf(3, Card.Suit.CLUBS)), second.getCards());
+        assertTrue(second.isSuccessful());
+    }
+
+    @Test
+    public void testCallerBuffer() {
+        CardScanner scanner = new CardScanner();
+        byte[] buffer = new byte[4];
+        assertTrue(scanner.scan("2c 3c"));
+        assertEquals(2, scanner.getOrdinals(buffer, 2));
+        assertEquals(Card.valueOf(2, Card.Suit.CLUBS).getOrdinal(), buffer[2]);
+        assertEquals(Card.valueOf(3, Card.Suit.CLUBS).getOrdinal(), buffer[3]);
+        try {
+            scanner.getOrdinals(buffer, 3);
+            fail("Failed to throw an exception when expected");
+        } catch (IndexOutOfBoundsException e) {
+            assertTrue("Threw the right type of exception", true);
+        }
+    }
+
+}
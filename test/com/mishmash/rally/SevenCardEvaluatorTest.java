@@ -0,0 +1,84 @@
+/**
+ * 
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mishmash.rally.Hand;
+import com.mishmash.rally.HandEvaluator;
+import com.mishmash.rally.Interpreter;
+import com.mishmash.rally.SevenCardEvaluator;
+
+/**
+ * Tests the state table seven card evaluator against the original HandEvaluator. The first
+ * run generates the table in the temp directory, so it takes a little while.
+ * 
+ * @author mrmcduff
+ *
+ */
+public class SevenCardEvaluatorTest {
+    
+    private SevenCardEvaluator sce;
+    private HandEvaluator he;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        sce = new SevenCardEvaluator();
+        he = new HandEvaluator();
+    }
+
+    /**
+     * Test method for {@link com.mishmash.rally.SevenCardEvaluator#evaluate(com.mishmash.rally.Hand)}.
+     */
+    @Test
+    public void testEvaluateMatchesHandEvaluator() {
+        String[] inputs = { "8c, 2d, 5h, jd, 9s, 3c, 4d", "w, 2c, 5h, 9d, kc, 7s, 3d",
+                "as, 3c, 3s, 2h, 2d, 4h, 4s", "w, ah, jd, 10h, 10c, 3s, 2d", "kh, kd, 7s, 6h, 5d, 4c, 3s",
+                "w, js, 9d, 8c, 7h, 2s, 2c", "w, as, 7s, 6h, 3s, 2s, 2h", "kh, 9h, 7h, 4h, 2h, 3h, ah",
+                "w, 8s, 8d, 7d, 7c, 6d, 6c", "as, ah, ad, 2s, 2h, 2d, 3c", "w, 4s, 4h, 4d, kc, kd, ks",
+                "w, as, ah, 7s, 6s, 5s, 4s", "w, 2s, 2h, 2d, 2c, 3d, 3c", "w, 10s, 8h, 7d, 5c, 4s, 2d",
+                "as, ks, qs, js, 10s, 9s, 8s" };
+        for (String input : inputs) {
+            Hand expected = new Hand(Interpreter.interpret(input));
+            Hand actual = new Hand(Interpreter.interpret(input));
+            he.evaluate(expected);
+            sce.evaluate(actual);
+            assertEquals(input, expected.getHandType(), actual.getHandType());
+            assertEquals(input, expected.getImportantCards(), actual.getImportantCards());
+            assertEquals(input, expected.getSecondImportantCards(), actual.getSecondImportantCards());
+            assertEquals(input, HandValue.valueOf(expected), sce.getValue(actual.getCards()));
+        }
+    }
+    
+    /**
+     * The order of the cards shouldn't matter, and duplicates should be caught.
+     * 
+     * Test method for {@link com.mishmash.rally.SevenCardEvaluator#getValue(java.util.List)}.
+     */
+    @Test
+    public void testGetValue() {
+        int forward = sce.getValue(Interpreter.interpret("w, 10s, 9s, 8s, 7s, 2h, 2c"));
+        int backward = sce.getValue(Interpreter.interpret("2c, 2h, 7s, 8s, 9s, 10s, w"));
+        assertEquals(forward, backward);
+        assertEquals(Hand.HandType.STRAIGHT_FLUSH, HandValue.getHandType(forward));
+        
+        assertEquals(SevenCardEvaluator.INVALID_VALUE, 
+                sce.getValue(Interpreter.interpret("as, as, 3c, 4d, 5h, 6h, 7h")));
+        assertEquals(SevenCardEvaluator.INVALID_VALUE, 
+                sce.getValue(Interpreter.interpret("w, w, 3c, 4d, 5h, 6h, 7h")));
+        try {
+            sce.getValue(Interpreter.interpret("as, 3c"));
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * 
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.mishmash.rally.BitmaskEvaluator;
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.Interpreter;
+import com.mishmash.rally.SuitCanonicalizer;
+
+/**
+ * Tests the suit-isomorphic canonical form of hands.
+ * 
+ * @author mrmcduff
+ *
+ */
+public class SuitCanonicalizerTest {
+
+    /**
+     * Test method for {@link com.mishmash.rally.SuitCanonicalizer#canonicalize(long)}.
+     */
+    @Test
+    public void testCanonicalize() {
+        long hearts = CardSet.of(Interpreter.interpret("w, ah, kh, 2c"));
+        long spades = CardSet.of(Interpreter.interpret("w, as, ks, 2d"));
+        long canonical = SuitCanonicalizer.canonicalize(hearts);
+        assertEquals(canonical, SuitCanonicalizer.canonicalize(spades));
+        assertEquals(CardSet.of(Interpreter.interpret("w, as, ks, 2h")), canonical);
+        assertTrue(SuitCanonicalizer.isCanonical(canonical));
+        assertFalse(SuitCanonicalizer.isCanonical(hearts));
+        
+        assertEquals(CardSet.EMPTY, SuitCanonicalizer.canonicalize(CardSet.EMPTY));
+        assertEquals(CardSet.FULL_DECK, SuitCanonicalizer.canonicalize(CardSet.FULL_DECK));
+        
+        // Different hands should stay different.
+        assertFalse(SuitCanonicalizer.canonicalize(CardSet.of(Interpreter.interpret("as, ah")))
+                == SuitCanonicalizer.canonicalize(CardSet.of(Interpreter.interpret("as, ks"))));
+    }
+    
+    /**
+     * Swapping the suits of a hand around should never change its canonical form or its
+     * strength.
+     */
+    @Test
+    public void testSuitSwaps() {
+        BitmaskEvaluator be = new BitmaskEvaluator();
+        Random random = new Random(5);
+        int[][] permutations = { { 0, 1, 2, 3 }, { 3, 2, 1, 0 }, { 1, 0, 3, 2 }, { 2, 3, 0, 1 },
+                { 1, 2, 3, 0 } };
+        for (int i = 0; i < 5000; ++i) {
+            int size = 1 + random.nextInt(CardSet.ORDINAL_COUNT);
+            long set = CardSet.EMPTY;
+            while (CardSet.size(set) < size) {
+                set |= 1L << random.nextInt(CardSet.ORDINAL_COUNT);
+            }
+            long canonical = SuitCanonicalizer.canonicalize(set);
+            assertEquals(size, CardSet.size(canonical));
+            assertTrue(SuitCanonicalizer.isCanonical(canonical));
+            for (int[] permutation : permutations) {
+                long swapped = set & CardSet.JOKER;
+                for (int suit = 0; suit < CardSet.SUIT_COUNT; ++suit) {
+                    long suitMask = (set >>> (suit * CardSet.RANK_COUNT)) & CardSet.SUIT_MASK;
+                    swapped |= suitMask << (permutation[suit] * CardSet.RANK_COUNT);
+                }
+                assertEquals(canonical, SuitCanonicalizer.canonicalize(swapped));
+                assertEquals(be.getValue(set), be.getValue(swapped));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+/**
+ * 
+ */
+package com.mishmash.rally;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mishmash.rally.BitmaskEvaluator;
+import com.mishmash.rally.Card;
+import com.mishmash.rally.CardSet;
+import com.mishmash.rally.EvaluationResult;
+import com.mishmash.rally.Hand;
+import com.mishmash.rally.HandEvaluator;
+import com.mishmash.rally.HandValue;
+import com.mishmash.rally.Interpreter;
+import com.mishmash.rally.WildCardEvaluator;
+
+/**
+ * Tests evaluating hands with several wild cards.
+ * 
+ * @author mrmcduff
+ *
+ */
+public class WildCardEvaluatorTest {
+    
+    private WildCardEvaluator jokers;
+    private WildCardEvaluator deuces;
+    private EvaluationResult result;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        jokers = new WildCardEvaluator();
+        deuces = new WildCardEvaluator(2);
+        result = new EvaluationResult();
+    }
+    
+    /**
+     * Gets the type of a hand.
+     * 
+     * @param evaluator
+     * The evaluator to use.
+     * 
+     * @param input
+     * The hand, as the Interpreter would read it. It may hold more than one joker.
+     * 
+     * @return
+     * The type of the hand.
+     */
+    private Hand.HandType getType(WildCardEvaluator evaluator, String input) {
+        return HandValue.getHandType(evaluator.getValue(Interpreter.interpret(input)));
+    }
+
+    /**
+     * With one joker, the results should be exactly HandEvaluator's.
+     */
+    @Test
+    public void testOneJoker() {
+        HandEvaluator he = new HandEvaluator();
+        Random random = new Random(13);
+        for (int i = 0; i < 5000; ++i) {
+            int size = 1 + random.nextInt(12);
+            long set = CardSet.JOKER;
+            while (CardSet.size(set) < size) {
+                set |= 1L << random.nextInt(CardSet.ORDINAL_COUNT);
+            }
+            Hand expected = CardSet.toHand(set);
+            he.evaluate(expected);
+            assertTrue(jokers.evaluate(set, 0, result));
+            assertEquals(expected.getStrength(), result.getValue());
+            assertEquals(CardSet.of(expected.getImportantCards()), result.getImportantCards());
+            assertEquals(CardSet.of(expected.getSecondImportantCards()), result.getSecondImportantCards());
+            
+            // A joker given as an extra wild card is the same as one in the set.
+            assertEquals(expected.getStrength(), jokers.getValue(set & ~CardSet.JOKER, 1));
+        }
+    }
+    
+    /**
+     * Test method for {@link com.mishmash.rally.WildCardEvaluator#getValue(java.util.List)}.
+     */
+    @Test
+    public void testTwoJokers() {
+        assertEquals(Hand.HandType.FOUR_OF_A_KIND, getType(jokers, "w, w, as, ah, 3c"));
+        assertEquals(Hand.HandType.FIVE_OF_A_KIND, getType(jokers, "w, w, as, ah, ac"));
+        assertEquals(Hand.HandType.THREE_OF_A_KIND, getType(jokers, "w, w, as, 9h, 3c"));
+        assertEquals(Hand.HandType.STRAIGHT, getType(jokers, "w, w, as, qh, 10c"));
+        assertEquals(Hand.HandType.FLUSH, getType(jokers, "w, w, ks, 9s, 3s"));
+        assertEquals(Hand.HandType.STRAIGHT_FLUSH, getType(jokers, "w, w, 9d, 7d, 5d"));
+        assertEquals(Hand.HandType.HIGH_CARD, getType(jokers, "w"));
+        
+        // The straight is the highest one the wild cards can make, and it's valued by the
+        // top of the run, even though a wild card is there.
+        int value = jokers.getValue(Interpreter.interpret("w, w, kh, qh, 10c, 9s, 8d"));
+        assertEquals(Hand.HandType.STRAIGHT, HandValue.getHandType(value));
+        assertEquals(14, HandValue.getRank(value, 0));
+        
+        assertEquals(HandValue.INVALID_VALUE, jokers.getValue(Interpreter.interpret("w, w, as, as")));
+        assertEquals(HandValue.INVALID_VALUE, jokers.getValue(Arrays.asList(Card.joker(), 
+                new Card(1, Card.Suit.SPADES))));
+    }
+    
+    /**
+     * Test method for {@link com.mishmash.rally.WildCardEvaluator#evaluate(long, int, EvaluationResult)}.
+     */
+    @Test
+    public void testDeucesWild() {
+        assertEquals(2, deuces.getWildValue());
+        assertEquals(Hand.HandType.STRAIGHT_FLUSH, getType(deuces, "2c, 2h, as, ks, qs"));
+        assertEquals(Hand.HandType.FIVE_OF_A_KIND, getType(deuces, "2c, 2h, 2d, 9s, 9h"));
+        assertEquals(Hand.HandType.FIVE_OF_A_KIND, getType(deuces, "w, 2c, 2h, 2d, 9s"));
+        assertEquals(Hand.HandType.THREE_OF_A_KIND, getType(deuces, "2c, 8h, 8s, kd, 4c"));
+        assertEquals(Hand.HandType.PAIR, getType(deuces, "2c, 8h, 9s, kd, 4c"));
+        
+        // The wild cards aren't important, unless they're all there is.
+        assertTrue(deuces.evaluate(CardSet.of(Interpreter.interpret("2c, 8h, 8s, kd, 4c")), 0, result));
+        assertEquals(CardSet.of(Interpreter.interpret("8h, 8s")), result.getImportantCards());
+        assertTrue(deuces.evaluate(CardSet.of(Interpreter.interpret("w, 2c, 2h")), 0, result));
+        assertEquals(CardSet.of(Interpreter.interpret("2c, 2h")), result.getImportantCards());
+        
+        Hand hand = new Hand(Interpreter.interpret("2c, 2h, as, ks, qs"));
+        deuces.evaluate(hand);
+        assertEquals(Hand.HandType.STRAIGHT_FLUSH, hand.getHandType());
+        assertEquals(Interpreter.interpret("as, ks, qs"), hand.getImportantCards());
+    }
+    
+    /**
+     * Bad arguments should be refused, and invalid hands cleared.
+     */
+    @Test
+    public void testInvalid() {
+        assertFalse(jokers.evaluate(CardSet.EMPTY, 0, result));
+        assertFalse(result.isValid());
+        assertFalse(jokers.evaluate(CardSet.FULL_DECK + 1, 0, result));
+        assertTrue(jokers.evaluate(CardSet.EMPTY, 2, result));
+        try {
+            jokers.getValue(CardSet.JOKER, -1);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+        try {
+            new WildCardEvaluator(15);
+            fail("Failed to throw an exception when expected");
+        } catch (IllegalArgumentException iae) {
+            assertTrue("Threw the right type of exception", true);
+        }
+    }
+    
+    /**
+     * A hand of nothing but wild cards is the best collection of aces they can make, except
+     * for the lone joker.
+     */
+    @Test
+    public void testAllWild() {
+        int fourAces = getValue("ac, ad, ah, as");
+        assertEquals(fourAces, deuces.getValue(CardSet.of(Interpreter.interpret("2c, 2d, 2h, 2s"))));
+        int fiveAces = deuces.getValue(CardSet.of(Interpreter.interpret("2c, 2d, 2h, 2s, w")));
+        assertEquals(Hand.HandType.FIVE_OF_A_KIND, HandValue.getHandType(fiveAces));
+        assertEquals(14, HandValue.getRank(fiveAces, 0));
+        assertTrue(fiveAces > getValue("as, ks, qs, js, 10s"));
+        
+        int pairOfAces = jokers.getValue(Interpreter.interpret("w, w"));
+        assertEquals(getValue("ac, ad"), pairOfAces);
+        assertTrue(pairOfAces > getValue("kc, kd"));
+        assertEquals(Hand.HandType.THREE_OF_A_KIND, getType(deuces, "w, 2c, 2h"));
+        assertEquals(Hand.HandType.FIVE_OF_A_KIND, HandValue.getHandType(jokers.getValue(CardSet.EMPTY, 7)));
+        
+        assertEquals(0, jokers.getValue(CardSet.JOKER));
+        assertEquals(0, deuces.getValue(CardSet.of(Interpreter.interpret("2h"))));
+    }
+    
+    /**
+     * Straights that wild cards complete should compare against natural straights by the top
+     * of the run.
+     */
+    @Test
+    public void testWildStraightValues() {
+        int aceHigh = getValue("ah, ks, qd, jc, 10h");
+        assertEquals(aceHigh, deuces.getValue(CardSet.of(Interpreter.interpret("2c, 2d, 10s, jh, qd"))));
+        assertEquals(aceHigh, deuces.getValue(CardSet.of(Interpreter.interpret("2c, 2d, qs, kh, ad"))));
+        assertTrue(aceHigh > getValue("qh, jd, 10c, 9s, 8h"));
+        assertEquals(getValue("as, ks, qs, js, 10s"),
+                deuces.getValue(CardSet.of(Interpreter.interpret("2c, 2h, as, ks, qs"))));
+        assertEquals(getValue("7h, 6s, 5d, 4c, 3c"),
+                deuces.getValue(CardSet.of(Interpreter.interpret("2c, 2h, 3d, 4s, 6h"))));
+    }
+    
+    /**
+     * With two wild cards, every hand of three natural cards should get the type of the best
+     * natural hand the wild cards could be swapped for, and a straight (or straight flush)
+     * should get exactly its value.
+     */
+    @Test
+    public void testTwoWildsAgainstBruteForce() {
+        BitmaskEvaluator natural = new BitmaskEvaluator();
+        for (int ranks = 0; ranks < (1 << 13); ++ranks) {
+            if (Integer.bitCount(ranks) != 3) {
+                continue;
+            }
+            for (boolean oneSuit : new boolean[] { false, true }) {
+                long hand = CardSet.EMPTY;
+                int next = 0;
+                for (int rank = 0; rank < 13; ++rank) {
+                    if ((ranks & (1 << rank)) != 0) {
+                        int suit = oneSuit ? 0 : next++;
+                        hand |= 1L << (suit * CardSet.RANK_COUNT + rank);
+                    }
+                }
+                
+                int best = HandValue.INVALID_VALUE;
+                for (int first = 0; first < 52; ++first) {
+                    for (int second = first + 1; second < 52; ++second) {
+                        long swapped = hand | 1L << first | 1L << second;
+                        if (CardSet.size(swapped) == 5) {
+                            best = Math.max(best, natural.getValue(swapped));
+                        }
+                    }
+                }
+                
+                int value = jokers.getValue(hand, 2);
+                Hand.HandType type = HandValue.getHandType(value);
+                assertEquals(HandValue.getHandType(best), type);
+                if (type == Hand.HandType.STRAIGHT || type == Hand.HandType.STRAIGHT_FLUSH) {
+                    assertEquals(best, value);
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return
+     * The value of a natural hand.
+     */
+    private int getValue(String input) {
+        return new BitmaskEvaluator().getValue(CardSet.of(Interpreter.interpret(input)));
+    }
+
+}